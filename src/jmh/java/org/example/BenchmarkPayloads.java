@@ -0,0 +1,46 @@
+package org.example;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Réponses OpenWeatherMap enregistrées, utilisées par les benchmarks
+ */
+final class BenchmarkPayloads {
+
+    static final String[] CITIES = {"valenciennes", "belem", "alep"};
+
+    private BenchmarkPayloads() {
+    }
+
+    /**
+     * @param city nom du fichier (sans extension) dans src/jmh/resources/owm
+     */
+    static String load(String city) {
+        try (InputStream in = BenchmarkPayloads.class.getResourceAsStream("/owm/" + city + ".json")) {
+            if (in == null) {
+                throw new IllegalArgumentException("Réponse enregistrée introuvable: " + city);
+            }
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Historique de préférences synthétique (alternance personne/assistant)
+     *
+     * @param size nombre de messages
+     */
+    static String[] history(int size) {
+        String[] history = new String[size];
+        for (int i = 0; i < size; i++) {
+            history[i] = i % 2 == 0
+                    ? "Je n'aime pas les choux ni les champignons, que proposes-tu par " + (i % 30) + "°C ?"
+                    : "Je propose une soupe de patates douces avec du pain complet, sans porc.";
+        }
+        return history;
+    }
+}
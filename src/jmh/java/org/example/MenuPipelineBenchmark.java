@@ -0,0 +1,67 @@
+package org.example;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Débit de MenuService.generateMenu sans réseau ni modèle : météo servie par
+ * FixtureWeatherProvider, menus par StubLlmClient (sans latence). Mesure le coût de
+ * l'orchestration seule (météo, prompt, compactage de l'historique, regroupement des
+ * appels) ; avec le cache de menus, celui du chemin servi depuis le cache.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class MenuPipelineBenchmark {
+
+    // Référence forte : les logs INFO de chaque requête faussent la mesure
+    private static final Logger LOGGER = Logger.getLogger("org.example");
+    private static final int CITIES = 200;
+
+    @Param({"false", "true"})
+    boolean menuCache;
+
+    private MenuService menuService;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        LOGGER.setLevel(java.util.logging.Level.WARNING);
+        Meteo meteo = Meteo.builder()
+                .provider(FixtureWeatherProvider.builder().synthesizeUnknown(true).build())
+                .build();
+        LlmClient llm = StubLlmClient.builder().build();
+        menuService = new MenuService(meteo, llm, RecettesMeteoApp.DEFAULT_MODEL, 8, Duration.ofSeconds(10),
+                menuCache ? new MenuCache(Duration.ofHours(1), 10_000) : null);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        menuService.getBatcher().close();
+    }
+
+    @Benchmark
+    public MenuService.MenuResult generateMenu() throws Exception {
+        return menuService.generateMenu("Ville" + ThreadLocalRandom.current().nextInt(CITIES));
+    }
+}
@@ -0,0 +1,51 @@
+package org.example;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coût du parsing d'une réponse OpenWeatherMap enregistrée :
+ * arbre org.json depuis une String, ou parseur streaming depuis les octets
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MeteoParsingBenchmark {
+
+    @Param({"valenciennes", "belem", "alep"})
+    String city;
+
+    private String payload;
+    private byte[] payloadBytes;
+
+    @Setup
+    public void setup() {
+        payload = BenchmarkPayloads.load(city);
+        payloadBytes = payload.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public Meteo.WeatherData parseWeatherData() {
+        return OpenWeatherMapProvider.parseWeatherData(payload);
+    }
+
+    @Benchmark
+    public Meteo.WeatherData parseWeatherDataStreaming() {
+        return OpenWeatherMapProvider.parseWeatherData(payloadBytes);
+    }
+}
@@ -0,0 +1,55 @@
+package org.example;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Construction du message utilisateur et sérialisation JSON d'une requête /api/chat
+ * pour des historiques de 3 à 500 messages
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PromptBenchmark {
+
+    @Param({"3", "20", "100", "500"})
+    int historySize;
+
+    private Meteo.WeatherData weather;
+    private String[] history;
+    private String userMessage;
+    private HistoryManager historyManager;
+
+    @Setup
+    public void setup() {
+        weather = OpenWeatherMapProvider.parseWeatherData(BenchmarkPayloads.load("valenciennes"));
+        history = BenchmarkPayloads.history(historySize);
+        userMessage = RecettesMeteoApp.buildUserMessage("automne", weather);
+        historyManager = new HistoryManager(HistoryManager.DEFAULT_TOKEN_BUDGET);
+    }
+
+    @Benchmark
+    public String buildUserMessage() {
+        return RecettesMeteoApp.buildUserMessage("automne", weather);
+    }
+
+    @Benchmark
+    public String chatRequestJson() {
+        return OllamaClient.buildChatRequest(historyManager, RecettesMeteoApp.DEFAULT_MODEL,
+                RecettesMeteoApp.SYSTEM_PROMPT, userMessage, history).put("stream", false).toString();
+    }
+}
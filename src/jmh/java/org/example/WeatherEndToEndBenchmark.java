@@ -0,0 +1,103 @@
+package org.example;
+
+import com.sun.net.httpserver.HttpServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Appel complet de Meteo.getWeatherByCity contre un serveur HTTP local
+ * qui renvoie une réponse enregistrée (sans cache, puis avec cache), ou contre
+ * le fournisseur de test en mémoire (coût de Meteo seul, sans HTTP ni parsing).
+ * TCP_NODELAY est activé sur le serveur local : sinon l'algorithme de Nagle
+ * ajoute ~40 ms par réponse et masque tout le reste.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dsun.net.httpserver.nodelay=true")
+@State(Scope.Benchmark)
+public class WeatherEndToEndBenchmark {
+
+    // Référence forte : les logs INFO de chaque requête faussent la mesure
+    private static final Logger METEO_LOGGER = Logger.getLogger(Meteo.class.getName());
+    private static final Logger PROVIDER_LOGGER = Logger.getLogger(OpenWeatherMapProvider.class.getName());
+
+    @Param({"false", "true"})
+    boolean cached;
+
+    @Param({"http", "fixture"})
+    String provider;
+
+    private HttpServer server;
+    private ExecutorService executor;
+    private Meteo meteo;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        METEO_LOGGER.setLevel(java.util.logging.Level.WARNING);
+        PROVIDER_LOGGER.setLevel(java.util.logging.Level.WARNING);
+        byte[] payload = BenchmarkPayloads.load("valenciennes").getBytes(StandardCharsets.UTF_8);
+
+        executor = Executors.newFixedThreadPool(4);
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.setExecutor(executor);
+        server.createContext("/data/2.5/weather", exchange -> {
+            exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+            exchange.sendResponseHeaders(200, payload.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(payload);
+            }
+        });
+        server.start();
+
+        Meteo.Builder builder = Meteo.builder()
+                .apiUrl("http://localhost:" + server.getAddress().getPort() + "/data/2.5")
+                .apiKey("benchmark");
+        if ("fixture".equals(provider)) {
+            builder.provider(FixtureWeatherProvider.builder()
+                    .add(OpenWeatherMapProvider.parseWeatherData(payload))
+                    .build());
+        }
+        meteo = builder
+                // Sans cache : chaque entrée expire immédiatement
+                .cacheTtl(cached ? Duration.ofMinutes(10) : Duration.ofNanos(1))
+                // Sans cache : pas de relevé expiré servi en attendant le rafraîchissement
+                .staleWhileRevalidate(Duration.ZERO)
+                // Serveur local : pas de quota à respecter
+                .rateLimit(Integer.MAX_VALUE, Integer.MAX_VALUE)
+                .build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    public Meteo.WeatherData getWeatherByCity() {
+        return meteo.getWeatherByCity("Valenciennes");
+    }
+}
@@ -0,0 +1,42 @@
+package org.example;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Résultat d'une récupération météo groupée : les données obtenues
+ * et, pour chaque ville en échec, la raison de l'erreur.
+ * Les clés sont les noms (ou coordonnées) tels que fournis par l'appelant.
+ */
+public class BulkWeatherResult {
+    private final Map<String, Meteo.WeatherData> results = new LinkedHashMap<>();
+    private final Map<String, String> errors = new LinkedHashMap<>();
+
+    void addResult(String key, Meteo.WeatherData data) {
+        results.put(key, data);
+    }
+
+    void addError(String key, String reason) {
+        errors.put(key, reason);
+    }
+
+    /**
+     * @return les données météo obtenues, par ville
+     */
+    public Map<String, Meteo.WeatherData> getResults() {
+        return Collections.unmodifiableMap(results);
+    }
+
+    /**
+     * @return la raison de l'échec, par ville
+     */
+    public Map<String, String> getErrors() {
+        return Collections.unmodifiableMap(errors);
+    }
+
+    @Override
+    public String toString() {
+        return results.size() + " résultats, " + errors.size() + " erreurs";
+    }
+}
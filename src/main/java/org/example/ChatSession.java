@@ -0,0 +1,139 @@
+package org.example;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Conversation multi-tours avec un modèle Ollama qui réutilise le contexte déjà calculé.
+ *
+ * Contrairement à {@link LlmClient#chat}, qui renvoie tout l'historique à chaque
+ * appel (et fait recalculer tout le préfixe au modèle), la session conserve le tableau
+ * "context" renvoyé par /api/generate et le renvoie au tour suivant : seul le nouveau
+ * message est alors évalué. Le modèle est maintenu en mémoire grâce à "keep_alive".
+ *
+ * Une session n'est pas partagée entre utilisateurs ; ses méthodes sont synchronisées.
+ */
+public class ChatSession {
+
+    private final LlmClient client;
+    private final String model;
+    private final String systemPrompt;
+    private final Duration keepAlive;
+    private final String[] initialHistory;
+
+    private String[] pendingHistory;
+    private int[] context;
+    private final List<GenerationStats> turnStats = new ArrayList<>();
+
+    /**
+     * @param client       backend LLM
+     * @param model        le nom du modèle LLM à utiliser
+     * @param systemPrompt le prompt système (instructions pour le modèle)
+     * @param keepAlive    durée pendant laquelle Ollama garde le modèle chargé entre deux tours
+     */
+    public ChatSession(LlmClient client, String model, String systemPrompt, Duration keepAlive) {
+        this(client, model, systemPrompt, keepAlive, null);
+    }
+
+    /**
+     * @param client           backend LLM
+     * @param model            le nom du modèle LLM à utiliser
+     * @param systemPrompt     le prompt système (instructions pour le modèle)
+     * @param keepAlive        durée pendant laquelle Ollama garde le modèle chargé entre deux tours
+     * @param previousMessages historique initial (alternance personne/assistant), envoyé au premier tour
+     */
+    public ChatSession(LlmClient client, String model, String systemPrompt, Duration keepAlive,
+                       String[] previousMessages) {
+        this.client = client;
+        this.model = model;
+        this.systemPrompt = systemPrompt;
+        this.keepAlive = keepAlive;
+        this.initialHistory = previousMessages;
+        this.pendingHistory = previousMessages;
+    }
+
+    /**
+     * Envoie un message et attend la réponse complète
+     *
+     * @param userMessage le message utilisateur
+     */
+    public synchronized String send(String userMessage) throws Exception {
+        return send(userMessage, null).getText();
+    }
+
+    /**
+     * Envoie un message ; la réponse est streamée token par token.
+     * Seul ce message est évalué par le modèle, le reste de la conversation
+     * étant transmis sous forme de contexte déjà calculé.
+     *
+     * @param userMessage le message utilisateur
+     * @param onToken     callback appelé pour chaque fragment de texte reçu (peut être null)
+     * @return le texte complet et les statistiques du tour
+     */
+    public synchronized LlmClient.StreamedResponse send(String userMessage, Consumer<String> onToken) throws Exception {
+        // Premier tour : le prompt système n'est évalué qu'une fois
+        String system = context == null ? systemPrompt : null;
+        LlmClient.StreamedResponse response =
+                client.generateStream(model, system, buildPrompt(userMessage), context, keepAlive, onToken);
+
+        // L'historique initial n'est abandonné qu'une fois repris dans un contexte
+        if (response.getContext() != null) {
+            context = response.getContext();
+            pendingHistory = null;
+        }
+        if (response.getStats() != null) {
+            turnStats.add(response.getStats());
+        }
+        return response;
+    }
+
+    /**
+     * Le premier tour embarque l'historique initial (compacté) sous forme de texte ;
+     * les tours suivants ne contiennent que le nouveau message.
+     */
+    private String buildPrompt(String userMessage) {
+        if (pendingHistory == null || pendingHistory.length == 0) {
+            return userMessage;
+        }
+        HistoryManager.Compacted history = client.getHistoryManager().compact(pendingHistory);
+        StringBuilder prompt = new StringBuilder();
+        if (history.getSummary() != null) {
+            prompt.append(history.getSummary()).append("\n\n");
+        }
+        prompt.append("Historique de la conversation :\n");
+        String[] recent = history.getRecent();
+        for (int i = 0; i < recent.length; i++) {
+            prompt.append(i % 2 == 0 ? "Utilisateur : " : "Assistant : ")
+                    .append(recent[i])
+                    .append('\n');
+        }
+        return prompt.append('\n').append(userMessage).toString();
+    }
+
+    /**
+     * Oublie le contexte : le prochain tour repart de zéro (prompt système et historique initial inclus)
+     */
+    public synchronized void reset() {
+        context = null;
+        pendingHistory = initialHistory;
+        turnStats.clear();
+    }
+
+    /**
+     * @return le nombre de tokens de contexte conservés
+     */
+    public synchronized int getContextLength() {
+        return context == null ? 0 : context.length;
+    }
+
+    /**
+     * @return les statistiques de chaque tour (prompt_eval_count / prompt_eval_duration
+     * permettent de mesurer le gain de la réutilisation du contexte)
+     */
+    public synchronized List<GenerationStats> getTurnStats() {
+        return Collections.unmodifiableList(new ArrayList<>(turnStats));
+    }
+}
@@ -0,0 +1,305 @@
+package org.example;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Disjoncteur et suivi de latence d'un service distant (un endpoint Ollama ou OpenWeatherMap).
+ *
+ * Après plusieurs échecs consécutifs (erreur réseau, délai dépassé, erreur 5xx), le disjoncteur
+ * s'ouvre : les appels échouent immédiatement au lieu d'occuper un thread jusqu'au délai maximal.
+ * Passé le délai d'ouverture, un seul appel d'essai est autorisé ; s'il réussit, le disjoncteur
+ * se referme.
+ *
+ * Les latences des derniers appels réussis ou abandonnés au délai d'attente donnent un délai
+ * adaptatif (3 fois le p99, dans des bornes fixes) et le délai au-delà duquel une requête
+ * idempotente peut être doublée (p95).
+ */
+public class CircuitBreaker {
+
+    private static final Logger logger = Logger.getLogger(CircuitBreaker.class.getName());
+
+    static final int DEFAULT_FAILURE_THRESHOLD = 5;
+    static final Duration DEFAULT_OPEN_DURATION = Duration.ofSeconds(30);
+    // Latences conservées, et nombre minimal de mesures avant d'adapter les délais
+    private static final int WINDOW = 128;
+    private static final int MIN_SAMPLES = 20;
+    private static final int TIMEOUT_MULTIPLIER = 3;
+    // Part maximale de requêtes doublées
+    private static final double HEDGE_BUDGET = 0.1;
+
+    /**
+     * État du disjoncteur
+     */
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final String name;
+    private final Duration minTimeout;
+    private final Duration maxTimeout;
+    private final int failureThreshold;
+    private final long openNanos;
+
+    // Protégés par le verrou de l'instance
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+    private long probeStartedAt;
+    private boolean probeInFlight;
+    private final long[] latencies = new long[WINDOW];
+    private int samples;
+    private int next;
+    private long[] sorted;
+
+    private final AtomicLong successes = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong hedges = new AtomicLong();
+
+    /**
+     * @param name       nom du service (journal, métriques)
+     * @param minTimeout délai d'attente minimal
+     * @param maxTimeout délai d'attente maximal, utilisé tant que les mesures sont insuffisantes
+     */
+    public CircuitBreaker(String name, Duration minTimeout, Duration maxTimeout) {
+        this(name, minTimeout, maxTimeout, DEFAULT_FAILURE_THRESHOLD, DEFAULT_OPEN_DURATION);
+    }
+
+    /**
+     * @param name             nom du service (journal, métriques)
+     * @param minTimeout       délai d'attente minimal
+     * @param maxTimeout       délai d'attente maximal, utilisé tant que les mesures sont insuffisantes
+     * @param failureThreshold nombre d'échecs consécutifs qui ouvrent le disjoncteur
+     * @param openDuration     durée d'ouverture avant un appel d'essai
+     */
+    public CircuitBreaker(String name, Duration minTimeout, Duration maxTimeout,
+                          int failureThreshold, Duration openDuration) {
+        if (failureThreshold <= 0) {
+            throw new IllegalArgumentException("Seuil d'échecs invalide: " + failureThreshold);
+        }
+        this.name = name;
+        this.minTimeout = minTimeout;
+        this.maxTimeout = maxTimeout;
+        this.failureThreshold = failureThreshold;
+        this.openNanos = openDuration.toNanos();
+    }
+
+    /**
+     * Demande l'autorisation d'appeler le service
+     *
+     * @return false si le disjoncteur est ouvert (l'appel doit échouer immédiatement)
+     */
+    public synchronized boolean tryAcquire() {
+        long now = System.nanoTime();
+        if (state == State.OPEN) {
+            if (now - openedAt < openNanos) {
+                rejected.incrementAndGet();
+                return false;
+            }
+            state = State.HALF_OPEN;
+            probeInFlight = false;
+        }
+        if (state == State.HALF_OPEN) {
+            // Un seul appel d'essai ; un essai sans réponse au-delà du délai maximal est abandonné
+            if (probeInFlight && now - probeStartedAt < maxTimeout.toNanos()) {
+                rejected.incrementAndGet();
+                return false;
+            }
+            probeInFlight = true;
+            probeStartedAt = now;
+        }
+        return true;
+    }
+
+    /**
+     * Signale un appel réussi (le service a répondu, quel que soit le statut hors 5xx)
+     *
+     * @param latencyNanos durée de l'appel
+     */
+    public void onSuccess(long latencyNanos) {
+        successes.incrementAndGet();
+        synchronized (this) {
+            recordLatency(latencyNanos);
+            // Percentiles recalculés toutes les 16 mesures
+            if ((samples & 15) == 0) {
+                sorted = null;
+            }
+            consecutiveFailures = 0;
+            if (state != State.CLOSED) {
+                logger.info("Disjoncteur " + name + " refermé");
+            }
+            state = State.CLOSED;
+            probeInFlight = false;
+        }
+    }
+
+    /**
+     * Signale un échec (erreur réseau, délai dépassé, erreur 5xx)
+     */
+    public void onFailure() {
+        failures.incrementAndGet();
+        synchronized (this) {
+            consecutiveFailures++;
+            if (state == State.HALF_OPEN || (state == State.CLOSED && consecutiveFailures >= failureThreshold)) {
+                state = State.OPEN;
+                openedAt = System.nanoTime();
+                probeInFlight = false;
+                logger.warning(String.format("Disjoncteur %s ouvert (%d échecs consécutifs) : appels refusés pendant %d s",
+                        name, consecutiveFailures, openNanos / 1_000_000_000L));
+            }
+        }
+    }
+
+    /**
+     * Signale un appel abandonné faute de réponse dans le délai : c'est un échec, et sa durée
+     * compte parmi les latences observées. Sans cette mesure, un service devenu durablement plus
+     * lent que le délai calculé sur ses anciennes latences échouerait à chaque appel sans que le
+     * délai ne s'allonge.
+     *
+     * @param latencyNanos durée de l'appel abandonné (le délai d'attente)
+     */
+    public void onTimeout(long latencyNanos) {
+        synchronized (this) {
+            recordLatency(latencyNanos);
+            // Percentiles recalculés sans attendre : le prochain délai doit en tenir compte
+            sorted = null;
+        }
+        onFailure();
+    }
+
+    /**
+     * Signale un appel annulé par l'appelant avant sa réponse : ni succès ni échec, mais s'il
+     * s'agissait de l'appel d'essai, un nouvel essai est autorisé sans attendre le délai maximal
+     */
+    public synchronized void onCancelled() {
+        probeInFlight = false;
+    }
+
+    // Appelé avec le verrou de l'instance
+    private void recordLatency(long latencyNanos) {
+        latencies[next] = latencyNanos;
+        next = (next + 1) % WINDOW;
+        samples++;
+    }
+
+    /**
+     * @return true si les appels sont refusés (disjoncteur ouvert ou essai en cours)
+     */
+    public synchronized boolean isOpen() {
+        return state != State.CLOSED;
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * Délai d'attente adaptatif : 3 fois le p99 des latences observées, borné.
+     * Disjoncteur ouvert ou appel d'essai : délai maximal, pour que l'essai puisse aboutir
+     * même si le service a ralenti depuis les dernières mesures.
+     */
+    public Duration getTimeout() {
+        if (isOpen()) {
+            return maxTimeout;
+        }
+        long p99 = percentile(0.99);
+        if (p99 < 0) {
+            return maxTimeout;
+        }
+        long timeout = Math.clamp(p99 * TIMEOUT_MULTIPLIER, minTimeout.toNanos(), maxTimeout.toNanos());
+        return Duration.ofNanos(timeout);
+    }
+
+    /**
+     * Délai après lequel une requête idempotente peut être doublée (p95 des latences)
+     *
+     * @return le délai, ou null si les mesures sont insuffisantes
+     */
+    public Duration getHedgeDelay() {
+        long p95 = percentile(0.95);
+        return p95 < 0 ? null : Duration.ofNanos(p95);
+    }
+
+    /**
+     * Réserve une requête doublée, dans la limite de 10 % des appels
+     *
+     * @return false si le budget est épuisé ou le disjoncteur n'est pas fermé
+     */
+    public boolean tryHedge() {
+        if (isOpen()) {
+            return false;
+        }
+        long calls = successes.get() + failures.get();
+        if (hedges.get() >= calls * HEDGE_BUDGET + 1) {
+            return false;
+        }
+        hedges.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * @param quantile quantile entre 0 et 1
+     * @return la latence en nanosecondes, ou -1 si les mesures sont insuffisantes
+     */
+    synchronized long percentile(double quantile) {
+        int count = Math.min(samples, WINDOW);
+        if (count < MIN_SAMPLES) {
+            return -1;
+        }
+        if (sorted == null) {
+            sorted = Arrays.copyOf(latencies, count);
+            Arrays.sort(sorted);
+        }
+        // Copie triée éventuellement antérieure aux dernières mesures
+        int size = sorted.length;
+        int index = (int) Math.min(size - 1, Math.ceil(quantile * size) - 1);
+        return sorted[Math.max(0, index)];
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getSuccessCount() {
+        return successes.get();
+    }
+
+    public long getFailureCount() {
+        return failures.get();
+    }
+
+    /**
+     * @return le nombre d'appels refusés par le disjoncteur ouvert
+     */
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    /**
+     * @return le nombre de requêtes doublées
+     */
+    public long getHedgeCount() {
+        return hedges.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Disjoncteur %s: %s, %d succès, %d échecs, %d refusés, %d requêtes doublées, délai %d ms",
+                name, getState(), getSuccessCount(), getFailureCount(), getRejectedCount(), getHedgeCount(),
+                getTimeout().toMillis());
+    }
+
+    /**
+     * Appel refusé sans être tenté : le disjoncteur du service est ouvert
+     */
+    public static class OpenException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        public OpenException(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package org.example;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+
+/**
+ * Estimation climatologique de la météo, quand aucun relevé n'est disponible
+ * (OpenWeatherMap injoignable ou quota épuisé, et ville jamais récupérée).
+ *
+ * Modèle volontairement simple, à partir de la saison et des coordonnées : température
+ * moyenne et amplitude saisonnière selon la latitude (saisons inversées dans l'hémisphère
+ * sud), conditions typiques de la saison, lever et coucher du soleil selon la latitude
+ * et la longitude. Suffisant pour choisir un menu d'hiver ou d'été, pas pour une prévision.
+ */
+public final class ClimateEstimator {
+
+    // Centre de la France métropolitaine, pour une ville dont les coordonnées sont inconnues
+    public static final double DEFAULT_LATITUDE = 46.6;
+    public static final double DEFAULT_LONGITUDE = 2.4;
+
+    // Moyenne annuelle : 28 °C à l'équateur, -0,35 °C par degré de latitude ;
+    // écart entre la saison froide et la moyenne : 0,18 °C par degré de latitude
+    private static final double EQUATOR_MEAN = 28.0;
+    private static final double MEAN_PER_DEGREE = 0.35;
+    private static final double AMPLITUDE_PER_DEGREE = 0.18;
+    private static final double DAILY_RANGE = 8.0;
+    // Déclinaison solaire typique de la saison la plus chaude
+    private static final double SUMMER_DECLINATION = 20.0;
+
+    private ClimateEstimator() {
+    }
+
+    /**
+     * Estimation pour une ville aux coordonnées inconnues (centre de la France)
+     *
+     * @param cityName nom de la ville (repris tel quel dans le résultat)
+     * @param saison   saison ("hiver", "printemps", "été", "automne"), voir RecettesMeteoApp.getSaison
+     */
+    public static Meteo.WeatherData estimate(String cityName, String saison) {
+        return estimate(cityName, DEFAULT_LATITUDE, DEFAULT_LONGITUDE, saison);
+    }
+
+    /**
+     * @param cityName  nom de la ville (repris tel quel dans le résultat)
+     * @param latitude  latitude en degrés
+     * @param longitude longitude en degrés
+     * @param saison    saison de l'hémisphère nord ("hiver", "printemps", "été", "automne")
+     * @return une donnée marquée {@link Meteo.WeatherData#isEstimated()}
+     */
+    public static Meteo.WeatherData estimate(String cityName, double latitude, double longitude, String saison) {
+        // -1 : hiver, +1 : été, du point de vue de l'hémisphère nord
+        int northern = switch (saison) {
+            case "hiver" -> -1;
+            case "été" -> 1;
+            default -> 0;
+        };
+        // Saison locale : inversée dans l'hémisphère sud
+        int warmth = latitude < 0 ? -northern : northern;
+        boolean autumn = latitude < 0 ? "printemps".equals(saison) : "automne".equals(saison);
+
+        double absLatitude = Math.abs(latitude);
+        double temperature = EQUATOR_MEAN - MEAN_PER_DEGREE * absLatitude + warmth * AMPLITUDE_PER_DEGREE * absLatitude;
+        temperature = Math.round(temperature * 10) / 10.0;
+
+        String mainCondition;
+        String description;
+        int humidity;
+        if (warmth < 0) {
+            mainCondition = "Clouds";
+            description = "couvert";
+            humidity = 85;
+        } else if (warmth > 0) {
+            mainCondition = "Clear";
+            description = "ciel dégagé";
+            humidity = 60;
+        } else if (autumn) {
+            mainCondition = "Rain";
+            description = "pluie modérée";
+            humidity = 80;
+        } else {
+            mainCondition = "Clouds";
+            description = "partiellement nuageux";
+            humidity = 70;
+        }
+
+        long now = System.currentTimeMillis();
+        long[] sun = sunriseSunset(latitude, longitude, northern);
+
+        return Meteo.WeatherData.builder()
+                .cityName(cityName)
+                .country("")
+                .temperature(temperature)
+                .feelsLike(temperature)
+                .tempMin(temperature - DAILY_RANGE / 2)
+                .tempMax(temperature + DAILY_RANGE / 2)
+                .humidity(humidity)
+                .pressure(1015)
+                .description(description)
+                .mainCondition(mainCondition)
+                .windSpeed(4.0)
+                .visibility(10000)
+                .latitude(latitude)
+                .longitude(longitude)
+                .timestamp(now)
+                .sunrise(sun[0])
+                .sunset(sun[1])
+                .source(Meteo.WeatherData.Source.ESTIMATE)
+                .build();
+    }
+
+    /**
+     * Lever et coucher du soleil du jour (UTC), à partir de la durée du jour
+     * pour la déclinaison de la saison et du midi solaire donné par la longitude
+     *
+     * @param season -1 (hiver), 0 (équinoxe) ou 1 (été), du point de vue de l'hémisphère nord
+     * @return {lever, coucher} en millisecondes
+     */
+    private static long[] sunriseSunset(double latitude, double longitude, int season) {
+        double declination = Math.toRadians(season * SUMMER_DECLINATION);
+        double cosHourAngle = -Math.tan(Math.toRadians(latitude)) * Math.tan(declination);
+        // Nuit ou jour polaire : bornes à 0 h ou 24 h de jour
+        double hourAngle = Math.toDegrees(Math.acos(Math.clamp(cosHourAngle, -1.0, 1.0)));
+        double dayHours = 2 * hourAngle / 15;
+        double noonHours = 12 - longitude / 15;
+
+        long midnight = LocalDate.now(ZoneOffset.UTC).atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+        long sunrise = midnight + Math.round((noonHours - dayHours / 2) * 3_600_000);
+        long sunset = midnight + Math.round((noonHours + dayHours / 2) * 3_600_000);
+        return new long[]{sunrise, sunset};
+    }
+}
@@ -0,0 +1,397 @@
+package org.example;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Fournisseur météo local, sans réseau : relevés enregistrés (réponses OpenWeatherMap au format
+ * JSON, journal météo) ou ajoutés en mémoire, et relevés synthétiques pour les villes inconnues.
+ *
+ * Une latence (base + part aléatoire) et un taux d'échec peuvent être injectés : les réponses
+ * sont différées sans bloquer de thread, ce qui permet de tester en charge toute la chaîne
+ * (Meteo, cache, prompt, serveur) à plusieurs milliers de requêtes par seconde, hors ligne
+ * et sans consommer le quota de la clé API.
+ *
+ * Exemple : Meteo.builder().provider(FixtureWeatherProvider.builder()
+ * .load(Path.of("src/jmh/resources/owm")).latency(Duration.ofMillis(50), Duration.ofMillis(20))
+ * .synthesizeUnknown(true).build()).build()
+ */
+public class FixtureWeatherProvider implements WeatherProvider {
+
+    static final int DEFAULT_GROUP_SIZE = 20;
+    // Écart maximal (en degrés) entre des coordonnées demandées et le relevé le plus proche
+    private static final double MAX_COORDINATES_DISTANCE = 0.5;
+
+    // Conditions des relevés synthétiques : condition principale, description
+    private static final String[][] CONDITIONS = {
+            {"Clear", "ciel dégagé"},
+            {"Clouds", "partiellement nuageux"},
+            {"Clouds", "couvert"},
+            {"Rain", "pluie modérée"},
+            {"Drizzle", "bruine légère"},
+            {"Snow", "légères chutes de neige"},
+            {"Mist", "brume"},
+    };
+    // Identifiants des villes synthétiques, hors de la plage d'OpenWeatherMap
+    private static final long FIRST_SYNTHETIC_ID = 900_000_000L;
+
+    // Relevés par nom de ville en minuscules et par identifiant ; les synthétiques s'y ajoutent
+    private final Map<String, Meteo.WeatherData> byCity;
+    private final Map<Long, Meteo.WeatherData> byId;
+    private final List<Meteo.WeatherData> recorded;
+    private final boolean synthesizeUnknown;
+    private final long latencyNanos;
+    private final long jitterNanos;
+    private final double failureRate;
+    private final int groupSize;
+    private final AtomicLong nextSyntheticId = new AtomicLong(FIRST_SYNTHETIC_ID);
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder unknown = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    private FixtureWeatherProvider(Builder builder) {
+        this.byCity = new ConcurrentHashMap<>(builder.byCity);
+        this.byId = new ConcurrentHashMap<>(builder.byId);
+        this.recorded = List.copyOf(builder.recorded);
+        this.synthesizeUnknown = builder.synthesizeUnknown;
+        this.latencyNanos = builder.latency.toNanos();
+        this.jitterNanos = builder.jitter.toNanos();
+        this.failureRate = builder.failureRate;
+        this.groupSize = builder.groupSize;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @Override
+    public CompletableFuture<Meteo.WeatherData> fetchByCity(String cityName, RequestScheduler.Priority priority) {
+        requests.increment();
+        String key = cityName.toLowerCase(Locale.ROOT);
+        Meteo.WeatherData data = byCity.get(key);
+        if (data == null && synthesizeUnknown) {
+            data = byCity.computeIfAbsent(key, k -> synthesizeCity(cityName));
+        }
+        if (data == null) {
+            unknown.increment();
+        }
+        return respond(data);
+    }
+
+    @Override
+    public CompletableFuture<Meteo.WeatherData> fetchByCoordinates(double latitude, double longitude,
+                                                                  RequestScheduler.Priority priority) {
+        requests.increment();
+        Meteo.WeatherData nearest = null;
+        double best = MAX_COORDINATES_DISTANCE * MAX_COORDINATES_DISTANCE;
+        for (Meteo.WeatherData data : recorded) {
+            double dLat = data.getLatitude() - latitude;
+            double dLon = data.getLongitude() - longitude;
+            double distance = dLat * dLat + dLon * dLon;
+            if (distance <= best) {
+                best = distance;
+                nearest = data;
+            }
+        }
+        if (nearest == null && synthesizeUnknown) {
+            String name = String.format(Locale.ROOT, "%.2f,%.2f", latitude, longitude);
+            nearest = synthesize(name, latitude, longitude, 0);
+        }
+        if (nearest == null) {
+            unknown.increment();
+        }
+        return respond(nearest);
+    }
+
+    @Override
+    public int getMaxGroupSize() {
+        return groupSize;
+    }
+
+    @Override
+    public CompletableFuture<Map<Long, Meteo.WeatherData>> fetchByIds(List<Long> ids,
+                                                                     RequestScheduler.Priority priority) {
+        requests.increment();
+        Map<Long, Meteo.WeatherData> found = new ConcurrentHashMap<>();
+        for (Long id : ids) {
+            Meteo.WeatherData data = byId.get(id);
+            if (data != null) {
+                found.put(id, data);
+            }
+        }
+        return delayed().thenApply(failed -> failed ? Map.of() : found);
+    }
+
+    /**
+     * Répond après la latence injectée (null en cas d'échec simulé)
+     */
+    private CompletableFuture<Meteo.WeatherData> respond(Meteo.WeatherData data) {
+        return delayed().thenApply(failed -> failed ? null : data);
+    }
+
+    /**
+     * @return futur complété après la latence injectée, avec true si l'appel doit échouer
+     */
+    private CompletableFuture<Boolean> delayed() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        boolean failed = failureRate > 0 && random.nextDouble() < failureRate;
+        if (failed) {
+            failures.increment();
+        }
+        long delay = latencyNanos + (jitterNanos > 0 ? random.nextLong(jitterNanos + 1) : 0);
+        if (delay == 0) {
+            return CompletableFuture.completedFuture(failed);
+        }
+        // Aucun thread bloqué pendant l'attente : le minuteur commun du JDK relance la suite
+        Executor executor = CompletableFuture.delayedExecutor(delay, TimeUnit.NANOSECONDS);
+        return CompletableFuture.supplyAsync(() -> failed, executor);
+    }
+
+    /**
+     * Relevé synthétique d'une ville, enregistré sous un identifiant qui lui est propre :
+     * deux villes ne partagent jamais un identifiant (sinon /group servirait l'une pour l'autre)
+     */
+    private Meteo.WeatherData synthesizeCity(String cityName) {
+        // Un identifiant déjà pris par un relevé chargé (journal d'une exécution précédente) est sauté
+        Meteo.WeatherData data;
+        do {
+            data = synthesize(cityName, nextSyntheticId.getAndIncrement());
+        } while (byId.putIfAbsent(data.getCityId(), data) != null);
+        return data;
+    }
+
+    /**
+     * Relevé synthétique déterministe pour une ville (toujours le même pour un même nom),
+     * situé en France métropolitaine
+     *
+     * @param cityId identifiant du relevé
+     */
+    static Meteo.WeatherData synthesize(String cityName, long cityId) {
+        SplittableRandom random = new SplittableRandom(cityName.toLowerCase(Locale.ROOT).hashCode());
+        return synthesize(cityName, 42.5 + random.nextDouble(8.5), -4.5 + random.nextDouble(12.5), cityId);
+    }
+
+    /**
+     * @param cityId identifiant du relevé (0 : sans identifiant, non interrogeable par /group)
+     */
+    private static Meteo.WeatherData synthesize(String cityName, double latitude, double longitude, long cityId) {
+        SplittableRandom random = new SplittableRandom(
+                Double.hashCode(latitude) * 31L + Double.hashCode(longitude) + cityName.hashCode());
+        String[] condition = CONDITIONS[random.nextInt(CONDITIONS.length)];
+        double temperature = Math.round((condition[0].equals("Snow") ? -3 : 2) * 10
+                + random.nextDouble(condition[0].equals("Snow") ? 5 : 28) * 10) / 10.0;
+        long now = System.currentTimeMillis();
+        long midnight = now - Math.floorMod(now, 86_400_000L);
+        return Meteo.WeatherData.builder()
+                .cityId(cityId)
+                .cityName(cityName)
+                .country("FR")
+                .temperature(temperature)
+                .feelsLike(temperature - random.nextDouble(3))
+                .tempMin(temperature - 2 - random.nextDouble(3))
+                .tempMax(temperature + 2 + random.nextDouble(3))
+                .humidity(40 + random.nextInt(56))
+                .pressure(995 + random.nextInt(40))
+                .description(condition[1])
+                .mainCondition(condition[0])
+                .windSpeed(Math.round(random.nextDouble(12) * 10) / 10.0)
+                .windDirection(random.nextInt(360))
+                .visibility(condition[0].equals("Mist") ? 2000 : 10000)
+                .latitude(latitude)
+                .longitude(longitude)
+                .timestamp(now)
+                .sunrise(midnight + 6 * 3_600_000L + random.nextLong(2 * 3_600_000L))
+                .sunset(midnight + 17 * 3_600_000L + random.nextLong(4 * 3_600_000L))
+                .build();
+    }
+
+    /**
+     * @return le nombre de relevés enregistrés (hors synthétiques)
+     */
+    public int getRecordedCount() {
+        return recorded.size();
+    }
+
+    public long getRequestCount() {
+        return requests.sum();
+    }
+
+    /**
+     * @return le nombre de demandes sans relevé (ville ou position inconnue)
+     */
+    public long getUnknownCount() {
+        return unknown.sum();
+    }
+
+    /**
+     * @return le nombre d'échecs simulés
+     */
+    public long getFailureCount() {
+        return failures.sum();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Fournisseur de test: %d relevés enregistrés, %d villes, %d requêtes, %d inconnues, "
+                        + "%d échecs simulés, latence %d ms (+%d ms)",
+                getRecordedCount(), byCity.size(), getRequestCount(), getUnknownCount(), getFailureCount(),
+                TimeUnit.NANOSECONDS.toMillis(latencyNanos), TimeUnit.NANOSECONDS.toMillis(jitterNanos));
+    }
+
+    /**
+     * Configuration du fournisseur de test
+     */
+    public static final class Builder {
+        private final Map<String, Meteo.WeatherData> byCity = new ConcurrentHashMap<>();
+        private final Map<Long, Meteo.WeatherData> byId = new ConcurrentHashMap<>();
+        private final List<Meteo.WeatherData> recorded = new ArrayList<>();
+        private boolean synthesizeUnknown;
+        private Duration latency = Duration.ZERO;
+        private Duration jitter = Duration.ZERO;
+        private double failureRate;
+        private int groupSize = DEFAULT_GROUP_SIZE;
+
+        private Builder() {
+        }
+
+        /**
+         * Ajoute un relevé, servi pour son nom de ville et son identifiant
+         */
+        public Builder add(Meteo.WeatherData data) {
+            return add(data.getCityName(), data);
+        }
+
+        /**
+         * Ajoute un relevé servi pour un nom de ville donné (en plus de son propre nom)
+         */
+        public Builder add(String cityName, Meteo.WeatherData data) {
+            if (data == null) {
+                return this;
+            }
+            recorded.add(data);
+            byCity.put(cityName.toLowerCase(Locale.ROOT), data);
+            if (data.getCityName() != null) {
+                byCity.putIfAbsent(data.getCityName().toLowerCase(Locale.ROOT), data);
+            }
+            if (data.getCityId() > 0) {
+                byId.put(data.getCityId(), data);
+            }
+            return this;
+        }
+
+        /**
+         * Charge des réponses OpenWeatherMap enregistrées : un fichier .json ou tous ceux d'un
+         * répertoire, chacun contenant une réponse /weather ou /group
+         *
+         * @param path fichier ou répertoire
+         */
+        public Builder load(Path path) throws IOException {
+            if (Files.isDirectory(path)) {
+                try (Stream<Path> files = Files.list(path)) {
+                    for (Path file : files.filter(f -> f.toString().endsWith(".json")).sorted().toList()) {
+                        loadFile(file);
+                    }
+                }
+            } else {
+                loadFile(path);
+            }
+            return this;
+        }
+
+        private void loadFile(Path file) throws IOException {
+            byte[] json = Files.readAllBytes(file);
+            JSONObject root = new JSONObject(new String(json, StandardCharsets.UTF_8));
+            JSONArray list = root.optJSONArray("list");
+            if (list == null) {
+                add(OpenWeatherMapProvider.parseWeatherData(json));
+                return;
+            }
+            for (int i = 0; i < list.length(); i++) {
+                add(OpenWeatherMapProvider.parseWeatherData(list.getJSONObject(i)));
+            }
+        }
+
+        /**
+         * Charge le dernier relevé de chaque ville d'un journal météo (relevés réels enregistrés)
+         */
+        public Builder load(WeatherSnapshotLog log) throws IOException {
+            Map<String, WeatherSnapshotLog.Snapshot> latest = new ConcurrentHashMap<>();
+            log.replay(snapshot -> {
+                if (snapshot.getKey().startsWith("city:")) {
+                    latest.put(snapshot.getKey(), snapshot);
+                }
+            });
+            for (Map.Entry<String, WeatherSnapshotLog.Snapshot> entry : latest.entrySet()) {
+                add(entry.getKey().substring("city:".length()), entry.getValue().toWeatherData());
+            }
+            return this;
+        }
+
+        /**
+         * @param synthesizeUnknown true pour servir un relevé synthétique (déterministe) aux villes
+         *                          et positions inconnues plutôt que null
+         */
+        public Builder synthesizeUnknown(boolean synthesizeUnknown) {
+            this.synthesizeUnknown = synthesizeUnknown;
+            return this;
+        }
+
+        /**
+         * @param latency latence de chaque réponse
+         * @param jitter  latence supplémentaire aléatoire, entre 0 et jitter
+         */
+        public Builder latency(Duration latency, Duration jitter) {
+            if (latency.isNegative() || jitter.isNegative()) {
+                throw new IllegalArgumentException("Latence invalide: " + latency + " + " + jitter);
+            }
+            this.latency = latency;
+            this.jitter = jitter;
+            return this;
+        }
+
+        /**
+         * @param failureRate part des appels qui échouent (réponse null), entre 0 et 1
+         */
+        public Builder failureRate(double failureRate) {
+            if (failureRate < 0 || failureRate > 1) {
+                throw new IllegalArgumentException("Taux d'échec invalide: " + failureRate);
+            }
+            this.failureRate = failureRate;
+            return this;
+        }
+
+        /**
+         * @param groupSize nombre maximal d'identifiants par requête groupée (0 : pas de requête groupée)
+         */
+        public Builder groupSize(int groupSize) {
+            if (groupSize < 0) {
+                throw new IllegalArgumentException("Taille de groupe invalide: " + groupSize);
+            }
+            this.groupSize = groupSize;
+            return this;
+        }
+
+        public FixtureWeatherProvider build() {
+            return new FixtureWeatherProvider(this);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package org.example;
+
+import org.json.JSONObject;
+
+/**
+ * Statistiques de génération renvoyées par Ollama dans le dernier chunk
+ * (ou dans la réponse complète en mode non streamé).
+ * Les durées sont exprimées en nanosecondes, comme dans l'API Ollama.
+ */
+public class GenerationStats {
+    private final long evalCount;
+    private final long evalDuration;
+    private final long promptEvalCount;
+    private final long promptEvalDuration;
+    private final long loadDuration;
+    private final long totalDuration;
+
+    GenerationStats(long evalCount, long evalDuration, long promptEvalCount,
+                    long promptEvalDuration, long loadDuration, long totalDuration) {
+        this.evalCount = evalCount;
+        this.evalDuration = evalDuration;
+        this.promptEvalCount = promptEvalCount;
+        this.promptEvalDuration = promptEvalDuration;
+        this.loadDuration = loadDuration;
+        this.totalDuration = totalDuration;
+    }
+
+    /**
+     * Extrait les statistiques d'un objet JSON Ollama (champs absents = 0)
+     *
+     * @param json le chunk final ou la réponse complète
+     */
+    static GenerationStats fromJson(JSONObject json) {
+        return new GenerationStats(
+                json.optLong("eval_count", 0),
+                json.optLong("eval_duration", 0),
+                json.optLong("prompt_eval_count", 0),
+                json.optLong("prompt_eval_duration", 0),
+                json.optLong("load_duration", 0),
+                json.optLong("total_duration", 0));
+    }
+
+    public long getEvalCount() {
+        return evalCount;
+    }
+
+    public long getEvalDuration() {
+        return evalDuration;
+    }
+
+    public long getPromptEvalCount() {
+        return promptEvalCount;
+    }
+
+    public long getPromptEvalDuration() {
+        return promptEvalDuration;
+    }
+
+    public long getLoadDuration() {
+        return loadDuration;
+    }
+
+    public long getTotalDuration() {
+        return totalDuration;
+    }
+
+    /**
+     * Débit de génération en tokens par seconde (0 si inconnu)
+     */
+    public double getTokensPerSecond() {
+        return evalDuration > 0 ? evalCount * 1_000_000_000.0 / evalDuration : 0.0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("prompt: %d tokens en %.2f s, génération: %d tokens en %.2f s (%.1f tokens/s)",
+                promptEvalCount, promptEvalDuration / 1e9, evalCount, evalDuration / 1e9, getTokensPerSecond());
+    }
+}
@@ -0,0 +1,407 @@
+package org.example;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Compactage de l'historique de préférences envoyé au LLM, dans un budget de tokens.
+ *
+ * Les derniers échanges sont conservés tels quels ; les plus anciens sont remplacés par
+ * la liste des préférences qui en sont extraites (n'aime pas : choux, champignons ; ne
+ * mange pas : porc ...). La taille du prompt reste ainsi bornée quelle que soit la longueur
+ * de l'historique.
+ *
+ * Les préférences extraites d'un préfixe d'historique sont mises en cache : quand un
+ * historique s'allonge de quelques échanges, seuls les messages nouvellement sortis de la
+ * fenêtre conservée sont analysés.
+ */
+public class HistoryManager {
+
+    static final int DEFAULT_TOKEN_BUDGET = 1024;
+    // Estimation grossière : ~4 caractères par token, plus quelques tokens de balisage par message
+    private static final int CHARS_PER_TOKEN = 4;
+    private static final int TOKENS_PER_MESSAGE = 4;
+    // Part du budget réservée aux échanges conservés tels quels
+    private static final double VERBATIM_SHARE = 0.75;
+    private static final int MAX_FACTS_PER_CATEGORY = 20;
+    private static final int MAX_FACT_LENGTH = 40;
+    private static final int CACHE_SIZE = 1024;
+
+    /**
+     * Catégories de préférences reconnues dans les messages de l'utilisateur
+     */
+    public enum Category {
+        DIET("régime"),
+        ALLERGY("allergies"),
+        AVOID("ne mange pas"),
+        DISLIKE("n'aime pas"),
+        LIKE("aime");
+
+        private final String label;
+
+        Category(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    private static final String ARTICLE = "(?:les |le |la |l'|des |du |de la |de l'|de |d')?";
+    private static final String ITEMS = "([^.;:!?()\\n]+)";
+    private static final Pattern DIET = Pattern.compile(
+            "(?iu)\\bje (?:suis|mange) (v[ée]g[ée]tarien(?:ne)?|v[ée]g[ée]talien(?:ne)?|v[ée]gan(?:e)?|halal|casher|sans gluten)");
+    private static final Pattern ALLERGY = Pattern.compile(
+            "(?iu)\\ballergique (?:aux |au |à la |à l'|à )?" + ITEMS);
+    private static final Pattern AVOID = Pattern.compile(
+            "(?iu)\\b(?:je ne (?:mange|veux|supporte) (?:pas|plus|jamais)|pas de|jamais de|sans) " + ARTICLE + ITEMS);
+    private static final Pattern DISLIKE = Pattern.compile(
+            "(?iu)\\bje n'(?:aime|apprécie|adore) (?:pas|plus|guère)(?: du tout| trop| beaucoup| vraiment)? " + ARTICLE + ITEMS);
+    private static final Pattern LIKE = Pattern.compile(
+            "(?iu)\\bj'(?:aime|adore|apprécie)(?: bien| beaucoup| vraiment)? " + ARTICLE + ITEMS);
+    // Fin de l'énumération des aliments (ex : "les choux que proposez vous par 10°")
+    private static final Pattern ITEMS_END = Pattern.compile(
+            "(?iu) (?:que|qu'|qui|quand|par|pour|car|parce|mais|surtout|avec|dans|sauf|alors|donc|svp|s'il)\\b.*$");
+    private static final Pattern ITEMS_SEPARATOR = Pattern.compile("(?iu)\\s*(?:,|\\bet\\b|\\bni\\b|\\bou\\b)\\s*");
+
+    private final int tokenBudget;
+    private final int verbatimBudget;
+
+    // Préférences extraites par préfixe d'historique (empreinte -> préfixe et état), LRU ;
+    // protégée par le verrou de l'instance
+    private final LinkedHashMap<Long, CachedPrefix> prefixCache = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, CachedPrefix> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    private final AtomicLong parsedMessages = new AtomicLong();
+    private final AtomicLong compactions = new AtomicLong();
+
+    /**
+     * @param tokenBudget nombre de tokens (estimé) alloué à l'historique dans chaque requête
+     */
+    public HistoryManager(int tokenBudget) {
+        if (tokenBudget <= 0) {
+            throw new IllegalArgumentException("Budget de tokens invalide: " + tokenBudget);
+        }
+        this.tokenBudget = tokenBudget;
+        this.verbatimBudget = (int) (tokenBudget * VERBATIM_SHARE);
+    }
+
+    public int getTokenBudget() {
+        return tokenBudget;
+    }
+
+    /**
+     * Estimation du nombre de tokens d'un texte (~4 caractères par token)
+     *
+     * @param text texte à estimer
+     */
+    static int estimateTokens(String text) {
+        return text == null ? 0 : estimateTokens(text.length());
+    }
+
+    /**
+     * @param chars nombre de caractères
+     */
+    static int estimateTokens(int chars) {
+        return (chars + CHARS_PER_TOKEN - 1) / CHARS_PER_TOKEN;
+    }
+
+    /**
+     * Compacte un historique pour qu'il tienne dans le budget
+     *
+     * @param history historique (alternance personne/assistant, en commençant par la personne)
+     * @return les derniers échanges conservés et le résumé des plus anciens
+     */
+    public Compacted compact(String[] history) {
+        if (history == null || history.length == 0) {
+            return Compacted.EMPTY;
+        }
+
+        // Fenêtre conservée : les derniers messages qui tiennent dans le budget,
+        // en commençant par un message de la personne pour garder l'alternance
+        int start = history.length;
+        int used = 0;
+        while (start > 0) {
+            int cost = messageTokens(history[start - 1]);
+            if (used + cost > verbatimBudget) {
+                break;
+            }
+            used += cost;
+            start--;
+        }
+        // Dernier message trop long pour la fenêtre (start == history.length) : il n'est pas
+        // conservé tel quel mais ses préférences sont reprises dans le résumé
+        if (start % 2 != 0 && start < history.length) {
+            used -= messageTokens(history[start]);
+            start++;
+        }
+        String[] recent = start == 0 ? history : Arrays.copyOfRange(history, start, history.length);
+        if (start == 0) {
+            return new Compacted(null, recent, used);
+        }
+
+        compactions.incrementAndGet();
+        String summary = factsFor(history, start).render(tokenBudget - used);
+        return new Compacted(summary, recent, used + estimateTokens(summary));
+    }
+
+    private static int messageTokens(String message) {
+        return estimateTokens(message) + TOKENS_PER_MESSAGE;
+    }
+
+    /**
+     * Préférences extraites des "end" premiers messages, en repartant du plus long préfixe déjà analysé
+     */
+    private Facts factsFor(String[] history, int end) {
+        long[] prefixHash = new long[end + 1];
+        for (int i = 0; i < end; i++) {
+            prefixHash[i + 1] = (prefixHash[i] + fingerprint(history[i])) * 0x9E3779B97F4A7C15L + i;
+        }
+
+        Facts facts = Facts.EMPTY;
+        int from = 0;
+        synchronized (this) {
+            // Seuls les préfixes qui se terminent sur un échange complet sont mis en cache
+            for (int n = end; n > 0; n -= 2) {
+                CachedPrefix cached = prefixCache.get(prefixHash[n]);
+                // L'empreinte n'est qu'un indice : l'historique partagé entre utilisateurs ne doit
+                // jamais recevoir les préférences d'un autre préfixe de même empreinte
+                if (cached != null && cached.matches(history, n)) {
+                    facts = cached.facts;
+                    from = n;
+                    break;
+                }
+            }
+        }
+        if (from == end) {
+            return facts;
+        }
+
+        Facts.Builder builder = facts.toBuilder();
+        for (int i = from; i < end; i += 2) {
+            // Seuls les messages de la personne portent ses préférences
+            builder.extract(history[i]);
+            parsedMessages.incrementAndGet();
+        }
+        Facts result = builder.build(end);
+        synchronized (this) {
+            prefixCache.put(prefixHash[end], new CachedPrefix(Arrays.copyOf(history, end), result));
+        }
+        return result;
+    }
+
+    /**
+     * Entrée du cache : les messages du préfixe, comparés à chaque utilisation, et leurs préférences
+     */
+    private static final class CachedPrefix {
+        final String[] messages;
+        final Facts facts;
+
+        CachedPrefix(String[] messages, Facts facts) {
+            this.messages = messages;
+            this.facts = facts;
+        }
+
+        boolean matches(String[] history, int n) {
+            return messages.length == n && Arrays.equals(messages, 0, n, history, 0, n);
+        }
+    }
+
+    private static long fingerprint(String message) {
+        return message == null ? 0 : (long) message.hashCode() << 32 | message.length();
+    }
+
+    /**
+     * @return le nombre de messages analysés pour en extraire des préférences
+     */
+    public long getParsedMessageCount() {
+        return parsedMessages.get();
+    }
+
+    /**
+     * @return le nombre d'historiques qui ont dû être compactés
+     */
+    public long getCompactionCount() {
+        return compactions.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Historique LLM: budget %d tokens, %d historiques compactés, %d messages analysés",
+                tokenBudget, getCompactionCount(), getParsedMessageCount());
+    }
+
+    /**
+     * Historique compacté : résumé des anciens échanges (null s'il n'y en a pas) et derniers échanges
+     */
+    public static final class Compacted {
+        static final Compacted EMPTY = new Compacted(null, new String[0], 0);
+
+        private final String summary;
+        private final String[] recent;
+        private final int estimatedTokens;
+
+        Compacted(String summary, String[] recent, int estimatedTokens) {
+            this.summary = summary;
+            this.recent = recent;
+            this.estimatedTokens = estimatedTokens;
+        }
+
+        /**
+         * @return les préférences extraites des échanges anciens, ou null
+         */
+        public String getSummary() {
+            return summary;
+        }
+
+        /**
+         * @return les derniers échanges, en commençant par un message de la personne
+         */
+        public String[] getRecent() {
+            return recent;
+        }
+
+        public int getEstimatedTokens() {
+            return estimatedTokens;
+        }
+    }
+
+    /**
+     * Préférences extraites d'un préfixe d'historique (immuable)
+     */
+    static final class Facts {
+        static final Facts EMPTY = new Facts(new EnumMap<>(Category.class), 0);
+
+        // Par catégorie, de la plus ancienne à la plus récente
+        private final Map<Category, List<String>> items;
+        private final int length;
+        private final String rendered;
+
+        private Facts(Map<Category, List<String>> items, int length) {
+            this.items = items;
+            this.length = length;
+            this.rendered = render(items);
+        }
+
+        Map<Category, List<String>> getItems() {
+            return items;
+        }
+
+        Builder toBuilder() {
+            return new Builder(items);
+        }
+
+        /**
+         * Texte des préférences ; les plus anciennes sont retirées s'il dépasse le budget
+         */
+        String render(int maxTokens) {
+            if (rendered == null || estimateTokens(rendered) <= maxTokens) {
+                return rendered;
+            }
+            Map<Category, List<String>> kept = new EnumMap<>(Category.class);
+            items.forEach((category, values) -> kept.put(category, new ArrayList<>(values)));
+            String text = rendered;
+            while (text != null && estimateTokens(text) > maxTokens) {
+                List<String> largest = null;
+                for (List<String> values : kept.values()) {
+                    if (largest == null || values.size() > largest.size()) {
+                        largest = values;
+                    }
+                }
+                largest.remove(0);
+                text = render(kept);
+            }
+            return text;
+        }
+
+        private static String render(Map<Category, List<String>> items) {
+            StringBuilder text = new StringBuilder();
+            for (Map.Entry<Category, List<String>> entry : items.entrySet()) {
+                if (entry.getValue().isEmpty()) {
+                    continue;
+                }
+                text.append(text.isEmpty() ? "" : " ; ")
+                        .append(entry.getKey().getLabel()).append(" : ")
+                        .append(String.join(", ", entry.getValue()));
+            }
+            return text.isEmpty() ? null
+                    : "Préférences exprimées plus tôt dans la conversation : " + text + ".";
+        }
+
+        static final class Builder {
+            private final Map<Category, LinkedHashSet<String>> items = new EnumMap<>(Category.class);
+
+            Builder(Map<Category, List<String>> from) {
+                for (Category category : Category.values()) {
+                    items.put(category, new LinkedHashSet<>(from.getOrDefault(category, List.of())));
+                }
+            }
+
+            void extract(String message) {
+                if (message == null || message.isBlank()) {
+                    return;
+                }
+                String text = message.replace('’', '\'').replaceAll("\\s+", " ");
+                Matcher diet = DIET.matcher(text);
+                while (diet.find()) {
+                    add(Category.DIET, diet.group(1));
+                }
+                extract(Category.ALLERGY, ALLERGY, text);
+                extract(Category.DISLIKE, DISLIKE, text);
+                extract(Category.AVOID, AVOID, text);
+                extract(Category.LIKE, LIKE, text);
+            }
+
+            private void extract(Category category, Pattern pattern, String text) {
+                Matcher m = pattern.matcher(text);
+                while (m.find()) {
+                    String list = ITEMS_END.matcher(m.group(1)).replaceFirst("");
+                    for (String item : ITEMS_SEPARATOR.split(list)) {
+                        add(category, item);
+                    }
+                }
+            }
+
+            private void add(Category category, String item) {
+                String value = item.strip().replaceAll("^(?:les |le |la |l'|des |du |de |d'|aux |au |à )", "")
+                        .toLowerCase(Locale.ROOT);
+                if (value.isEmpty() || value.length() > MAX_FACT_LENGTH) {
+                    return;
+                }
+                // La préférence la plus récente l'emporte (ex : "finalement j'aime les choux")
+                if (category == Category.LIKE) {
+                    items.get(Category.DISLIKE).remove(value);
+                    items.get(Category.AVOID).remove(value);
+                } else if (category == Category.DISLIKE || category == Category.AVOID) {
+                    items.get(Category.LIKE).remove(value);
+                }
+                LinkedHashSet<String> values = items.get(category);
+                values.remove(value);
+                values.add(value);
+                if (values.size() > MAX_FACTS_PER_CATEGORY) {
+                    values.remove(values.iterator().next());
+                }
+            }
+
+            Facts build(int length) {
+                Map<Category, List<String>> frozen = new EnumMap<>(Category.class);
+                items.forEach((category, values) -> frozen.put(category, List.copyOf(values)));
+                return new Facts(frozen, length);
+            }
+        }
+    }
+}
@@ -0,0 +1,372 @@
+package org.example;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Métriques des appels au LLM, par modèle : taille des prompts (caractères et tokens estimés)
+ * et statistiques renvoyées par Ollama (prompt_eval_count/duration, eval_count/duration,
+ * load_duration, total_duration).
+ *
+ * Chaque grandeur est enregistrée dans un histogramme à échelle logarithmique (8 intervalles
+ * par puissance de 2, soit une précision d'environ 12 %) : l'enregistrement se fait sans verrou,
+ * par incrément de compteurs atomiques. L'export suit le format texte de Prometheus.
+ */
+public class LLMMetrics {
+
+    // Au-delà, le modèle n'était pas en mémoire (un modèle déjà chargé répond en quelques ms)
+    static final long COLD_LOAD_THRESHOLD_NANOS = 500_000_000L;
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99};
+
+    /**
+     * Grandeurs mesurées pour chaque appel
+     */
+    public enum Metric {
+        PROMPT_CHARS("llm_prompt_chars", "Taille du prompt envoyé (caractères)", false),
+        PROMPT_TOKENS_ESTIMATED("llm_prompt_tokens_estimated", "Taille du prompt estimée (caractères / 4)", false),
+        PROMPT_EVAL_TOKENS("llm_prompt_eval_tokens", "Tokens du prompt évalués par le modèle (prompt_eval_count)", false),
+        PROMPT_EVAL_DURATION("llm_prompt_eval_duration_seconds", "Durée d'évaluation du prompt (prompt_eval_duration)", true),
+        EVAL_TOKENS("llm_eval_tokens", "Tokens générés (eval_count)", false),
+        EVAL_DURATION("llm_eval_duration_seconds", "Durée de génération (eval_duration)", true),
+        LOAD_DURATION("llm_load_duration_seconds", "Durée de chargement du modèle (load_duration)", true),
+        TOTAL_DURATION("llm_total_duration_seconds", "Durée totale côté Ollama (total_duration)", true),
+        REQUEST_DURATION("llm_request_duration_seconds", "Durée de l'appel vue par le client", true);
+
+        private final String name;
+        private final String help;
+        private final boolean nanos;
+
+        Metric(String name, String help, boolean nanos) {
+            this.name = name;
+            this.help = help;
+            this.nanos = nanos;
+        }
+    }
+
+    private final ConcurrentHashMap<String, ModelMetrics> models = new ConcurrentHashMap<>();
+
+    /**
+     * Enregistre un appel terminé
+     *
+     * @param model        le nom du modèle
+     * @param request      le corps JSON envoyé à Ollama
+     * @param stats        les statistiques de la réponse (null si absentes)
+     * @param elapsedNanos durée de l'appel vue par le client
+     */
+    public void record(String model, JSONObject request, GenerationStats stats, long elapsedNanos) {
+        ModelMetrics m = forModel(model);
+        int chars = promptChars(request);
+        m.calls.increment();
+        m.record(Metric.PROMPT_CHARS, chars);
+        m.record(Metric.PROMPT_TOKENS_ESTIMATED, HistoryManager.estimateTokens(chars));
+        m.record(Metric.REQUEST_DURATION, elapsedNanos);
+        if (stats == null) {
+            return;
+        }
+        m.record(Metric.PROMPT_EVAL_TOKENS, stats.getPromptEvalCount());
+        m.record(Metric.PROMPT_EVAL_DURATION, stats.getPromptEvalDuration());
+        m.record(Metric.EVAL_TOKENS, stats.getEvalCount());
+        m.record(Metric.EVAL_DURATION, stats.getEvalDuration());
+        m.record(Metric.LOAD_DURATION, stats.getLoadDuration());
+        m.record(Metric.TOTAL_DURATION, stats.getTotalDuration());
+        if (stats.getLoadDuration() >= COLD_LOAD_THRESHOLD_NANOS) {
+            m.coldLoads.increment();
+        }
+    }
+
+    /**
+     * Enregistre un appel refusé par Ollama (statut HTTP d'erreur)
+     *
+     * @param model le nom du modèle
+     */
+    public void recordError(String model) {
+        forModel(model).errors.increment();
+    }
+
+    /**
+     * Enregistre une génération interrompue dès que la réponse était complète. Ollama n'envoie
+     * alors pas ses statistiques : seuls les tokens reçus sont comptés, à part des histogrammes
+     * (sans durée de génération, ils fausseraient le débit).
+     *
+     * @param model           le nom du modèle
+     * @param generatedTokens tokens reçus avant l'interruption
+     */
+    public void recordEarlyStop(String model, long generatedTokens) {
+        ModelMetrics m = forModel(model);
+        m.earlyStops.increment();
+        m.earlyStopTokens.add(generatedTokens);
+    }
+
+    private ModelMetrics forModel(String model) {
+        String key = model == null ? "" : model;
+        ModelMetrics m = models.get(key);
+        return m != null ? m : models.computeIfAbsent(key, k -> new ModelMetrics());
+    }
+
+    /**
+     * Nombre de caractères du prompt : prompt et système de /api/generate, ou contenu des messages de /api/chat
+     */
+    static int promptChars(JSONObject request) {
+        if (request == null) {
+            return 0;
+        }
+        int chars = request.optString("prompt", "").length() + request.optString("system", "").length();
+        JSONArray messages = request.optJSONArray("messages");
+        if (messages != null) {
+            for (int i = 0; i < messages.length(); i++) {
+                JSONObject message = messages.optJSONObject(i);
+                if (message != null) {
+                    chars += message.optString("content", "").length();
+                }
+            }
+        }
+        return chars;
+    }
+
+    /**
+     * @return les modèles ayant au moins un appel enregistré
+     */
+    public List<String> getModels() {
+        List<String> names = new ArrayList<>(models.keySet());
+        Collections.sort(names);
+        return names;
+    }
+
+    /**
+     * @return l'histogramme d'une grandeur pour un modèle, ou null si le modèle n'a pas été appelé
+     */
+    public Histogram getHistogram(String model, Metric metric) {
+        ModelMetrics m = models.get(model);
+        return m == null ? null : m.histograms[metric.ordinal()];
+    }
+
+    public long getCallCount(String model) {
+        ModelMetrics m = models.get(model);
+        return m == null ? 0 : m.calls.sum();
+    }
+
+    /**
+     * @return le nombre d'appels pour lesquels le modèle a dû être chargé en mémoire
+     */
+    public long getColdLoadCount(String model) {
+        ModelMetrics m = models.get(model);
+        return m == null ? 0 : m.coldLoads.sum();
+    }
+
+    /**
+     * @return le nombre de générations interrompues dès que la réponse était complète
+     */
+    public long getEarlyStopCount(String model) {
+        ModelMetrics m = models.get(model);
+        return m == null ? 0 : m.earlyStops.sum();
+    }
+
+    /**
+     * @return le nombre de tokens reçus lors des générations interrompues
+     */
+    public long getEarlyStopTokens(String model) {
+        ModelMetrics m = models.get(model);
+        return m == null ? 0 : m.earlyStopTokens.sum();
+    }
+
+    /**
+     * @return le débit de génération moyen (tokens générés / durée de génération), 0 si inconnu
+     */
+    public double getTokensPerSecond(String model) {
+        ModelMetrics m = models.get(model);
+        if (m == null) {
+            return 0.0;
+        }
+        long duration = m.histograms[Metric.EVAL_DURATION.ordinal()].getSum();
+        return duration > 0 ? m.histograms[Metric.EVAL_TOKENS.ordinal()].getSum() * 1e9 / duration : 0.0;
+    }
+
+    /**
+     * Export au format texte de Prometheus (une série par modèle, quantiles 0.5 / 0.9 / 0.99)
+     */
+    public String toPrometheus() {
+        StringBuilder out = new StringBuilder();
+        List<String> names = getModels();
+
+        counter(out, "llm_requests_total", "Appels au LLM terminés", names, m -> m.calls.sum());
+        counter(out, "llm_errors_total", "Appels au LLM refusés (statut HTTP d'erreur)", names, m -> m.errors.sum());
+        counter(out, "llm_cold_loads_total", "Appels ayant nécessité le chargement du modèle", names, m -> m.coldLoads.sum());
+        counter(out, "llm_early_stops_total", "Générations interrompues dès la réponse complète", names, m -> m.earlyStops.sum());
+        counter(out, "llm_early_stop_tokens_total", "Tokens reçus lors des générations interrompues", names, m -> m.earlyStopTokens.sum());
+
+        out.append("# HELP llm_eval_tokens_per_second Débit de génération moyen\n");
+        out.append("# TYPE llm_eval_tokens_per_second gauge\n");
+        for (String model : names) {
+            out.append("llm_eval_tokens_per_second{model=\"").append(escape(model)).append("\"} ")
+                    .append(format(getTokensPerSecond(model))).append('\n');
+        }
+
+        for (Metric metric : Metric.values()) {
+            out.append("# HELP ").append(metric.name).append(' ').append(metric.help).append('\n');
+            out.append("# TYPE ").append(metric.name).append(" summary\n");
+            double scale = metric.nanos ? 1e-9 : 1.0;
+            for (String model : names) {
+                Histogram h = models.get(model).histograms[metric.ordinal()];
+                String label = "model=\"" + escape(model) + "\"";
+                for (double q : QUANTILES) {
+                    out.append(metric.name).append('{').append(label).append(",quantile=\"").append(q).append("\"} ")
+                            .append(format(h.getCount() == 0 ? Double.NaN : h.getValueAtQuantile(q) * scale))
+                            .append('\n');
+                }
+                out.append(metric.name).append("_sum{").append(label).append("} ")
+                        .append(format(h.getSum() * scale)).append('\n');
+                out.append(metric.name).append("_count{").append(label).append("} ")
+                        .append(h.getCount()).append('\n');
+            }
+        }
+        return out.toString();
+    }
+
+    private interface CounterValue {
+        long get(ModelMetrics m);
+    }
+
+    private void counter(StringBuilder out, String name, String help, List<String> names, CounterValue value) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(" counter\n");
+        for (String model : names) {
+            out.append(name).append("{model=\"").append(escape(model)).append("\"} ")
+                    .append(value.get(models.get(model))).append('\n');
+        }
+    }
+
+    private static String escape(String label) {
+        return label.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static String format(double value) {
+        if (Double.isNaN(value)) {
+            return "NaN";
+        }
+        return value == Math.rint(value) && Math.abs(value) < 1e15 ? Long.toString((long) value) : Double.toString(value);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder("Métriques LLM:");
+        for (String model : getModels()) {
+            Histogram total = getHistogram(model, Metric.REQUEST_DURATION);
+            Histogram prompt = getHistogram(model, Metric.PROMPT_TOKENS_ESTIMATED);
+            text.append(String.format(Locale.ROOT,
+                    "%n  %s: %d appels (%d chargements à froid), %.1f tokens/s, prompt ~%d tokens (p50), durée p50 %.2f s / p99 %.2f s",
+                    model, getCallCount(model), getColdLoadCount(model), getTokensPerSecond(model),
+                    prompt.getValueAtQuantile(0.5), total.getValueAtQuantile(0.5) / 1e9,
+                    total.getValueAtQuantile(0.99) / 1e9));
+        }
+        return text.toString();
+    }
+
+    private static final class ModelMetrics {
+        final Histogram[] histograms = new Histogram[Metric.values().length];
+        final LongAdder calls = new LongAdder();
+        final LongAdder errors = new LongAdder();
+        final LongAdder coldLoads = new LongAdder();
+        final LongAdder earlyStops = new LongAdder();
+        final LongAdder earlyStopTokens = new LongAdder();
+
+        ModelMetrics() {
+            for (int i = 0; i < histograms.length; i++) {
+                histograms[i] = new Histogram();
+            }
+        }
+
+        void record(Metric metric, long value) {
+            histograms[metric.ordinal()].record(value);
+        }
+    }
+
+    /**
+     * Histogramme à échelle logarithmique de valeurs positives, enregistrement sans verrou.
+     * Les valeurs de 0 à 7 ont chacune leur intervalle ; au-delà, chaque puissance de 2
+     * est découpée en 8 intervalles.
+     */
+    public static final class Histogram {
+        private static final int SUB_BITS = 3;
+        private static final int SUB_BUCKETS = 1 << SUB_BITS;
+        private static final int BUCKETS = (64 - SUB_BITS) << SUB_BITS;
+
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final AtomicLong max = new AtomicLong();
+
+        /**
+         * @param value valeur à enregistrer (les valeurs négatives comptent pour 0)
+         */
+        public void record(long value) {
+            long v = Math.max(0, value);
+            counts.incrementAndGet(bucket(v));
+            count.increment();
+            sum.add(v);
+            long current = max.get();
+            while (v > current && !max.compareAndSet(current, v)) {
+                current = max.get();
+            }
+        }
+
+        static int bucket(long value) {
+            if (value < SUB_BUCKETS) {
+                return (int) value;
+            }
+            int exponent = 63 - Long.numberOfLeadingZeros(value);
+            int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+            return (exponent - SUB_BITS + 1) << SUB_BITS | sub;
+        }
+
+        // Plus grande valeur de l'intervalle
+        static long upperBound(int bucket) {
+            if (bucket < SUB_BUCKETS) {
+                return bucket;
+            }
+            int shift = (bucket >>> SUB_BITS) - 1;
+            long lower = (long) (SUB_BUCKETS | bucket & (SUB_BUCKETS - 1)) << shift;
+            return lower + (1L << shift) - 1;
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        public long getSum() {
+            return sum.sum();
+        }
+
+        public long getMax() {
+            return max.get();
+        }
+
+        /**
+         * @param quantile quantile entre 0 et 1 (ex : 0.99)
+         * @return borne haute de l'intervalle contenant ce quantile (0 si vide)
+         */
+        public long getValueAtQuantile(double quantile) {
+            long total = getCount();
+            if (total == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(quantile * total));
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += counts.get(i);
+                if (seen >= rank) {
+                    return Math.min(upperBound(i), getMax());
+                }
+            }
+            return getMax();
+        }
+    }
+}
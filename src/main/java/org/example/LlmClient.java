@@ -0,0 +1,294 @@
+package org.example;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Backend LLM utilisé par l'application et le serveur de menus.
+ *
+ * Implémentations : {@link OllamaClient} (API HTTP d'Ollama) et {@link StubLlmClient}
+ * (réponses générées en mémoire, à débit et latence configurables, pour mesurer
+ * l'orchestration sans modèle). Chaque instance porte sa configuration, son gestionnaire
+ * d'historique et ses métriques : plusieurs clients peuvent coexister dans le même processus.
+ */
+public interface LlmClient {
+
+    /**
+     * @return les noms des modèles disponibles
+     */
+    String[] listModels() throws Exception;
+
+    /**
+     * Charge un modèle en mémoire sans rien générer, pour masquer le temps de chargement à froid
+     *
+     * @param model     le nom du modèle LLM à précharger
+     * @param keepAlive durée pendant laquelle le modèle doit rester chargé
+     * @return futur complété quand le modèle est chargé
+     */
+    CompletableFuture<Void> preloadModel(String model, Duration keepAlive);
+
+    /**
+     * Génération simple (non chat)
+     *
+     * @param model  le nom du modèle LLM à utiliser
+     * @param prompt le texte d'entrée pour la génération
+     */
+    String generate(String model, String prompt) throws Exception;
+
+    /**
+     * Chat avec historique
+     *
+     * @param model            le nom du modèle LLM à utiliser
+     * @param systemPrompt     le prompt système (instructions pour le modèle)
+     * @param userMessage      le message utilisateur actuel
+     * @param previousMessages un tableau de messages précédents (alternance personne/assistant)
+     */
+    String chat(String model, String systemPrompt, String userMessage, String[] previousMessages) throws Exception;
+
+    /**
+     * Chat avec historique, sans bloquer le thread appelant. Annuler le futur renvoyé
+     * interrompt la génération.
+     *
+     * @param model            le nom du modèle LLM à utiliser
+     * @param systemPrompt     le prompt système (instructions pour le modèle)
+     * @param userMessage      le message utilisateur actuel
+     * @param previousMessages un tableau de messages précédents (alternance personne/assistant)
+     * @return futur complété avec la réponse du modèle
+     */
+    CompletableFuture<String> chatAsync(String model, String systemPrompt, String userMessage,
+                                        String[] previousMessages);
+
+    /**
+     * Génération contrainte d'un menu : la réponse est un objet JSON conforme à {@link Menu#schema()},
+     * lu au fil du flux et interrompue dès que le menu est complet (justification comprise).
+     * Annuler le futur renvoyé interrompt la génération.
+     *
+     * @param model            le nom du modèle LLM à utiliser
+     * @param systemPrompt     le prompt système (instructions pour le modèle)
+     * @param userMessage      le message utilisateur actuel
+     * @param previousMessages un tableau de messages précédents (alternance personne/assistant)
+     * @return futur complété avec le menu, en échec si la réponse ne contient pas les trois plats
+     */
+    CompletableFuture<Menu> menuAsync(String model, String systemPrompt, String userMessage,
+                                      String[] previousMessages);
+
+    /**
+     * Variante streamée de {@link #chat} : chaque token est transmis au callback dès sa génération
+     *
+     * @param onToken callback appelé pour chaque fragment de texte reçu (peut être null)
+     * @return le texte complet et les statistiques de la génération
+     */
+    StreamedResponse chatStream(String model, String systemPrompt, String userMessage,
+                                String[] previousMessages, Consumer<String> onToken) throws Exception;
+
+    /**
+     * Génération streamée qui reprend un contexte déjà calculé (voir {@link ChatSession})
+     *
+     * @param model     le nom du modèle LLM à utiliser
+     * @param system    prompt système (null aux tours suivants, déjà dans le contexte)
+     * @param prompt    le texte d'entrée du tour
+     * @param context   tokens de contexte renvoyés au tour précédent (null au premier tour)
+     * @param keepAlive durée pendant laquelle le modèle reste chargé entre deux tours
+     * @param onToken   callback appelé pour chaque fragment de texte reçu (peut être null)
+     * @return le texte, les statistiques et le nouveau contexte
+     */
+    StreamedResponse generateStream(String model, String system, String prompt, int[] context,
+                                    Duration keepAlive, Consumer<String> onToken) throws Exception;
+
+    /**
+     * @return le gestionnaire qui compacte les historiques envoyés au modèle
+     */
+    HistoryManager getHistoryManager();
+
+    /**
+     * @return les métriques des appels de ce client, par modèle
+     */
+    LLMMetrics getMetrics();
+
+    /**
+     * Envoie la même demande à plusieurs modèles en parallèle et renvoie la première réponse
+     * acceptée par le validateur ; les requêtes encore en cours sont alors annulées.
+     * Si aucune réponse n'est valide, la dernière réponse reçue est renvoyée (isValid() = false).
+     *
+     * @param models           les modèles à mettre en concurrence
+     * @param systemPrompt     le prompt système (instructions pour le modèle)
+     * @param userMessage      le message utilisateur actuel
+     * @param previousMessages un tableau de messages précédents (alternance personne/assistant)
+     * @param validator        contrôle du format de la réponse
+     * @param timeout          attente maximale d'une réponse valide
+     */
+    default ModelAnswer chatFirstValid(List<String> models, String systemPrompt, String userMessage,
+                                       String[] previousMessages, Predicate<String> validator,
+                                       Duration timeout) throws Exception {
+        if (models.isEmpty()) {
+            throw new IllegalArgumentException("Aucun modèle à interroger");
+        }
+        long start = System.nanoTime();
+        CompletableFuture<ModelAnswer> winner = new CompletableFuture<>();
+        List<CompletableFuture<String>> calls = new ArrayList<>();
+        AtomicInteger remaining = new AtomicInteger(models.size());
+        AtomicReference<ModelAnswer> lastInvalid = new AtomicReference<>();
+        AtomicReference<Throwable> lastError = new AtomicReference<>();
+
+        for (String model : models) {
+            CompletableFuture<String> call;
+            try {
+                call = chatAsync(model, systemPrompt, userMessage, previousMessages);
+            } catch (RuntimeException e) {
+                call = CompletableFuture.failedFuture(e);
+            }
+            calls.add(call);
+            call.whenComplete((text, error) -> {
+                if (error == null) {
+                    ModelAnswer answer = new ModelAnswer(model, text, validator.test(text),
+                            Duration.ofNanos(System.nanoTime() - start));
+                    if (answer.isValid()) {
+                        winner.complete(answer);
+                    } else {
+                        lastInvalid.set(answer);
+                    }
+                } else {
+                    lastError.set(error);
+                }
+                if (remaining.decrementAndGet() == 0) {
+                    ModelAnswer fallback = lastInvalid.get();
+                    if (fallback != null) {
+                        winner.complete(fallback);
+                    } else {
+                        winner.completeExceptionally(lastError.get());
+                    }
+                }
+            });
+        }
+
+        try {
+            return winner.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause() instanceof CompletionException && e.getCause().getCause() != null
+                    ? e.getCause().getCause() : e.getCause();
+            throw cause instanceof Exception ex ? ex : e;
+        } finally {
+            // Les générations perdantes sont interrompues
+            for (CompletableFuture<String> call : calls) {
+                call.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Interroge les modèles l'un après l'autre (du plus petit au plus gros) et s'arrête
+     * à la première réponse acceptée par le validateur : le gros modèle n'est sollicité
+     * que si le petit a échoué. Sans réponse valide, la dernière réponse reçue est renvoyée.
+     *
+     * @param models           les modèles, du plus rapide au plus fiable
+     * @param systemPrompt     le prompt système (instructions pour le modèle)
+     * @param userMessage      le message utilisateur actuel
+     * @param previousMessages un tableau de messages précédents (alternance personne/assistant)
+     * @param validator        contrôle du format de la réponse
+     */
+    default ModelAnswer chatWithFallback(List<String> models, String systemPrompt, String userMessage,
+                                         String[] previousMessages, Predicate<String> validator) throws Exception {
+        if (models.isEmpty()) {
+            throw new IllegalArgumentException("Aucun modèle à interroger");
+        }
+        long start = System.nanoTime();
+        ModelAnswer last = null;
+        Exception lastError = null;
+        for (String model : models) {
+            try {
+                String text = chat(model, systemPrompt, userMessage, previousMessages);
+                last = new ModelAnswer(model, text, validator.test(text), Duration.ofNanos(System.nanoTime() - start));
+                if (last.isValid()) {
+                    return last;
+                }
+            } catch (Exception e) {
+                lastError = e;
+            }
+        }
+        if (last != null) {
+            return last;
+        }
+        throw lastError;
+    }
+
+    /**
+     * Réponse d'un modèle lors d'une interrogation multi-modèles
+     */
+    class ModelAnswer {
+        private final String model;
+        private final String text;
+        private final boolean valid;
+        private final Duration elapsed;
+
+        ModelAnswer(String model, String text, boolean valid, Duration elapsed) {
+            this.model = model;
+            this.text = text;
+            this.valid = valid;
+            this.elapsed = elapsed;
+        }
+
+        public String getModel() {
+            return model;
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        /**
+         * @return true si la réponse a passé le contrôle de format
+         */
+        public boolean isValid() {
+            return valid;
+        }
+
+        /**
+         * @return le temps écoulé depuis le début de l'interrogation
+         */
+        public Duration getElapsed() {
+            return elapsed;
+        }
+    }
+
+    /**
+     * Résultat d'une génération streamée : texte complet + statistiques finales
+     */
+    class StreamedResponse {
+        private final String text;
+        private final GenerationStats stats;
+        private final int[] context;
+
+        StreamedResponse(String text, GenerationStats stats, int[] context) {
+            this.text = text;
+            this.stats = stats;
+            this.context = context;
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        /**
+         * @return les statistiques du chunk final, ou null si le flux a été interrompu avant
+         */
+        public GenerationStats getStats() {
+            return stats;
+        }
+
+        /**
+         * @return les tokens de contexte renvoyés par /api/generate, ou null (/api/chat)
+         */
+        public int[] getContext() {
+            return context;
+        }
+    }
+}
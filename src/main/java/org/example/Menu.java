@@ -0,0 +1,178 @@
+package org.example;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONString;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Menu proposé par le LLM : entrée, plat, dessert et courte justification.
+ *
+ * Les générations contraintes (voir {@link LlmClient#menuAsync}) produisent un objet JSON
+ * conforme à {@link #schema()} ; {@link #parse} accepte aussi le format texte du prompt
+ * système ("Entrée: ...", "Plat: ...", "Dessert: ..."), celui des anciennes entrées du cache.
+ */
+public final class Menu {
+
+    // Champs de l'objet JSON, dans l'ordre de génération
+    static final String ENTREE = "entree";
+    static final String PLAT = "plat";
+    static final String DESSERT = "dessert";
+    static final String JUSTIFICATION = "justification";
+
+    // Longueur maximale de la justification, comme demandé dans le prompt système
+    static final int MAX_SENTENCES = 2;
+    // Plafond de tokens générés (num_predict) : un menu complet en compte environ 80
+    static final int MAX_TOKENS = 200;
+
+    // Une ligne par plat (tolère puces, gras Markdown, "Plat principal"), justification ensuite
+    private static final Pattern TEXT_FORMAT = Pattern.compile(
+            "(?imsu)^[\\s*#>_\\-]*entr[ée]e[ \\t*_]*:[ \\t*_]*([^\\s*_][^\\n]*?)[ \\t*_]*$.*?"
+                    + "^[\\s*#>_\\-]*plat(?: principal)?[ \\t*_]*:[ \\t*_]*([^\\s*_][^\\n]*?)[ \\t*_]*$.*?"
+                    + "^[\\s*#>_\\-]*dessert[ \\t*_]*:[ \\t*_]*([^\\s*_][^\\n]*?)[ \\t*_]*$(.*)");
+
+    // Schéma JSON du menu, propriétés dans l'ordre de génération
+    private static final String SCHEMA = "{\"type\":\"object\",\"properties\":{"
+            + "\"" + ENTREE + "\":{\"type\":\"string\"},"
+            + "\"" + PLAT + "\":{\"type\":\"string\"},"
+            + "\"" + DESSERT + "\":{\"type\":\"string\"},"
+            + "\"" + JUSTIFICATION + "\":{\"type\":\"string\"}},"
+            + "\"required\":[\"" + ENTREE + "\",\"" + PLAT + "\",\"" + DESSERT + "\",\"" + JUSTIFICATION + "\"]}";
+
+    private final String entree;
+    private final String plat;
+    private final String dessert;
+    private final String justification;
+
+    public Menu(String entree, String plat, String dessert, String justification) {
+        this.entree = entree.strip();
+        this.plat = plat.strip();
+        this.dessert = dessert.strip();
+        this.justification = truncateSentences(justification == null ? "" : justification.strip(), MAX_SENTENCES);
+    }
+
+    /**
+     * Schéma JSON transmis à Ollama (champ "format") : la génération ne peut produire
+     * qu'un objet avec ces quatre chaînes. Ollama les fait générer dans l'ordre des
+     * propriétés du schéma, d'où un texte écrit à la main (un JSONObject ne garde pas
+     * l'ordre) : la justification vient en dernier, là où la génération peut être coupée.
+     */
+    static JSONString schema() {
+        return () -> SCHEMA;
+    }
+
+    /**
+     * @param json objet JSON conforme au schéma
+     * @return le menu, ou null si une des trois parties manque ou est vide
+     */
+    static Menu fromJson(JSONObject json) {
+        String entree = json.optString(ENTREE, "");
+        String plat = json.optString(PLAT, "");
+        String dessert = json.optString(DESSERT, "");
+        if (entree.isBlank() || plat.isBlank() || dessert.isBlank()) {
+            return null;
+        }
+        return new Menu(entree, plat, dessert, json.optString(JUSTIFICATION, ""));
+    }
+
+    /**
+     * Lit un menu au format JSON ou au format texte du prompt système
+     *
+     * @param text la réponse du modèle (ou une entrée du cache)
+     * @return le menu, ou null si le texte ne contient pas les trois parties
+     */
+    public static Menu parse(String text) {
+        if (text == null) {
+            return null;
+        }
+        String trimmed = text.strip();
+        if (trimmed.startsWith("{")) {
+            try {
+                return fromJson(new JSONObject(trimmed));
+            } catch (JSONException e) {
+                return null;
+            }
+        }
+        Matcher matcher = TEXT_FORMAT.matcher(trimmed);
+        if (!matcher.find()) {
+            return null;
+        }
+        return new Menu(matcher.group(1), matcher.group(2), matcher.group(3),
+                matcher.group(4).strip().replaceAll("\\s+", " "));
+    }
+
+    /**
+     * Coupe un texte après ses premières phrases
+     *
+     * @param max nombre de phrases conservées
+     */
+    static String truncateSentences(String text, int max) {
+        int sentences = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (isSentenceEnd(text, i) && ++sentences == max) {
+                return text.substring(0, i + 1);
+            }
+        }
+        return text;
+    }
+
+    /**
+     * @return true si le caractère à cette position termine une phrase (ponctuation suivie d'un blanc ou en fin de texte)
+     */
+    static boolean isSentenceEnd(CharSequence text, int i) {
+        char c = text.charAt(i);
+        return (c == '.' || c == '!' || c == '?')
+                && (i + 1 == text.length() || Character.isWhitespace(text.charAt(i + 1)));
+    }
+
+    public String getEntree() {
+        return entree;
+    }
+
+    public String getPlat() {
+        return plat;
+    }
+
+    public String getDessert() {
+        return dessert;
+    }
+
+    public String getJustification() {
+        return justification;
+    }
+
+    public JSONObject toJson() {
+        return new JSONObject()
+                .put(ENTREE, entree)
+                .put(PLAT, plat)
+                .put(DESSERT, dessert)
+                .put(JUSTIFICATION, justification);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Menu other)) return false;
+        return entree.equals(other.entree) && plat.equals(other.plat)
+                && dessert.equals(other.dessert) && justification.equals(other.justification);
+    }
+
+    @Override
+    public int hashCode() {
+        int h = entree.hashCode();
+        h = 31 * h + plat.hashCode();
+        h = 31 * h + dessert.hashCode();
+        return 31 * h + justification.hashCode();
+    }
+
+    /**
+     * Menu au format texte du prompt système
+     */
+    @Override
+    public String toString() {
+        String text = "Entrée: " + entree + "\nPlat: " + plat + "\nDessert: " + dessert;
+        return justification.isEmpty() ? text : text + "\n" + justification;
+    }
+}
@@ -0,0 +1,334 @@
+package org.example;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Regroupement des demandes de menu simultanées avant leur envoi au LLM.
+ *
+ * Les demandes d'un même modèle et d'un même prompt système arrivées dans une courte
+ * fenêtre forment un lot : les demandes identiques (même message et même historique,
+ * dans le lot ou déjà en cours de génération) ne donnent lieu qu'à un seul appel dont
+ * la réponse est remise à chaque demandeur, et les appels d'un lot partent ensemble
+ * sur les créneaux parallèles d'Ollama (OLLAMA_NUM_PARALLEL), sans alterner entre modèles.
+ * Chaque appel est une génération contrainte de menu ({@link LlmClient#menuAsync}).
+ *
+ * Un lot part dès qu'un créneau est libre : au repos, une demande n'attend pas. Sous
+ * charge, les demandes s'accumulent pendant que les créneaux sont occupés, dans la
+ * limite de la fenêtre maximale et de la taille maximale d'un lot.
+ */
+public class MenuBatcher implements AutoCloseable {
+
+    private final LlmClient client;
+    private final int parallelSlots;
+    private final int maxBatchSize;
+    private final Duration maxWait;
+
+    // Lots en cours de constitution, par modèle + prompt système (ordre d'arrivée)
+    private final LinkedHashMap<String, Batch> pending = new LinkedHashMap<>();
+    // Appels prêts à partir, un lot après l'autre
+    private final ArrayDeque<Call> ready = new ArrayDeque<>();
+    // Appels en cours de génération, par groupe + demande
+    private final Map<String, Call> running = new LinkedHashMap<>();
+    private int inFlight;
+
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "menu-batcher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong deduplicated = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+
+    /**
+     * @param client        backend LLM
+     * @param parallelSlots nombre d'appels simultanés au LLM (créneaux parallèles d'Ollama)
+     * @param maxBatchSize  nombre maximal de demandes distinctes par lot
+     * @param maxWait       attente maximale d'un lot avant son envoi
+     */
+    public MenuBatcher(LlmClient client, int parallelSlots, int maxBatchSize, Duration maxWait) {
+        if (parallelSlots <= 0) {
+            throw new IllegalArgumentException("Nombre d'appels LLM simultanés invalide: " + parallelSlots);
+        }
+        if (maxBatchSize <= 0) {
+            throw new IllegalArgumentException("Taille de lot invalide: " + maxBatchSize);
+        }
+        this.client = client;
+        this.parallelSlots = parallelSlots;
+        this.maxBatchSize = maxBatchSize;
+        this.maxWait = maxWait;
+    }
+
+    /**
+     * Soumet une demande de menu
+     *
+     * @param model            le nom du modèle LLM à utiliser
+     * @param systemPrompt     le prompt système (instructions pour le modèle)
+     * @param userMessage      le message utilisateur actuel
+     * @param previousMessages un tableau de messages précédents (alternance personne/assistant)
+     * @param queueTimeout     attente maximale avant le départ de l'appel ; au-delà le futur
+     *                         échoue avec une TimeoutException
+     * @return futur complété avec le menu généré
+     */
+    public CompletableFuture<Menu> submit(String model, String systemPrompt, String userMessage,
+                                           String[] previousMessages, Duration queueTimeout) {
+        requests.incrementAndGet();
+        CompletableFuture<Menu> result = new CompletableFuture<>();
+        String groupKey = model + '\u0000' + systemPrompt;
+        String requestKey = requestKey(userMessage, previousMessages);
+
+        Call call;
+        Batch created = null;
+        synchronized (this) {
+            Call same = running.get(groupKey + '\u0002' + requestKey);
+            if (same != null) {
+                // Réponse identique déjà en cours de génération
+                deduplicated.incrementAndGet();
+                same.waiters.add(result);
+                return result;
+            }
+
+            Batch batch = pending.get(groupKey);
+            if (batch == null) {
+                batch = new Batch(groupKey);
+                pending.put(groupKey, batch);
+                created = batch;
+            }
+            call = batch.calls.get(requestKey);
+            if (call == null) {
+                call = new Call(groupKey + '\u0002' + requestKey, model, systemPrompt, userMessage, previousMessages);
+                batch.calls.put(requestKey, call);
+            } else {
+                deduplicated.incrementAndGet();
+            }
+            call.waiters.add(result);
+
+            // Créneau libre et rien en attente : inutile de retarder ; lot plein : envoi immédiat
+            if ((inFlight < parallelSlots && ready.isEmpty()) || batch.calls.size() >= maxBatchSize) {
+                flush(batch);
+            }
+        }
+
+        // Minuteur armé hors du verrou : schedule() prend le verrou de la file du minuteur, et
+        // l'imbriquer dans celui du regroupeur allongerait la section que se disputent toutes
+        // les demandes (le thread du minuteur en a lui-même besoin pour envoyer le lot)
+        if (created != null) {
+            Batch batch = created;
+            ScheduledFuture<?> flushTimer = timer.schedule(() -> flushAndDispatch(batch),
+                    maxWait.toNanos(), TimeUnit.NANOSECONDS);
+            synchronized (this) {
+                if (pending.get(groupKey) == batch) {
+                    batch.flushTimer = flushTimer;
+                } else {
+                    flushTimer.cancel(false);
+                }
+            }
+        }
+
+        dispatch();
+        if (!result.isDone()) {
+            Call waitingFor = call;
+            timer.schedule(() -> expire(waitingFor, result, queueTimeout),
+                    queueTimeout.toNanos(), TimeUnit.NANOSECONDS);
+        }
+        return result;
+    }
+
+    private static String requestKey(String userMessage, String[] previousMessages) {
+        StringBuilder key = new StringBuilder(userMessage);
+        if (previousMessages != null) {
+            for (String message : previousMessages) {
+                key.append('\u0001').append(message);
+            }
+        }
+        return key.toString();
+    }
+
+    /**
+     * Abandonne une demande dont l'appel n'est pas encore parti à l'échéance
+     */
+    private void expire(Call call, CompletableFuture<Menu> waiter, Duration queueTimeout) {
+        synchronized (this) {
+            if (call.started) {
+                return;
+            }
+            call.waiters.remove(waiter);
+        }
+        waiter.completeExceptionally(new TimeoutException(
+                "Aucun créneau LLM libre après " + queueTimeout.toSeconds() + " s"));
+    }
+
+    private void flushAndDispatch(Batch batch) {
+        synchronized (this) {
+            if (pending.get(batch.groupKey) == batch) {
+                flush(batch);
+            }
+        }
+        dispatch();
+    }
+
+    // Appelé avec le verrou de l'instance
+    private void flush(Batch batch) {
+        pending.remove(batch.groupKey);
+        if (batch.flushTimer != null) {
+            batch.flushTimer.cancel(false);
+        }
+        batches.incrementAndGet();
+        ready.addAll(batch.calls.values());
+    }
+
+    private void dispatch() {
+        List<Call> starting = new ArrayList<>();
+        synchronized (this) {
+            while (inFlight < parallelSlots) {
+                if (ready.isEmpty()) {
+                    // Créneau libre : le lot le plus ancien part sans attendre la fin de sa fenêtre
+                    Iterator<Batch> oldest = pending.values().iterator();
+                    if (!oldest.hasNext()) {
+                        break;
+                    }
+                    flush(oldest.next());
+                    continue;
+                }
+                Call call = ready.poll();
+                call.waiters.removeIf(CompletableFuture::isDone);
+                if (call.waiters.isEmpty()) {
+                    continue; // tous les demandeurs ont abandonné
+                }
+                call.started = true;
+                running.put(call.key, call);
+                inFlight++;
+                starting.add(call);
+            }
+        }
+        for (Call call : starting) {
+            start(call);
+        }
+    }
+
+    private void start(Call call) {
+        calls.incrementAndGet();
+        CompletableFuture<Menu> answer;
+        try {
+            answer = client.menuAsync(call.model, call.systemPrompt, call.userMessage, call.previousMessages);
+        } catch (RuntimeException e) {
+            answer = CompletableFuture.failedFuture(e);
+        }
+        answer.whenComplete((menu, error) -> {
+            List<CompletableFuture<Menu>> waiters;
+            synchronized (this) {
+                inFlight--;
+                running.remove(call.key);
+                waiters = new ArrayList<>(call.waiters);
+            }
+            for (CompletableFuture<Menu> waiter : waiters) {
+                if (error != null) {
+                    waiter.completeExceptionally(error);
+                } else {
+                    waiter.complete(menu);
+                }
+            }
+            dispatch();
+        });
+    }
+
+    public LlmClient getClient() {
+        return client;
+    }
+
+    /**
+     * @return le nombre de demandes en attente d'un créneau
+     */
+    public synchronized int getQueuedCount() {
+        int count = 0;
+        for (Batch batch : pending.values()) {
+            for (Call call : batch.calls.values()) {
+                count += call.waiters.size();
+            }
+        }
+        for (Call call : ready) {
+            count += call.waiters.size();
+        }
+        return count;
+    }
+
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    /**
+     * @return le nombre d'appels réellement envoyés au LLM
+     */
+    public long getCallCount() {
+        return calls.get();
+    }
+
+    /**
+     * @return le nombre de demandes servies par l'appel d'une demande identique
+     */
+    public long getDeduplicatedCount() {
+        return deduplicated.get();
+    }
+
+    public long getBatchCount() {
+        return batches.get();
+    }
+
+    @Override
+    public void close() {
+        timer.shutdownNow();
+    }
+
+    @Override
+    public String toString() {
+        long batchCount = getBatchCount();
+        return String.format("Regroupement LLM: %d demandes, %d appels, %d dédoublonnées, %d lots (%.1f demandes/lot)",
+                getRequestCount(), getCallCount(), getDeduplicatedCount(), batchCount,
+                batchCount == 0 ? 0.0 : (double) getRequestCount() / batchCount);
+    }
+
+    private static final class Batch {
+        final String groupKey;
+        // Appels distincts du lot, par message + historique
+        final Map<String, Call> calls = new LinkedHashMap<>();
+        ScheduledFuture<?> flushTimer;
+
+        Batch(String groupKey) {
+            this.groupKey = groupKey;
+        }
+    }
+
+    private static final class Call {
+        final String key;
+        final String model;
+        final String systemPrompt;
+        final String userMessage;
+        final String[] previousMessages;
+        // Protégés par le verrou du MenuBatcher
+        final List<CompletableFuture<Menu>> waiters = new ArrayList<>();
+        boolean started;
+
+        Call(String key, String model, String systemPrompt, String userMessage, String[] previousMessages) {
+            this.key = key;
+            this.model = model;
+            this.systemPrompt = systemPrompt;
+            this.userMessage = userMessage;
+            this.previousMessages = previousMessages;
+        }
+    }
+}
@@ -0,0 +1,250 @@
+package org.example;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Cache (TTL + LRU) des menus générés par le LLM.
+ * La clé ne contient pas la température exacte mais des critères "sémantiques" :
+ * zone géographique, saison, tranche de température, condition principale
+ * et empreinte de l'historique de préférences. Deux utilisateurs de la même ville
+ * dans la même heure obtiennent ainsi le même menu sans nouvel appel au LLM.
+ *
+ * Le cache peut être sauvegardé sur disque pour qu'un redémarrage reparte à chaud.
+ */
+public final class MenuCache {
+
+    private static final Logger logger = Logger.getLogger(MenuCache.class.getName());
+
+    // Taille d'une zone géographique (en degrés, ~10 km)
+    static final double CITY_BUCKET_DEGREES = 0.1;
+
+    private final long ttlMillis;
+    private final int maxSize;
+    private final Path file;
+
+    // LinkedHashMap en ordre d'accès = LRU ; protégée par le verrou de l'instance
+    private final LinkedHashMap<String, Entry> entries;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Cache en mémoire uniquement
+     *
+     * @param ttl     durée de validité d'un menu
+     * @param maxSize nombre maximal de menus conservés
+     */
+    public MenuCache(Duration ttl, int maxSize) {
+        this(ttl, maxSize, null);
+    }
+
+    /**
+     * Cache persistant : les entrées encore valides sont relues depuis le fichier s'il existe
+     *
+     * @param ttl     durée de validité d'un menu
+     * @param maxSize nombre maximal de menus conservés
+     * @param file    fichier de sauvegarde (null pour un cache en mémoire uniquement)
+     */
+    public MenuCache(Duration ttl, int maxSize, Path file) {
+        if (ttl.isNegative() || ttl.isZero()) {
+            throw new IllegalArgumentException("TTL invalide: " + ttl);
+        }
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Taille maximale invalide: " + maxSize);
+        }
+        this.ttlMillis = ttl.toMillis();
+        this.maxSize = maxSize;
+        this.file = file;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > MenuCache.this.maxSize) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+        if (file != null && Files.exists(file)) {
+            load();
+        }
+    }
+
+    /**
+     * Construit la clé de cache d'une demande de menu
+     *
+     * @param model   le nom du modèle LLM
+     * @param saison  saison courante
+     * @param wd      météo ayant servi à construire le prompt
+     * @param history historique des préférences
+     */
+    static String key(String model, String saison, Meteo.WeatherData wd, String[] history) {
+        return String.join("|",
+                model,
+                cityBucket(wd),
+                saison,
+                Meteo.getNatureTemperature(wd.getTemperature()),
+                String.valueOf(wd.getMainCondition()).toLowerCase(Locale.ROOT),
+                historyHash(history));
+    }
+
+    private static String cityBucket(Meteo.WeatherData wd) {
+        // Estimation : coordonnées par défaut, communes à toutes les villes estimées ; le menu
+        // (dont le prompt nomme la ville) n'est partagé qu'entre demandes de la même ville
+        if (wd.isEstimated()) {
+            return "estimation:" + String.valueOf(wd.getCityName()).toLowerCase(Locale.ROOT);
+        }
+        if (wd.getLatitude() == 0.0 && wd.getLongitude() == 0.0) {
+            return String.valueOf(wd.getCityName()).toLowerCase(Locale.ROOT);
+        }
+        long lat = Math.round(wd.getLatitude() / CITY_BUCKET_DEGREES);
+        long lon = Math.round(wd.getLongitude() / CITY_BUCKET_DEGREES);
+        return lat + ":" + lon;
+    }
+
+    private static String historyHash(String[] history) {
+        if (history == null || history.length == 0) {
+            return "-";
+        }
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (String message : history) {
+                digest.update(String.valueOf(message).getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+            }
+            return HexFormat.of().formatHex(digest.digest(), 0, 8);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 indisponible", e);
+        }
+    }
+
+    /**
+     * @param key clé construite par {@link #key}
+     * @return le menu en cache encore valide, ou null
+     */
+    public synchronized Menu get(String key) {
+        Entry entry = entries.get(key);
+        if (entry != null && entry.expiresAt <= System.currentTimeMillis()) {
+            entries.remove(key);
+            entry = null;
+        }
+        if (entry == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return entry.menu;
+    }
+
+    public synchronized void put(String key, Menu menu) {
+        entries.put(key, new Entry(menu, System.currentTimeMillis() + ttlMillis));
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    /**
+     * Sauvegarde les entrées encore valides dans le fichier (écriture atomique).
+     * Sans effet pour un cache en mémoire uniquement.
+     */
+    public void save() {
+        if (file == null) {
+            return;
+        }
+        JSONArray array = new JSONArray();
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            for (Map.Entry<String, Entry> e : entries.entrySet()) {
+                if (e.getValue().expiresAt > now) {
+                    array.put(new JSONObject()
+                            .put("key", e.getKey())
+                            .put("menu", e.getValue().menu.toJson())
+                            .put("expiresAt", e.getValue().expiresAt));
+                }
+            }
+        }
+        try {
+            Path parent = file.toAbsolutePath().getParent();
+            Path tmp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+            Files.writeString(tmp, new JSONObject().put("entries", array).toString(), StandardCharsets.UTF_8);
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            logger.info(array.length() + " menus sauvegardés dans " + file);
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Impossible de sauvegarder le cache de menus dans " + file, e);
+        }
+    }
+
+    private void load() {
+        try {
+            JSONArray array = new JSONObject(Files.readString(file, StandardCharsets.UTF_8)).optJSONArray("entries");
+            if (array == null) {
+                return;
+            }
+            long now = System.currentTimeMillis();
+            synchronized (this) {
+                // L'ordre du fichier est l'ordre LRU : les plus récents sont relus en dernier
+                for (int i = 0; i < array.length(); i++) {
+                    JSONObject json = array.getJSONObject(i);
+                    long expiresAt = json.optLong("expiresAt", 0);
+                    // Menu en JSON, ou au format texte dans les fichiers d'avant les générations contraintes
+                    Object value = json.opt("menu");
+                    Menu menu = value instanceof JSONObject object ? Menu.fromJson(object)
+                            : value instanceof String text ? Menu.parse(text) : null;
+                    if (expiresAt > now && menu != null) {
+                        entries.put(json.getString("key"), new Entry(menu, expiresAt));
+                    }
+                }
+            }
+            logger.info(size() + " menus relus depuis " + file);
+        } catch (Exception e) {
+            logger.log(Level.WARNING, "Cache de menus illisible, ignoré: " + file, e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Cache menus: %d entrées, %d hits, %d misses, %d évictions",
+                size(), getHitCount(), getMissCount(), getEvictionCount());
+    }
+
+    private static final class Entry {
+        final Menu menu;
+        final long expiresAt;
+
+        Entry(Menu menu, long expiresAt) {
+            this.menu = menu;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
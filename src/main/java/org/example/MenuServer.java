@@ -0,0 +1,236 @@
+package org.example;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Mode serveur de l'application de recettes : expose GET /menu?city=...
+ * et GET /metrics (métriques des appels au LLM, format texte de Prometheus).
+ * Chaque requête est traitée sur un thread virtuel ; le service météo et le client
+ * HTTP du LLM sont partagés entre toutes les requêtes.
+ *
+ * Usage : MenuServer [port] [appels LLM simultanés] [fichier du cache de menus] [journal météo]
+ *        [relevés météo enregistrés : fichier ou répertoire .json, pour fonctionner hors ligne]
+ * Avec -Dllm.stub=40, les menus viennent d'un LLM simulé (40 tokens/s) au lieu d'Ollama.
+ */
+public class MenuServer {
+
+    private static final Logger logger = Logger.getLogger(MenuServer.class.getName());
+
+    static final int DEFAULT_PORT = 8080;
+    // Une seule instance Ollama locale : peu d'appels LLM simultanés
+    static final int DEFAULT_MAX_LLM_CALLS = 2;
+    static final Duration LLM_QUEUE_TIMEOUT = Duration.ofMinutes(2);
+    static final Duration MENU_CACHE_TTL = Duration.ofHours(1);
+    static final int MENU_CACHE_SIZE = 10_000;
+    // Villes les plus demandées tenues à jour en arrière-plan, dans un budget réduit du quota
+    static final int REFRESH_TOP_K = 30;
+    static final int REFRESH_MAX_CONCURRENT = 2;
+    static final int REFRESH_PER_MINUTE = 20;
+    // LLM simulé (tests de charge sans modèle) : débit en tokens/s, et délai avant le premier token
+    static final String STUB_PROPERTY = "llm.stub";
+    static final Duration STUB_LATENCY = Duration.ofMillis(200);
+
+    private final HttpServer server;
+    private final MenuService menuService;
+
+    /**
+     * @param port        port d'écoute
+     * @param menuService service de génération partagé par toutes les requêtes
+     */
+    public MenuServer(int port, MenuService menuService) throws IOException {
+        // Sans TCP_NODELAY, l'algorithme de Nagle retarde chaque réponse d'environ 40 ms
+        // (sensible pour les menus servis depuis le cache) ; à régler avant la création du serveur
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        this.menuService = menuService;
+        this.server = HttpServer.create(new InetSocketAddress(port), 0);
+        this.server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        this.server.createContext("/menu", this::handleMenu);
+        this.server.createContext("/metrics", this::handleMetrics);
+    }
+
+    public void start() {
+        server.start();
+        logger.info("Serveur de menus démarré sur le port " + server.getAddress().getPort());
+    }
+
+    public void stop() {
+        server.stop(0);
+    }
+
+    /**
+     * @return le port réellement utilisé (utile avec le port 0)
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    private void handleMenu(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                sendJson(exchange, 405, error("Méthode non supportée"));
+                return;
+            }
+
+            String city = queryParameters(exchange.getRequestURI().getRawQuery()).get("city");
+            if (city == null || city.isBlank()) {
+                sendJson(exchange, 400, error("Paramètre 'city' manquant"));
+                return;
+            }
+
+            try {
+                MenuService.MenuResult result = menuService.generateMenu(city);
+                Meteo.WeatherData wd = result.getWeather();
+
+                JSONObject json = new JSONObject();
+                json.put("city", wd.getCityName());
+                json.put("temperature", wd.getTemperature());
+                json.put("condition", wd.getMainCondition());
+                json.put("description", wd.getDescription());
+                json.put("model", menuService.getModel());
+                json.put("menu", result.getMenu().toString());
+                json.put("courses", result.getMenu().toJson());
+                json.put("cached", result.isFromCache());
+                // Relevé expiré (avec son âge) ou estimation de saison quand OpenWeatherMap ne répond pas
+                json.put("weatherSource", wd.getSource().name().toLowerCase(Locale.ROOT));
+                if (wd.isStale()) {
+                    json.put("weatherAgeSeconds", wd.getAge().toSeconds());
+                }
+                sendJson(exchange, 200, json);
+            } catch (MenuService.WeatherUnavailableException e) {
+                sendJson(exchange, 502, error(e.getMessage()));
+            } catch (MenuService.LlmBusyException e) {
+                sendJson(exchange, 503, error(e.getMessage()));
+            } catch (CircuitBreaker.OpenException e) {
+                sendJson(exchange, 503, error(e.getMessage()));
+            } catch (Exception e) {
+                logger.log(Level.SEVERE, "Erreur lors de la génération du menu pour " + city, e);
+                sendJson(exchange, 500, error("Erreur lors de la génération du menu"));
+            }
+        }
+    }
+
+    private void handleMetrics(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                sendJson(exchange, 405, error("Méthode non supportée"));
+                return;
+            }
+            byte[] body = menuService.getLlmClient().getMetrics().toPrometheus().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+
+    private static JSONObject error(String message) {
+        return new JSONObject().put("error", message);
+    }
+
+    private static void sendJson(HttpExchange exchange, int status, JSONObject json) throws IOException {
+        byte[] body = json.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    static Map<String, String> queryParameters(String rawQuery) {
+        Map<String, String> params = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return params;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            String name = eq >= 0 ? pair.substring(0, eq) : pair;
+            String value = eq >= 0 ? pair.substring(eq + 1) : "";
+            params.put(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return params;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        int maxLlmCalls = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_MAX_LLM_CALLS;
+        Path menuCacheFile = args.length > 2 ? Path.of(args[2]) : null;
+        Path weatherLogFile = args.length > 3 ? Path.of(args[3]) : null;
+        // Relevés enregistrés (fichier ou répertoire .json) : météo hors ligne, pour les tests de charge
+        Path weatherFixtures = args.length > 4 ? Path.of(args[4]) : null;
+
+        // Client HTTP unique pour toutes les requêtes au LLM, ou LLM simulé (-Dllm.stub=tokens/s)
+        String stubRate = System.getProperty(STUB_PROPERTY);
+        LlmClient llm = stubRate != null
+                ? StubLlmClient.builder()
+                .latency(STUB_LATENCY)
+                .tokensPerSecond(Double.parseDouble(stubRate))
+                .build()
+                : new OllamaClient(HttpClient.newBuilder()
+                .connectTimeout(OllamaClient.CONNECT_TIMEOUT)
+                .build(), OllamaClient.DEFAULT_BASE_URL);
+        if (stubRate != null) {
+            logger.info("LLM simulé : " + llm);
+        }
+
+        // Cache des menus, sauvegardé à l'arrêt si un fichier est fourni
+        MenuCache menuCache = new MenuCache(MENU_CACHE_TTL, MENU_CACHE_SIZE, menuCacheFile);
+        Runtime.getRuntime().addShutdownHook(new Thread(menuCache::save));
+
+        // Journal des relevés météo : le redémarrage repart d'un cache chaud
+        Meteo.Builder meteo = Meteo.builder();
+        if (weatherLogFile != null) {
+            WeatherSnapshotLog weatherLog = WeatherSnapshotLog.open(weatherLogFile);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    weatherLog.close();
+                } catch (IOException e) {
+                    logger.log(Level.WARNING, "Fermeture du journal météo impossible", e);
+                }
+            }));
+            meteo.snapshotLog(weatherLog);
+        }
+        if (weatherFixtures != null) {
+            FixtureWeatherProvider fixtures = FixtureWeatherProvider.builder()
+                    .load(weatherFixtures)
+                    .synthesizeUnknown(true)
+                    .build();
+            logger.info("Météo hors ligne : " + fixtures);
+            meteo.provider(fixtures);
+        }
+
+        Meteo weather = meteo.build();
+        new RefreshAheadPrefetcher(weather, REFRESH_TOP_K, REFRESH_MAX_CONCURRENT, REFRESH_PER_MINUTE).start();
+
+        MenuService menuService = new MenuService(weather, llm, RecettesMeteoApp.DEFAULT_MODEL,
+                maxLlmCalls, LLM_QUEUE_TIMEOUT, menuCache);
+        llm.preloadModel(RecettesMeteoApp.DEFAULT_MODEL, RecettesMeteoApp.MODEL_KEEP_ALIVE)
+                .exceptionally(e -> {
+                    logger.warning("Préchargement du modèle impossible : " + e.getMessage());
+                    return null;
+                });
+
+        MenuServer server = new MenuServer(port, menuService);
+        server.start();
+        System.out.println("Serveur de menus : http://localhost:" + server.getPort() + "/menu?city=Valenciennes");
+    }
+}
@@ -0,0 +1,227 @@
+package org.example;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Génération de menus selon la météo, partagée entre l'application console et le serveur HTTP.
+ * Le backend LLM (Ollama, ou un simulateur pour les tests de charge) est fourni par l'appelant.
+ * Une seule instance de Meteo est réutilisée (et donc son cache), et le nombre d'appels
+ * simultanés au LLM est plafonné pour ne pas saturer l'instance Ollama locale : les demandes
+ * simultanées sont regroupées par un MenuBatcher (une seule génération pour des demandes identiques).
+ * Un cache de menus optionnel évite de régénérer un menu pour une demande équivalente.
+ */
+public class MenuService {
+
+    // Nombre maximal de demandes distinctes par lot, et attente maximale d'un lot sous charge
+    static final int DEFAULT_MAX_BATCH = 8;
+    static final Duration DEFAULT_BATCH_WINDOW = Duration.ofMillis(20);
+
+    private final Meteo meteo;
+    private final String model;
+    private final MenuBatcher batcher;
+    private final Duration llmQueueTimeout;
+    private final MenuCache menuCache;
+
+    /**
+     * @param meteo                 service météo partagé
+     * @param llm                   backend LLM
+     * @param model                 le nom du modèle LLM à utiliser
+     * @param maxConcurrentLlmCalls nombre maximal d'appels simultanés au LLM
+     * @param llmQueueTimeout       attente maximale d'un créneau LLM avant abandon
+     */
+    public MenuService(Meteo meteo, LlmClient llm, String model, int maxConcurrentLlmCalls,
+                       Duration llmQueueTimeout) {
+        this(meteo, llm, model, maxConcurrentLlmCalls, llmQueueTimeout, null);
+    }
+
+    /**
+     * @param meteo                 service météo partagé
+     * @param llm                   backend LLM
+     * @param model                 le nom du modèle LLM à utiliser
+     * @param maxConcurrentLlmCalls nombre maximal d'appels simultanés au LLM
+     * @param llmQueueTimeout       attente maximale d'un créneau LLM avant abandon
+     * @param menuCache             cache des menus générés (null pour le désactiver)
+     */
+    public MenuService(Meteo meteo, LlmClient llm, String model, int maxConcurrentLlmCalls,
+                       Duration llmQueueTimeout, MenuCache menuCache) {
+        this(meteo, model, new MenuBatcher(llm, maxConcurrentLlmCalls, DEFAULT_MAX_BATCH, DEFAULT_BATCH_WINDOW),
+                llmQueueTimeout, menuCache);
+    }
+
+    /**
+     * @param meteo           service météo partagé
+     * @param model           le nom du modèle LLM à utiliser
+     * @param batcher         regroupement des appels au LLM (porte le backend et fixe le nombre d'appels simultanés)
+     * @param llmQueueTimeout attente maximale d'un créneau LLM avant abandon
+     * @param menuCache       cache des menus générés (null pour le désactiver)
+     */
+    public MenuService(Meteo meteo, String model, MenuBatcher batcher, Duration llmQueueTimeout,
+                       MenuCache menuCache) {
+        this.meteo = meteo;
+        this.model = model;
+        this.batcher = batcher;
+        this.llmQueueTimeout = llmQueueTimeout;
+        this.menuCache = menuCache;
+    }
+
+    public Meteo getMeteo() {
+        return meteo;
+    }
+
+    public String getModel() {
+        return model;
+    }
+
+    /**
+     * @return le cache de menus, ou null s'il est désactivé
+     */
+    public MenuCache getMenuCache() {
+        return menuCache;
+    }
+
+    public LlmClient getLlmClient() {
+        return batcher.getClient();
+    }
+
+    public MenuBatcher getBatcher() {
+        return batcher;
+    }
+
+    /**
+     * @return le nombre de requêtes en attente d'un créneau LLM
+     */
+    public int getLlmQueueLength() {
+        return batcher.getQueuedCount();
+    }
+
+    /**
+     * Génère un menu pour une ville avec l'historique de préférences par défaut
+     *
+     * @param city nom de la ville
+     */
+    public MenuResult generateMenu(String city) throws Exception {
+        return generateMenu(city, RecettesMeteoApp.DEFAULT_HISTORY);
+    }
+
+    /**
+     * Génère un menu pour une ville
+     *
+     * @param city    nom de la ville
+     * @param history historique des préférences (alternance personne/assistant)
+     * @throws WeatherUnavailableException si la ville est inconnue ou invalide (pendant une panne du service
+     *                                     météo, sans relevé, le menu repose sur une estimation de saison)
+     * @throws LlmBusyException            si aucun créneau LLM ne s'est libéré à temps
+     */
+    public MenuResult generateMenu(String city, String[] history) throws Exception {
+        PipelineEvents.MenuGeneration event = new PipelineEvents.MenuGeneration();
+        event.begin();
+        MenuResult result = null;
+        try {
+            result = generate(city, history);
+            return result;
+        } finally {
+            event.end();
+            if (event.shouldCommit()) {
+                event.city = city;
+                event.model = model;
+                event.success = result != null;
+                event.fromCache = result != null && result.isFromCache();
+                event.commit();
+            }
+        }
+    }
+
+    private MenuResult generate(String city, String[] history) throws Exception {
+        Meteo.WeatherData wd = meteo.getWeatherByCity(city);
+        String saison = RecettesMeteoApp.getSaison(LocalDate.now());
+        if (wd == null) {
+            // Ville inconnue ou invalide : le service a répondu, pas d'estimation
+            if (city == null || city.isBlank() || meteo.isProviderAvailable()) {
+                throw new WeatherUnavailableException("Impossible de récupérer la météo pour " + city);
+            }
+            // Panne ou quota épuisé, sans relevé même ancien : menu sur une estimation de saison
+            wd = ClimateEstimator.estimate(city.trim(), saison);
+        }
+
+        // Demande équivalente déjà traitée : pas d'appel au LLM
+        String cacheKey = null;
+        if (menuCache != null) {
+            cacheKey = MenuCache.key(model, saison, wd, history);
+            Menu cached = menuCache.get(cacheKey);
+            if (cached != null) {
+                return new MenuResult(wd, cached, true);
+            }
+        }
+
+        String userMessage = RecettesMeteoApp.buildUserMessage(saison, wd);
+
+        Menu menu;
+        try {
+            menu = batcher.submit(model, RecettesMeteoApp.MENU_SYSTEM_PROMPT, userMessage, history, llmQueueTimeout).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof TimeoutException) {
+                throw new LlmBusyException("LLM saturé : aucun créneau libre après " + llmQueueTimeout.toSeconds() + " s");
+            }
+            throw e.getCause() instanceof Exception cause ? cause : e;
+        }
+        if (cacheKey != null) {
+            menuCache.put(cacheKey, menu);
+        }
+        return new MenuResult(wd, menu, false);
+    }
+
+    /**
+     * Menu généré et météo ayant servi à le construire
+     */
+    public static class MenuResult {
+        private final Meteo.WeatherData weather;
+        private final Menu menu;
+        private final boolean fromCache;
+
+        MenuResult(Meteo.WeatherData weather, Menu menu, boolean fromCache) {
+            this.weather = weather;
+            this.menu = menu;
+            this.fromCache = fromCache;
+        }
+
+        public Meteo.WeatherData getWeather() {
+            return weather;
+        }
+
+        public Menu getMenu() {
+            return menu;
+        }
+
+        /**
+         * @return true si le menu provient du cache (aucun appel au LLM)
+         */
+        public boolean isFromCache() {
+            return fromCache;
+        }
+    }
+
+    /**
+     * La météo de la ville demandée n'a pas pu être obtenue
+     */
+    public static class WeatherUnavailableException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        public WeatherUnavailableException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Trop d'appels LLM en cours : la requête n'a pas obtenu de créneau à temps
+     */
+    public static class LlmBusyException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        public LlmBusyException(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package org.example;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Lecture incrémentale d'un menu JSON généré token par token (voir {@link Menu#schema()}).
+ *
+ * Le menu est complet dès que l'entrée, le plat et le dessert sont lus et que la
+ * justification est terminée ou compte déjà {@link Menu#MAX_SENTENCES} phrases :
+ * l'appelant peut alors interrompre la génération plutôt que de payer les tokens
+ * d'une justification trop longue ou des blancs que certains modèles ajoutent après l'objet.
+ *
+ * Non thread-safe : un validateur par génération.
+ */
+final class MenuStreamValidator {
+
+    // Chaînes terminées de l'objet, par clé
+    private final Map<String, String> values = new HashMap<>();
+    private final StringBuilder current = new StringBuilder();
+    private String key;
+    private int depth;
+    private boolean started;
+    private boolean inString;
+    private boolean escape;
+    // Séquence \\uXXXX en cours de lecture (-1 : aucune)
+    private int unicodeDigits = -1;
+    private int unicodeValue;
+    private boolean complete;
+    private int tokens;
+
+    /**
+     * Ajoute un fragment de la réponse
+     *
+     * @param token fragment reçu (un token Ollama)
+     * @return true si le menu est complet
+     */
+    boolean accept(String token) {
+        tokens++;
+        for (int i = 0; i < token.length() && !complete; i++) {
+            accept(token.charAt(i));
+        }
+        return complete;
+    }
+
+    private void accept(char c) {
+        if (inString) {
+            readStringChar(c);
+            return;
+        }
+        switch (c) {
+            case '{' -> {
+                depth++;
+                started = true;
+            }
+            case '}' -> {
+                depth--;
+                if (started && depth == 0) {
+                    complete = hasCourses();
+                }
+            }
+            case '"' -> {
+                inString = true;
+                current.setLength(0);
+            }
+            default -> {
+                // ':', ',' et blancs : la position clé / valeur se déduit de la clé en attente
+            }
+        }
+    }
+
+    private void readStringChar(char c) {
+        if (unicodeDigits >= 0) {
+            unicodeValue = unicodeValue * 16 + Character.digit(c, 16);
+            if (++unicodeDigits == 4) {
+                current.append((char) unicodeValue);
+                unicodeDigits = -1;
+            }
+            return;
+        }
+        if (escape) {
+            escape = false;
+            switch (c) {
+                case 'n' -> current.append('\n');
+                case 't' -> current.append('\t');
+                case 'r' -> current.append('\r');
+                case 'b', 'f' -> current.append(' ');
+                case 'u' -> {
+                    unicodeDigits = 0;
+                    unicodeValue = 0;
+                }
+                default -> current.append(c);
+            }
+            return;
+        }
+        if (c == '\\') {
+            escape = true;
+        } else if (c == '"') {
+            inString = false;
+            endString();
+        } else {
+            current.append(c);
+            // Justification assez longue : inutile d'attendre la fin de la chaîne
+            if (Character.isWhitespace(c) && Menu.JUSTIFICATION.equals(key) && depth == 1 && hasCourses()
+                    && sentences(current) >= Menu.MAX_SENTENCES) {
+                complete = true;
+            }
+        }
+    }
+
+    private void endString() {
+        if (depth != 1) {
+            return;
+        }
+        if (key == null) {
+            key = current.toString();
+            return;
+        }
+        values.put(key, current.toString());
+        key = null;
+        complete = hasCourses() && values.containsKey(Menu.JUSTIFICATION);
+    }
+
+    private boolean hasCourses() {
+        return !values.getOrDefault(Menu.ENTREE, "").isBlank()
+                && !values.getOrDefault(Menu.PLAT, "").isBlank()
+                && !values.getOrDefault(Menu.DESSERT, "").isBlank();
+    }
+
+    private static int sentences(CharSequence text) {
+        int count = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (Menu.isSentenceEnd(text, i)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return true si le menu est complet (la suite de la génération est inutile)
+     */
+    boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * @return le nombre de fragments reçus
+     */
+    int getTokenCount() {
+        return tokens;
+    }
+
+    /**
+     * Menu lu jusqu'ici ; une justification interrompue est conservée telle quelle
+     *
+     * @return le menu, ou null si l'entrée, le plat ou le dessert manque
+     */
+    Menu toMenu() {
+        if (!hasCourses()) {
+            return null;
+        }
+        String justification = values.get(Menu.JUSTIFICATION);
+        if (justification == null && inString && Menu.JUSTIFICATION.equals(key)) {
+            justification = current.toString();
+        }
+        return new Menu(values.get(Menu.ENTREE), values.get(Menu.PLAT), values.get(Menu.DESSERT), justification);
+    }
+}
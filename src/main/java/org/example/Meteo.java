@@ -1,29 +1,175 @@
 package org.example;
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
-import java.net.URL;
-import java.net.URLEncoder;
-import java.nio.charset.StandardCharsets;
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Scanner;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import org.json.JSONObject;
-import org.json.JSONArray;
 
 /**
  * Service météo utilisant l'API OpenWeatherMap
  * Fournit des méthodes pour récupérer et analyser les données météo
  * avec une gestion robuste des erreurs et des entrées utilisateur.
+ * Les relevés viennent d'un {@link WeatherProvider} (OpenWeatherMap par défaut) ;
+ * le service y ajoute cache, historique, journal et requêtes groupées.
  *
  * @author Claude.AI (adapté par E.ADAM)
  */
 public class Meteo {
 
-    private static final String API_KEY = "91bd4d80344f4dc6cd5810f2a2c2b619";
-    private static final String BASE_URL = "http://api.openweathermap.org/data/2.5/weather";
     private static final Logger logger = Logger.getLogger(Meteo.class.getName());
 
+    // Les données OpenWeatherMap ne sont rafraîchies que toutes les ~10 minutes
+    static final Duration DEFAULT_CACHE_TTL = Duration.ofMinutes(10);
+    static final int DEFAULT_CACHE_SIZE = 1000;
+    // Après expiration, un relevé est encore servi immédiatement pendant son rechargement
+    static final Duration DEFAULT_STALE_WHILE_REVALIDATE = Duration.ofHours(1);
+
+    // Requêtes groupées : nombre de requêtes simultanées
+    static final int DEFAULT_MAX_CONCURRENCY = 8;
+
+    // Instance partagée par les méthodes utilitaires statiques (profite du cache)
+    private static final Meteo SHARED = new Meteo();
+
+    private final WeatherProvider provider;
+    private final WeatherCache cache;
+    private final long staleWhileRevalidateMillis;
+    private final WeatherHistoryStore history;
+    private final WeatherSnapshotLog snapshotLog;
+    // Suivi des villes demandées pour le rafraîchissement anticipé (null si désactivé)
+    private volatile RefreshAheadPrefetcher prefetcher;
+    private final int maxConcurrency;
+    private final Duration bulkTimeout;
+
+    // Identifiants OpenWeatherMap appris au fil des réponses (clé de cache -> id)
+    private final Map<String, Long> cityIds = new ConcurrentHashMap<>();
+
+    /**
+     * Service météo avec un cache par défaut (TTL 10 minutes, 1000 entrées)
+     */
+    public Meteo() {
+        this(DEFAULT_CACHE_TTL, DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * Service météo avec un cache configurable
+     *
+     * @param cacheTtl     durée de validité d'une donnée en cache
+     * @param cacheMaxSize nombre maximal de villes/coordonnées en cache
+     */
+    public Meteo(Duration cacheTtl, int cacheMaxSize) {
+        this(OpenWeatherMapProvider.DEFAULT_HTTP_CLIENT, cacheTtl, cacheMaxSize);
+    }
+
+    /**
+     * Service météo avec un client HTTP et un cache configurables
+     *
+     * @param httpClient   client HTTP (partagé entre les requêtes de ce service)
+     * @param cacheTtl     durée de validité d'une donnée en cache
+     * @param cacheMaxSize nombre maximal de villes/coordonnées en cache
+     */
+    public Meteo(HttpClient httpClient, Duration cacheTtl, int cacheMaxSize) {
+        this(builder().httpClient(httpClient).cacheTtl(cacheTtl).cacheMaxSize(cacheMaxSize));
+    }
+
+    private Meteo(Builder builder) {
+        this.provider = builder.provider != null ? builder.provider
+                : new OpenWeatherMapProvider(builder.httpClient, builder.apiUrl, builder.apiKey, builder.scheduler);
+        this.cache = new WeatherCache(builder.cacheTtl, builder.cacheMaxSize);
+        this.staleWhileRevalidateMillis = builder.staleWhileRevalidate.toMillis();
+        this.history = builder.history != null ? builder.history : new WeatherHistoryStore();
+        this.snapshotLog = builder.snapshotLog;
+        this.maxConcurrency = builder.maxConcurrency;
+        this.bulkTimeout = builder.bulkTimeout;
+        if (snapshotLog != null) {
+            warmUp();
+        }
+    }
+
+    /**
+     * Recharge le journal : tous les relevés alimentent l'historique, et le plus récent
+     * de chaque clé est remis en cache (expiré, il reste disponible comme relevé de secours)
+     */
+    private void warmUp() {
+        long start = System.nanoTime();
+        // Clé -> {position du dernier relevé, instant de récupération}
+        Map<String, long[]> latest = new HashMap<>();
+        try {
+            snapshotLog.replay(snapshot -> {
+                history.record(snapshot.getCityName(), snapshot.getTimestamp(), snapshot.getTemperature(),
+                        snapshot.getFeelsLike(), snapshot.getHumidity(), snapshot.getPressure(), snapshot.getWindSpeed());
+                long[] last = latest.computeIfAbsent(snapshot.getKey(), k -> new long[2]);
+                last[0] = snapshot.getIndex();
+                last[1] = snapshot.getFetchedAt();
+            });
+            for (Map.Entry<String, long[]> entry : latest.entrySet()) {
+                String key = entry.getKey();
+                long time = entry.getValue()[1];
+                WeatherData data = snapshotLog.read(entry.getValue()[0]);
+                cache.put(key, data, time);
+                if (key.startsWith("city:") && data.getCityId() > 0) {
+                    cityIds.put(key, data.getCityId());
+                }
+            }
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Relecture du journal météo impossible", e);
+            return;
+        }
+        logger.info(String.format("Journal météo rechargé : %d relevés, %d en cache (%d ms)",
+                snapshotLog.size(), cache.size(), (System.nanoTime() - start) / 1_000_000));
+    }
+
+    /**
+     * @return un builder pour configurer finement le service (URL de l'API, clé, parallélisme...)
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return le cache météo (statistiques hits/misses/évictions)
+     */
+    public WeatherCache getCache() {
+        return cache;
+    }
+
+    /**
+     * @return le fournisseur des relevés
+     */
+    public WeatherProvider getProvider() {
+        return provider;
+    }
+
+    /**
+     * @return false pendant une panne du fournisseur ou quand son quota est épuisé : un relevé
+     * absent ne signifie alors pas que la ville est inconnue
+     */
+    public boolean isProviderAvailable() {
+        return provider.isAvailable();
+    }
+
+    /**
+     * @return l'historique des relevés récupérés par ce service
+     */
+    public WeatherHistoryStore getHistory() {
+        return history;
+    }
+
     /**
      * Nettoie et valide le nom d'une ville
      *
@@ -31,6 +177,19 @@ public class Meteo {
      * @return nom nettoyé ou null si invalide
      */
     private String cleanCityName(String cityName) {
+        PipelineEvents.CityNameCleaning event = new PipelineEvents.CityNameCleaning();
+        event.begin();
+        String cleaned = validateCityName(cityName);
+        event.end();
+        if (event.shouldCommit()) {
+            event.input = cityName;
+            event.city = cleaned;
+            event.commit();
+        }
+        return cleaned;
+    }
+
+    private String validateCityName(String cityName) {
         if (cityName == null) {
             return null;
         }
@@ -59,27 +218,71 @@ public class Meteo {
      * @return WeatherData ou null en cas d'erreur
      */
     public WeatherData getWeatherByCity(String cityName) {
+        return getWeatherByCityAsync(cityName).join();
+    }
+
+    /**
+     * Variante asynchrone de {@link #getWeatherByCity} : ne bloque pas le thread appelant
+     *
+     * @param cityName nom de la ville
+     * @return futur complété avec WeatherData, ou null en cas d'erreur
+     */
+    public CompletableFuture<WeatherData> getWeatherByCityAsync(String cityName) {
+        return getWeatherByCityAsync(cityName, RequestScheduler.Priority.INTERACTIVE);
+    }
+
+    /**
+     * Variante asynchrone avec priorité : les requêtes de fond (BATCH) cèdent
+     * la place aux requêtes interactives lorsque le quota est atteint
+     *
+     * @param cityName nom de la ville
+     * @param priority priorité de l'appel à l'API si la ville n'est pas en cache
+     */
+    public CompletableFuture<WeatherData> getWeatherByCityAsync(String cityName, RequestScheduler.Priority priority) {
         String cleanedCityName = cleanCityName(cityName);
         if (cleanedCityName == null) {
             logger.warning("Nom de ville invalide: " + cityName);
-            return null;
+            return CompletableFuture.completedFuture(null);
         }
 
-        try {
-            String encodedCityName = URLEncoder.encode(cleanedCityName, StandardCharsets.UTF_8);
-            String urlString = String.format("%s?q=%s&appid=%s&units=metric&lang=fr",
-                    BASE_URL, encodedCityName, API_KEY);
-
-            logger.info("URL générée: " + urlString);
-            String jsonResponse = makeHttpRequest(urlString);
-            if (jsonResponse != null) {
-                return parseWeatherData(jsonResponse);
-            }
-        } catch (Exception e) {
-            logger.log(Level.SEVERE, "Erreur lors de la récupération des données pour la ville: " + cleanedCityName, e);
+        RefreshAheadPrefetcher tracker = prefetcher;
+        if (tracker != null) {
+            tracker.recordAccess(cleanedCityName);
         }
 
-        return null;
+        String key = cityKey(cleanedCityName);
+        return getWithStale(key, () -> fetchWeatherByCity(cleanedCityName, priority).thenApply(data -> persist(key, data)));
+    }
+
+    /**
+     * Recharge une ville en arrière-plan avant l'expiration de son entrée de cache
+     *
+     * @param cleanedCityName nom de ville nettoyé
+     */
+    CompletableFuture<WeatherData> refreshCity(String cleanedCityName) {
+        String key = cityKey(cleanedCityName);
+        return cache.refresh(key, () -> fetchWeatherByCity(cleanedCityName, RequestScheduler.Priority.BATCH)
+                .thenApply(data -> persist(key, data)));
+    }
+
+    void setPrefetcher(RefreshAheadPrefetcher prefetcher) {
+        this.prefetcher = prefetcher;
+    }
+
+    private CompletableFuture<WeatherData> fetchWeatherByCity(String cleanedCityName, RequestScheduler.Priority priority) {
+        return provider.fetchByCity(cleanedCityName, priority)
+                .thenApply(data -> {
+                    // Mémoriser l'identifiant pour les futures requêtes groupées
+                    if (data != null && data.getCityId() > 0) {
+                        cityIds.put(cityKey(cleanedCityName), data.getCityId());
+                    }
+                    history.record(data);
+                    return data;
+                })
+                .exceptionally(e -> {
+                    logger.log(Level.SEVERE, "Erreur lors de la récupération des données pour la ville: " + cleanedCityName, e);
+                    return null;
+                });
     }
 
     /**
@@ -90,358 +293,619 @@ public class Meteo {
      * @return WeatherData ou null en cas d'erreur
      */
     public WeatherData getWeatherByCoordinates(double lat, double lon) {
+        return getWeatherByCoordinatesAsync(lat, lon).join();
+    }
+
+    /**
+     * Variante asynchrone de {@link #getWeatherByCoordinates} : ne bloque pas le thread appelant
+     *
+     * @param lat latitude
+     * @param lon longitude
+     * @return futur complété avec WeatherData, ou null en cas d'erreur
+     */
+    public CompletableFuture<WeatherData> getWeatherByCoordinatesAsync(double lat, double lon) {
+        return getWeatherByCoordinatesAsync(lat, lon, RequestScheduler.Priority.INTERACTIVE);
+    }
+
+    /**
+     * Variante asynchrone avec priorité (voir {@link #getWeatherByCityAsync(String, RequestScheduler.Priority)})
+     *
+     * @param lat      latitude
+     * @param lon      longitude
+     * @param priority priorité de l'appel à l'API si la position n'est pas en cache
+     */
+    public CompletableFuture<WeatherData> getWeatherByCoordinatesAsync(double lat, double lon,
+                                                                       RequestScheduler.Priority priority) {
         if (lat < -90 || lat > 90 || lon < -180 || lon > 180) {
             logger.warning("Coordonnées invalides: lat=" + lat + ", lon=" + lon);
-            return null;
+            return CompletableFuture.completedFuture(null);
         }
 
-        try {
-            String urlString = String.format("%s?lat=%f&lon=%f&appid=%s&units=metric&lang=fr",
-                    BASE_URL, lat, lon, API_KEY);
+        String key = coordinatesKey(lat, lon);
+        return getWithStale(key, () -> fetchWeatherByCoordinates(lat, lon, priority).thenApply(data -> persist(key, data)));
+    }
 
-            String jsonResponse = makeHttpRequest(urlString);
-            if (jsonResponse != null) {
-                return parseWeatherData(jsonResponse);
-            }
-        } catch (Exception e) {
-            logger.log(Level.SEVERE, "Erreur lors de la récupération des données pour les coordonnées: " + lat + "," + lon, e);
+    /**
+     * Lecture du cache avec relevés expirés (stale-while-revalidate) : un relevé expiré depuis
+     * moins de staleWhileRevalidate est servi immédiatement et rechargé en arrière-plan ; au-delà
+     * le chargement est attendu, et s'il échoue (panne, quota épuisé) le dernier relevé connu
+     * est servi quel que soit son âge. Les relevés expirés sont marqués {@link WeatherData#isStale()}.
+     */
+    private CompletableFuture<WeatherData> getWithStale(String key, Supplier<CompletableFuture<WeatherData>> loader) {
+        WeatherData stale = staleWhileRevalidateMillis > 0 ? cache.getStale(key, staleWhileRevalidateMillis) : null;
+        if (stale != null) {
+            cache.refresh(key, loader);
+            return CompletableFuture.completedFuture(stale.withSource(WeatherData.Source.STALE));
         }
+        return cache.getAsync(key, loader).thenApply(data -> {
+            if (data != null) {
+                return data;
+            }
+            WeatherData last = cache.getStale(key, Long.MAX_VALUE);
+            if (last == null) {
+                return null;
+            }
+            logger.warning(String.format("Service météo indisponible : relevé de %s servi (âge %d min)",
+                    last.getCityName(), last.getAge().toMinutes()));
+            return last.withSource(WeatherData.Source.STALE);
+        });
+    }
 
-        return null;
+    private CompletableFuture<WeatherData> fetchWeatherByCoordinates(double lat, double lon,
+                                                                     RequestScheduler.Priority priority) {
+        return provider.fetchByCoordinates(lat, lon, priority)
+                .thenApply(data -> {
+                    history.record(data);
+                    return data;
+                })
+                .exceptionally(e -> {
+                    logger.log(Level.SEVERE, "Erreur lors de la récupération des données pour les coordonnées: " + lat + "," + lon, e);
+                    return null;
+                });
     }
 
     /**
-     * Effectue la requête HTTP avec validation d'URL
+     * Récupère la météo de plusieurs villes en parallèle (au plus maxConcurrency requêtes simultanées).
+     * Les villes déjà en cache sont servies directement ; si le fournisseur accepte les requêtes
+     * groupées, celles dont l'identifiant OpenWeatherMap est connu sont regroupées (par paquets
+     * de 20 sur l'endpoint /group d'OpenWeatherMap), les autres sont interrogées individuellement.
+     * Une ville lente ou introuvable ne bloque pas les autres : elle apparaît dans les erreurs.
      *
-     * @param urlString URL à interroger
-     * @return réponse JSON ou null en cas d'erreur
+     * @param cityNames noms des villes
+     * @return résultats et erreurs, par nom de ville tel que fourni
      */
-    private String makeHttpRequest(String urlString) {
-        HttpURLConnection connection = null;
-        BufferedReader reader = null;
-
-        try {
-            // Validation de l'URL avant de l'utiliser
-            if (urlString == null || urlString.trim().isEmpty()) {
-                logger.warning("URL vide ou null");
-                return null;
+    public BulkWeatherResult getWeatherForCities(Collection<String> cityNames) {
+        BulkWeatherResult result = new BulkWeatherResult();
+        Semaphore permits = new Semaphore(maxConcurrency);
+        Map<String, CompletableFuture<WeatherData>> pending = new LinkedHashMap<>();
+        Map<Long, List<String>> namesById = new LinkedHashMap<>();
+        Map<String, String> cleanedNames = new HashMap<>();
+        int groupSize = provider.getMaxGroupSize();
+
+        for (String cityName : new LinkedHashSet<>(cityNames)) {
+            String cleaned = cleanCityName(cityName);
+            if (cleaned == null) {
+                result.addError(cityName, "Nom de ville invalide");
+                continue;
             }
+            String key = cityKey(cleaned);
+            Long id = groupSize > 0 ? cityIds.get(key) : null;
+            if (id == null) {
+                pending.put(cityName, withPermit(permits,
+                        () -> getWeatherByCityAsync(cleaned, RequestScheduler.Priority.BATCH)));
+                continue;
+            }
+            WeatherData cached = cache.getIfPresent(key);
+            if (cached != null) {
+                result.addResult(cityName, cached);
+            } else {
+                cleanedNames.put(cityName, cleaned);
+                namesById.computeIfAbsent(id, k -> new ArrayList<>()).add(cityName);
+            }
+        }
 
-            // Log de debug pour voir l'URL générée
-            logger.info("Tentative de connexion à: " + urlString);
-
-            URL url = new URL(urlString);
-            connection = (HttpURLConnection) url.openConnection();
+        // Villes dont l'identifiant est connu : une requête groupée par paquet
+        List<Long> ids = new ArrayList<>(namesById.keySet());
+        Map<List<Long>, CompletableFuture<Map<Long, WeatherData>>> groups = new LinkedHashMap<>();
+        for (int i = 0; i < ids.size(); i += groupSize) {
+            List<Long> chunk = ids.subList(i, Math.min(i + groupSize, ids.size()));
+            groups.put(chunk, withPermit(permits, () -> fetchGroup(chunk)));
+        }
+        // Les requêtes individuelles de repli sont lancées depuis l'appelant, sous la même limite
+        // de parallélisme (l'attente d'un créneau ne doit pas bloquer le thread qui termine le groupe)
+        for (Map.Entry<List<Long>, CompletableFuture<Map<Long, WeatherData>>> group : groups.entrySet()) {
+            Map<Long, WeatherData> byId = group.getValue().exceptionally(e -> Map.of()).join();
+            for (Long id : group.getKey()) {
+                WeatherData data = byId.get(id);
+                for (String cityName : namesById.get(id)) {
+                    String cleaned = cleanedNames.get(cityName);
+                    if (data != null) {
+                        cache.put(cityKey(cleaned), persist(cityKey(cleaned), data));
+                        pending.put(cityName, CompletableFuture.completedFuture(data));
+                    } else {
+                        // Absente de la réponse groupée : requête individuelle
+                        pending.put(cityName, withPermit(permits,
+                                () -> getWeatherByCityAsync(cleaned, RequestScheduler.Priority.BATCH)));
+                    }
+                }
+            }
+        }
 
-            connection.setRequestMethod("GET");
-            connection.setRequestProperty("Accept", "application/json");
-            connection.setRequestProperty("User-Agent", "WeatherService/1.0");
-            connection.setConnectTimeout(5000);
-            connection.setReadTimeout(10000);
+        collect(pending, result);
+        return result;
+    }
 
-            int responseCode = connection.getResponseCode();
+    /**
+     * Récupère la météo de plusieurs positions en parallèle (au plus maxConcurrency requêtes simultanées)
+     *
+     * @param coordinates couples {latitude, longitude}
+     * @return résultats et erreurs, par clé "lat,lon"
+     */
+    public BulkWeatherResult getWeatherForCoordinates(Collection<double[]> coordinates) {
+        BulkWeatherResult result = new BulkWeatherResult();
+        Semaphore permits = new Semaphore(maxConcurrency);
+        Map<String, CompletableFuture<WeatherData>> pending = new LinkedHashMap<>();
+
+        for (double[] latLon : coordinates) {
+            if (latLon == null || latLon.length != 2) {
+                logger.warning("Coordonnées ignorées (attendu {lat, lon})");
+                continue;
+            }
+            String label = String.format(Locale.ROOT, "%s,%s", latLon[0], latLon[1]);
+            if (!pending.containsKey(label)) {
+                pending.put(label, withPermit(permits,
+                        () -> getWeatherByCoordinatesAsync(latLon[0], latLon[1], RequestScheduler.Priority.BATCH)));
+            }
+        }
 
-            if (responseCode == HttpURLConnection.HTTP_OK) {
-                reader = new BufferedReader(
-                        new InputStreamReader(connection.getInputStream())
-                );
+        collect(pending, result);
+        return result;
+    }
 
-                StringBuilder response = new StringBuilder();
-                String line;
+    /**
+     * Lance une tâche asynchrone en respectant la limite de parallélisme
+     * (bloque l'appelant tant qu'aucun créneau n'est libre) et lui applique le timeout groupé.
+     */
+    private <T> CompletableFuture<T> withPermit(Semaphore permits, Supplier<CompletableFuture<T>> task) {
+        permits.acquireUninterruptibly();
+        CompletableFuture<T> future;
+        try {
+            future = task.get().orTimeout(bulkTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (RuntimeException e) {
+            permits.release();
+            return CompletableFuture.failedFuture(e);
+        }
+        future.whenComplete((r, e) -> permits.release());
+        return future;
+    }
 
-                while ((line = reader.readLine()) != null) {
-                    response.append(line);
+    private void collect(Map<String, CompletableFuture<WeatherData>> pending, BulkWeatherResult result) {
+        for (Map.Entry<String, CompletableFuture<WeatherData>> entry : pending.entrySet()) {
+            try {
+                WeatherData data = entry.getValue().join();
+                if (data != null) {
+                    result.addResult(entry.getKey(), data);
+                } else {
+                    result.addError(entry.getKey(), "Données météo indisponibles");
                 }
-
-                return response.toString();
-
-            } else if (responseCode == HttpURLConnection.HTTP_UNAUTHORIZED) {
-                logger.severe("Clé API invalide ou manquante");
-                return null;
-            } else if (responseCode == HttpURLConnection.HTTP_NOT_FOUND) {
-                logger.warning("Ville non trouvée (HTTP 404)");
-                return null;
-            } else {
-                logger.warning("Erreur HTTP: " + responseCode);
-                return null;
+            } catch (CompletionException e) {
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                result.addError(entry.getKey(), cause instanceof TimeoutException
+                        ? "Timeout après " + bulkTimeout.toMillis() + " ms"
+                        : String.valueOf(cause.getMessage()));
             }
+        }
+    }
 
-        } catch (java.net.MalformedURLException e) {
-            logger.log(Level.SEVERE, "URL mal formée: " + urlString, e);
-            return null;
-        } catch (java.net.UnknownHostException e) {
-            logger.log(Level.SEVERE, "Impossible de résoudre l'hôte (vérifiez votre connexion Internet)", e);
-            return null;
-        } catch (java.net.SocketTimeoutException e) {
-            logger.log(Level.WARNING, "Timeout lors de la connexion", e);
-            return null;
-        } catch (Exception e) {
-            logger.log(Level.SEVERE, "Erreur lors de la requête HTTP vers: " + urlString, e);
-            return null;
-        } finally {
-            // Nettoyage des ressources
-            if (reader != null) {
-                try {
-                    reader.close();
-                } catch (Exception e) {
-                    logger.log(Level.WARNING, "Erreur lors de la fermeture du reader", e);
-                }
+    /**
+     * Requête groupée pour plusieurs identifiants de ville
+     *
+     * @param ids identifiants OpenWeatherMap (getMaxGroupSize() au maximum)
+     * @return données météo par identifiant (vide en cas d'erreur)
+     */
+    private CompletableFuture<Map<Long, WeatherData>> fetchGroup(List<Long> ids) {
+        return provider.fetchByIds(ids, RequestScheduler.Priority.BATCH).thenApply(byId -> {
+            for (WeatherData data : byId.values()) {
+                history.record(data);
             }
-            if (connection != null) {
-                connection.disconnect();
+            return byId;
+        });
+    }
+
+    /**
+     * Ajoute un relevé récupéré au journal sur disque, s'il est configuré
+     *
+     * @return le relevé, inchangé
+     */
+    private WeatherData persist(String key, WeatherData data) {
+        if (snapshotLog != null && data != null) {
+            try {
+                snapshotLog.append(key, data, System.currentTimeMillis());
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Écriture dans le journal météo impossible", e);
             }
         }
+        return data;
     }
 
     /**
-     * Parse les données JSON de l'API météo avec org.json
+     * Enregistre l'identifiant OpenWeatherMap d'une ville, pour permettre
+     * son interrogation via l'endpoint /group lors des requêtes groupées
      *
-     * @param jsonResponse réponse JSON de l'API
-     * @return WeatherData ou null en cas d'erreur
+     * @param cityName nom de la ville
+     * @param cityId   identifiant OpenWeatherMap
      */
-    private WeatherData parseWeatherData(String jsonResponse) {
-        if (jsonResponse == null || jsonResponse.trim().isEmpty()) {
-            logger.warning("Réponse JSON vide");
-            return null;
+    public void registerCityId(String cityName, long cityId) {
+        String cleaned = cleanCityName(cityName);
+        if (cleaned != null && cityId > 0) {
+            cityIds.put(cityKey(cleaned), cityId);
         }
+    }
 
-        try {
-            JSONObject json = new JSONObject(jsonResponse);
-
-            // Vérifier si la réponse contient une erreur
-            if (json.has("cod")) {
-                int cod = json.getInt("cod");
-                if (cod != 200) {
-                    String message = json.optString("message", "Erreur inconnue");
-                    logger.warning("Erreur API: " + cod + " - " + message);
-                    return null;
-                }
-            }
+    /**
+     * Clé de cache d'une ville : nom nettoyé, insensible à la casse
+     */
+    static String cityKey(String cleanedCityName) {
+        return "city:" + cleanedCityName.toLowerCase(Locale.ROOT);
+    }
 
-            WeatherData weatherData = new WeatherData();
+    /**
+     * Clé de cache de coordonnées arrondies au centième de degré (~1 km)
+     */
+    static String coordinatesKey(double lat, double lon) {
+        return String.format(Locale.ROOT, "coord:%.2f,%.2f", lat, lon);
+    }
 
-            // Informations de base
-            weatherData.setCityName(json.optString("name", "N/A"));
-            JSONObject sys = json.optJSONObject("sys");
-            if (sys != null) {
-                weatherData.setCountry(sys.optString("country", "N/A"));
-                weatherData.setSunrise(sys.optLong("sunrise", 0) * 1000);
-                weatherData.setSunset(sys.optLong("sunset", 0) * 1000);
-            }
+    /**
+     * Configuration du service météo. Les valeurs par défaut correspondent
+     * à l'API OpenWeatherMap publique ; l'URL peut pointer vers un serveur local de test,
+     * ou un autre fournisseur peut remplacer OpenWeatherMap ({@link #provider}).
+     */
+    public static class Builder {
+        private WeatherProvider provider;
+        private HttpClient httpClient = OpenWeatherMapProvider.DEFAULT_HTTP_CLIENT;
+        private String apiUrl = OpenWeatherMapProvider.API_URL;
+        private String apiKey = OpenWeatherMapProvider.API_KEY;
+        private Duration cacheTtl = DEFAULT_CACHE_TTL;
+        private Duration staleWhileRevalidate = DEFAULT_STALE_WHILE_REVALIDATE;
+        private int cacheMaxSize = DEFAULT_CACHE_SIZE;
+        private int maxConcurrency = DEFAULT_MAX_CONCURRENCY;
+        private Duration bulkTimeout = OpenWeatherMapProvider.CONNECT_TIMEOUT.plus(OpenWeatherMapProvider.READ_TIMEOUT);
+        private WeatherHistoryStore history;
+        private WeatherSnapshotLog snapshotLog;
+        private RequestScheduler scheduler = OpenWeatherMapProvider.DEFAULT_SCHEDULER;
+
+        private Builder() {
+        }
 
-            // Température
-            JSONObject main = json.optJSONObject("main");
-            if (main != null) {
-                weatherData.setTemperature(main.optDouble("temp", 0.0));
-                weatherData.setFeelsLike(main.optDouble("feels_like", 0.0));
-                weatherData.setTempMin(main.optDouble("temp_min", 0.0));
-                weatherData.setTempMax(main.optDouble("temp_max", 0.0));
-                weatherData.setHumidity(main.optInt("humidity", 0));
-                weatherData.setPressure(main.optInt("pressure", 0));
-            }
+        /**
+         * @param provider source des relevés ; sans fournisseur, OpenWeatherMap est interrogé
+         *                 avec le client HTTP, l'URL, la clé et le planificateur configurés ici
+         */
+        public Builder provider(WeatherProvider provider) {
+            this.provider = provider;
+            return this;
+        }
 
-            // Conditions météo
-            JSONArray weatherArray = json.optJSONArray("weather");
-            if (weatherArray != null && !weatherArray.isEmpty()) {
-                JSONObject weather = weatherArray.getJSONObject(0);
-                weatherData.setDescription(weather.optString("description", "N/A"));
-                weatherData.setMainCondition(weather.optString("main", "N/A"));
-            }
+        public Builder httpClient(HttpClient httpClient) {
+            this.httpClient = httpClient;
+            return this;
+        }
+
+        /**
+         * @param apiUrl racine de l'API, sans "/" final (ex: http://localhost:8080/data/2.5)
+         */
+        public Builder apiUrl(String apiUrl) {
+            this.apiUrl = apiUrl;
+            return this;
+        }
+
+        public Builder apiKey(String apiKey) {
+            this.apiKey = apiKey;
+            return this;
+        }
+
+        public Builder cacheTtl(Duration cacheTtl) {
+            this.cacheTtl = cacheTtl;
+            return this;
+        }
 
-            // Vent
-            JSONObject wind = json.optJSONObject("wind");
-            if (wind != null) {
-                weatherData.setWindSpeed(wind.optDouble("speed", 0.0));
-                weatherData.setWindDirection(wind.optInt("deg", 0));
+        /**
+         * @param staleWhileRevalidate durée après expiration pendant laquelle un relevé est servi
+         *                             immédiatement, son rechargement se faisant en arrière-plan
+         *                             (Duration.ZERO : toujours attendre le rechargement)
+         */
+        public Builder staleWhileRevalidate(Duration staleWhileRevalidate) {
+            if (staleWhileRevalidate.isNegative()) {
+                throw new IllegalArgumentException("Durée invalide: " + staleWhileRevalidate);
             }
+            this.staleWhileRevalidate = staleWhileRevalidate;
+            return this;
+        }
 
-            // Visibilité
-            weatherData.setVisibility(json.optInt("visibility", 0));
+        public Builder cacheMaxSize(int cacheMaxSize) {
+            this.cacheMaxSize = cacheMaxSize;
+            return this;
+        }
 
-            // Coordonnées
-            JSONObject coord = json.optJSONObject("coord");
-            if (coord != null) {
-                weatherData.setLatitude(coord.optDouble("lat", 0.0));
-                weatherData.setLongitude(coord.optDouble("lon", 0.0));
+        /**
+         * @param maxConcurrency nombre maximal de requêtes simultanées lors des récupérations groupées
+         */
+        public Builder maxConcurrency(int maxConcurrency) {
+            if (maxConcurrency <= 0) {
+                throw new IllegalArgumentException("Parallélisme invalide: " + maxConcurrency);
             }
+            this.maxConcurrency = maxConcurrency;
+            return this;
+        }
+
+        /**
+         * @param bulkTimeout délai maximal accordé à chaque ville lors des récupérations groupées
+         */
+        public Builder bulkTimeout(Duration bulkTimeout) {
+            this.bulkTimeout = bulkTimeout;
+            return this;
+        }
 
-            // Timestamps
-            weatherData.setTimestamp(json.optLong("dt", 0) * 1000);
+        /**
+         * @param history historique où enregistrer les relevés (partageable entre services)
+         */
+        public Builder history(WeatherHistoryStore history) {
+            this.history = history;
+            return this;
+        }
 
-            return weatherData;
+        /**
+         * @param snapshotLog journal où persister les relevés ; il est relu à la construction
+         *                    du service pour démarrer avec un cache chaud (fermé par l'appelant)
+         */
+        public Builder snapshotLog(WeatherSnapshotLog snapshotLog) {
+            this.snapshotLog = snapshotLog;
+            return this;
+        }
 
-        } catch (Exception e) {
-            logger.log(Level.SEVERE, "Erreur lors du parsing JSON: " + jsonResponse, e);
-            return null;
+        /**
+         * @param scheduler planificateur des appels à l'API ; par défaut, celui partagé par tous
+         *                  les services utilisant la clé intégrée (55 req/min, rafales de 5)
+         */
+        public Builder scheduler(RequestScheduler scheduler) {
+            this.scheduler = scheduler;
+            return this;
+        }
+
+        /**
+         * Raccourci pour un planificateur propre à ce service
+         *
+         * @param requestsPerMinute débit autorisé par la clé API
+         * @param burst             nombre de requêtes pouvant partir d'un coup
+         */
+        public Builder rateLimit(int requestsPerMinute, int burst) {
+            return scheduler(new RequestScheduler(requestsPerMinute, burst));
+        }
+
+        public Meteo build() {
+            return new Meteo(this);
         }
     }
 
     /**
-     * Classe pour stocker les données météo
+     * Données météo d'une ville à un instant donné.
+     *
+     * Instances immuables (donc partageables entre threads et entre caches) et compactes :
+     * températures et vent en centièmes (short), coordonnées en micro-degrés (int),
+     * horodatages en secondes (int) et chaînes internées (les conditions, descriptions,
+     * pays et noms de ville se répètent d'un relevé à l'autre). Le rendu textuel
+     * est calculé une seule fois, à la première demande.
      */
-    public static class WeatherData {
-        private String cityName;
-        private String country;
-        private double temperature;
-        private double feelsLike;
-        private double tempMin;
-        private double tempMax;
-        private int humidity;
-        private int pressure;
-        private String description;
-        private String mainCondition;
-        private double windSpeed;
-        private int windDirection;
-        private int visibility;
-        private double latitude;
-        private double longitude;
-        private long timestamp;
-        private long sunrise;
-        private long sunset;
+    public static final class WeatherData {
+        private static final double CENTI = 100.0;
+        private static final double MICRO = 1_000_000.0;
 
-        // Getters et Setters
-        public String getCityName() {
-            return cityName;
+        /**
+         * Provenance d'un relevé
+         */
+        public enum Source {
+            // Réponse d'OpenWeatherMap encore valide
+            LIVE,
+            // Dernier relevé connu, expiré (service indisponible ou rechargement en cours)
+            STALE,
+            // Estimation climatologique (aucun relevé connu)
+            ESTIMATE
         }
 
-        public void setCityName(String cityName) {
-            this.cityName = cityName;
+        private final long cityId;
+        private final String cityName;
+        private final String country;
+        private final String description;
+        private final String mainCondition;
+        private final int latitude;
+        private final int longitude;
+        private final int timestamp;
+        private final int sunrise;
+        private final int sunset;
+        private final int visibility;
+        private final short temperature;
+        private final short feelsLike;
+        private final short tempMin;
+        private final short tempMax;
+        private final short pressure;
+        private final short windSpeed;
+        private final short windDirection;
+        private final byte humidity;
+        private final Source source;
+
+        // Rendu textuel calculé à la demande (String immuable : course bénigne)
+        private String rendered;
+
+        private WeatherData(Builder b) {
+            this.cityId = b.cityId;
+            this.cityName = intern(b.cityName);
+            this.country = intern(b.country);
+            this.description = intern(b.description);
+            this.mainCondition = intern(b.mainCondition);
+            this.latitude = micro(b.latitude);
+            this.longitude = micro(b.longitude);
+            this.timestamp = (int) (b.timestamp / 1000);
+            this.sunrise = (int) (b.sunrise / 1000);
+            this.sunset = (int) (b.sunset / 1000);
+            this.visibility = b.visibility;
+            this.temperature = centi(b.temperature);
+            this.feelsLike = centi(b.feelsLike);
+            this.tempMin = centi(b.tempMin);
+            this.tempMax = centi(b.tempMax);
+            this.pressure = (short) Math.clamp(b.pressure, Short.MIN_VALUE, Short.MAX_VALUE);
+            this.windSpeed = centi(b.windSpeed);
+            this.windDirection = (short) b.windDirection;
+            this.humidity = (byte) Math.clamp(b.humidity, 0, 100);
+            this.source = b.source;
         }
 
-        public String getCountry() {
-            return country;
+        private WeatherData(WeatherData other, Source source) {
+            this.cityId = other.cityId;
+            this.cityName = other.cityName;
+            this.country = other.country;
+            this.description = other.description;
+            this.mainCondition = other.mainCondition;
+            this.latitude = other.latitude;
+            this.longitude = other.longitude;
+            this.timestamp = other.timestamp;
+            this.sunrise = other.sunrise;
+            this.sunset = other.sunset;
+            this.visibility = other.visibility;
+            this.temperature = other.temperature;
+            this.feelsLike = other.feelsLike;
+            this.tempMin = other.tempMin;
+            this.tempMax = other.tempMax;
+            this.pressure = other.pressure;
+            this.windSpeed = other.windSpeed;
+            this.windDirection = other.windDirection;
+            this.humidity = other.humidity;
+            this.source = source;
         }
 
-        public void setCountry(String country) {
-            this.country = country;
+        public static Builder builder() {
+            return new Builder();
         }
 
-        public double getTemperature() {
-            return temperature;
+        private static String intern(String s) {
+            return s == null ? null : s.intern();
         }
 
-        public void setTemperature(double temperature) {
-            this.temperature = temperature;
+        private static int micro(double degrees) {
+            return Math.clamp(Math.round(degrees * MICRO), Integer.MIN_VALUE, Integer.MAX_VALUE);
         }
 
-        public double getFeelsLike() {
-            return feelsLike;
+        private static short centi(double value) {
+            return (short) Math.clamp(Math.round(value * CENTI), Short.MIN_VALUE, Short.MAX_VALUE);
         }
 
-        public void setFeelsLike(double feelsLike) {
-            this.feelsLike = feelsLike;
+        // Getters
+        public long getCityId() {
+            return cityId;
         }
 
-        public double getTempMin() {
-            return tempMin;
+        public String getCityName() {
+            return cityName;
+        }
+
+        public String getCountry() {
+            return country;
         }
 
-        public void setTempMin(double tempMin) {
-            this.tempMin = tempMin;
+        public double getTemperature() {
+            return temperature / CENTI;
         }
 
-        public double getTempMax() {
-            return tempMax;
+        public double getFeelsLike() {
+            return feelsLike / CENTI;
         }
 
-        public void setTempMax(double tempMax) {
-            this.tempMax = tempMax;
+        public double getTempMin() {
+            return tempMin / CENTI;
         }
 
-        public int getHumidity() {
-            return humidity;
+        public double getTempMax() {
+            return tempMax / CENTI;
         }
 
-        public void setHumidity(int humidity) {
-            this.humidity = humidity;
+        public int getHumidity() {
+            return humidity;
         }
 
         public int getPressure() {
             return pressure;
         }
 
-        public void setPressure(int pressure) {
-            this.pressure = pressure;
-        }
-
         public String getDescription() {
             return description;
         }
 
-        public void setDescription(String description) {
-            this.description = description;
-        }
-
         public String getMainCondition() {
             return mainCondition;
         }
 
-        public void setMainCondition(String mainCondition) {
-            this.mainCondition = mainCondition;
-        }
-
         public double getWindSpeed() {
-            return windSpeed;
-        }
-
-        public void setWindSpeed(double windSpeed) {
-            this.windSpeed = windSpeed;
+            return windSpeed / CENTI;
         }
 
         public int getWindDirection() {
             return windDirection;
         }
 
-        public void setWindDirection(int windDirection) {
-            this.windDirection = windDirection;
-        }
-
         public int getVisibility() {
             return visibility;
         }
 
-        public void setVisibility(int visibility) {
-            this.visibility = visibility;
-        }
-
         public double getLatitude() {
-            return latitude;
+            return latitude / MICRO;
         }
 
-        public void setLatitude(double latitude) {
-            this.latitude = latitude;
+        public double getLongitude() {
+            return longitude / MICRO;
         }
 
-        public double getLongitude() {
-            return longitude;
+        public long getTimestamp() {
+            return Integer.toUnsignedLong(timestamp) * 1000;
         }
 
-        public void setLongitude(double longitude) {
-            this.longitude = longitude;
+        public long getSunrise() {
+            return Integer.toUnsignedLong(sunrise) * 1000;
         }
 
-        public long getTimestamp() {
-            return timestamp;
+        public long getSunset() {
+            return Integer.toUnsignedLong(sunset) * 1000;
         }
 
-        public void setTimestamp(long timestamp) {
-            this.timestamp = timestamp;
+        public Source getSource() {
+            return source;
         }
 
-        public long getSunrise() {
-            return sunrise;
+        /**
+         * @return true si le relevé est expiré (servi faute de réponse récente)
+         */
+        public boolean isStale() {
+            return source == Source.STALE;
         }
 
-        public void setSunrise(long sunrise) {
-            this.sunrise = sunrise;
+        /**
+         * @return true s'il s'agit d'une estimation climatologique et non d'un relevé
+         */
+        public boolean isEstimated() {
+            return source == Source.ESTIMATE;
         }
 
-        public long getSunset() {
-            return sunset;
+        /**
+         * @return l'âge du relevé (temps écoulé depuis son horodatage)
+         */
+        public Duration getAge() {
+            return Duration.ofMillis(Math.max(0, System.currentTimeMillis() - getTimestamp()));
         }
 
-        public void setSunset(long sunset) {
-            this.sunset = sunset;
+        /**
+         * @return ce relevé avec une autre provenance (copie, l'instance est immuable)
+         */
+        public WeatherData withSource(Source source) {
+            return source == this.source ? this : new WeatherData(this, source);
         }
 
         /**
@@ -462,7 +926,7 @@ public class Meteo {
          * Convertit la vitesse du vent en km/h
          */
         public double getWindSpeedKmh() {
-            return windSpeed * 3.6;
+            return getWindSpeed() * 3.6;
         }
 
         /**
@@ -470,17 +934,31 @@ public class Meteo {
          */
         public boolean isValid() {
             return cityName != null && !cityName.equals("N/A") &&
-                    !description.equals("N/A") && temperature != 0.0;
+                    description != null && !description.equals("N/A") && temperature != 0;
         }
 
         @Override
         public String toString() {
+            String text = rendered;
+            if (text == null) {
+                text = render();
+                rendered = text;
+            }
+            return text;
+        }
+
+        private String render() {
             if (!isValid()) {
                 return "Données météo non disponibles";
             }
 
+            String origin = switch (source) {
+                case LIVE -> "";
+                case STALE -> " [relevé expiré]";
+                case ESTIMATE -> " [estimation climatologique]";
+            };
             return String.format(
-                    "Météo à %s, %s (%.4f, %.4f):\n" +
+                    "Météo à %s, %s (%.4f, %.4f)%s:\n" +
                             "Temperature: %.1f°C (ressenti: %.1f°C)\n" +
                             "Min/Max: %.1f°C / %.1f°C\n" +
                             "Conditions: %s (%s)\n" +
@@ -489,13 +967,155 @@ public class Meteo {
                             "Vent: %.1f m/s (%.1f km/h), direction %d° (%s)\n" +
                             "Visibilité: %d m\n" +
                             "Lever/Coucher du soleil: %tT / %tT",
-                    cityName, country, latitude, longitude,
-                    temperature, feelsLike, tempMin, tempMax,
-                    description, mainCondition, humidity, pressure,
-                    windSpeed, getWindSpeedKmh(), windDirection, getWindDirectionText(),
-                    visibility, new java.util.Date(sunrise), new java.util.Date(sunset)
+                    cityName, country, getLatitude(), getLongitude(), origin,
+                    getTemperature(), getFeelsLike(), getTempMin(), getTempMax(),
+                    description, mainCondition, getHumidity(), getPressure(),
+                    getWindSpeed(), getWindSpeedKmh(), getWindDirection(), getWindDirectionText(),
+                    visibility, new java.util.Date(getSunrise()), new java.util.Date(getSunset())
             );
         }
+
+        /**
+         * Construction champ par champ d'un WeatherData (utilisé par les parseurs)
+         */
+        public static final class Builder {
+            private long cityId;
+            private String cityName;
+            private String country;
+            private double temperature;
+            private double feelsLike;
+            private double tempMin;
+            private double tempMax;
+            private int humidity;
+            private int pressure;
+            private String description;
+            private String mainCondition;
+            private double windSpeed;
+            private int windDirection;
+            private int visibility;
+            private double latitude;
+            private double longitude;
+            private long timestamp;
+            private long sunrise;
+            private long sunset;
+            private Source source = Source.LIVE;
+
+            private Builder() {
+            }
+
+            public Builder cityId(long cityId) {
+                this.cityId = cityId;
+                return this;
+            }
+
+            public Builder cityName(String cityName) {
+                this.cityName = cityName;
+                return this;
+            }
+
+            public Builder country(String country) {
+                this.country = country;
+                return this;
+            }
+
+            public Builder temperature(double temperature) {
+                this.temperature = temperature;
+                return this;
+            }
+
+            public Builder feelsLike(double feelsLike) {
+                this.feelsLike = feelsLike;
+                return this;
+            }
+
+            public Builder tempMin(double tempMin) {
+                this.tempMin = tempMin;
+                return this;
+            }
+
+            public Builder tempMax(double tempMax) {
+                this.tempMax = tempMax;
+                return this;
+            }
+
+            public Builder humidity(int humidity) {
+                this.humidity = humidity;
+                return this;
+            }
+
+            public Builder pressure(int pressure) {
+                this.pressure = pressure;
+                return this;
+            }
+
+            public Builder description(String description) {
+                this.description = description;
+                return this;
+            }
+
+            public Builder mainCondition(String mainCondition) {
+                this.mainCondition = mainCondition;
+                return this;
+            }
+
+            public Builder windSpeed(double windSpeed) {
+                this.windSpeed = windSpeed;
+                return this;
+            }
+
+            public Builder windDirection(int windDirection) {
+                this.windDirection = windDirection;
+                return this;
+            }
+
+            public Builder visibility(int visibility) {
+                this.visibility = visibility;
+                return this;
+            }
+
+            public Builder latitude(double latitude) {
+                this.latitude = latitude;
+                return this;
+            }
+
+            public Builder longitude(double longitude) {
+                this.longitude = longitude;
+                return this;
+            }
+
+            /**
+             * @param timestamp horodatage du relevé, en millisecondes
+             */
+            public Builder timestamp(long timestamp) {
+                this.timestamp = timestamp;
+                return this;
+            }
+
+            /**
+             * @param sunrise lever du soleil, en millisecondes
+             */
+            public Builder sunrise(long sunrise) {
+                this.sunrise = sunrise;
+                return this;
+            }
+
+            /**
+             * @param sunset coucher du soleil, en millisecondes
+             */
+            public Builder sunset(long sunset) {
+                this.sunset = sunset;
+                return this;
+            }
+
+            public Builder source(Source source) {
+                this.source = source;
+                return this;
+            }
+
+            public WeatherData build() {
+                return new WeatherData(this);
+            }
+        }
     }
 
     /**
@@ -611,33 +1231,43 @@ public class Meteo {
             System.out.println("Erreur avec les coordonnées de Paris");
         }
 
+        System.out.println("\n" + service.getCache());
+        System.out.println(service.getHistory());
+        System.out.println(service.getProvider());
         scanner.close();
     }
 
 
     static String getNatureTemperature(String town) {
-        Meteo service = new Meteo();
-        WeatherData weather = service.getWeatherByCity(town);
+        WeatherData weather = SHARED.getWeatherByCity(town);
         if (weather != null && weather.isValid()) {
-            double temp = weather.getTemperature();
-            if (temp < 0) {
-                return "très froid";
-            } else if (temp < 10) {
-                return "froid";
-            } else if (temp < 17) {
-                return "tempéré";
-            } else if (temp < 26) {
-                return "chaud";
-            } else if (temp < 35) {
-                return "très chaud";
-            } else {
-                return "extrêmement chaud";
-            }
+            return getNatureTemperature(weather.getTemperature());
         } else {
             return "données météo non disponibles";
         }
     }
 
+    /**
+     * Tranche de température qualitative (utilisée aussi comme clé du cache de menus)
+     *
+     * @param temp température en °C
+     */
+    static String getNatureTemperature(double temp) {
+        if (temp < 0) {
+            return "très froid";
+        } else if (temp < 10) {
+            return "froid";
+        } else if (temp < 17) {
+            return "tempéré";
+        } else if (temp < 26) {
+            return "chaud";
+        } else if (temp < 35) {
+            return "très chaud";
+        } else {
+            return "extrêmement chaud";
+        }
+    }
+
 
     public static void main(String[] args) {
         String town = "Valenciennes";
@@ -0,0 +1,736 @@
+package org.example;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Client de l'API HTTP d'Ollama (/api/tags, /api/generate, /api/chat).
+ *
+ * Le client HTTP, l'URL, le gestionnaire d'historique, les métriques et les disjoncteurs
+ * sont propres à l'instance ; une instance est partagée sans risque entre threads.
+ */
+public class OllamaClient implements LlmClient {
+
+    static final String DEFAULT_BASE_URL = "http://localhost:11434";
+    static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(30);
+    // Délai d'attente d'une génération : adapté aux latences observées, dans ces bornes
+    static final Duration MIN_LLM_TIMEOUT = Duration.ofSeconds(30);
+    static final Duration MAX_LLM_TIMEOUT = Duration.ofMinutes(5);
+
+    private final HttpClient httpClient;
+    private final String baseUrl;
+    // Historiques longs : anciens échanges résumés pour borner la taille du prompt
+    private final HistoryManager historyManager;
+    // Taille des prompts et statistiques Ollama de chaque appel, par modèle
+    private final LLMMetrics metrics;
+    // Disjoncteurs par endpoint Ollama (/api/chat, /api/generate)
+    private final Map<String, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+
+    /**
+     * Instance Ollama locale (http://localhost:11434)
+     */
+    public OllamaClient() {
+        this(HttpClient.newBuilder().connectTimeout(CONNECT_TIMEOUT).build(), DEFAULT_BASE_URL);
+    }
+
+    /**
+     * @param httpClient client HTTP partagé par tous les appels
+     * @param baseUrl    URL de l'instance Ollama
+     */
+    public OllamaClient(HttpClient httpClient, String baseUrl) {
+        this(httpClient, baseUrl, new HistoryManager(HistoryManager.DEFAULT_TOKEN_BUDGET), new LLMMetrics());
+    }
+
+    /**
+     * @param httpClient     client HTTP partagé par tous les appels
+     * @param baseUrl        URL de l'instance Ollama
+     * @param historyManager compactage des historiques envoyés au modèle
+     * @param metrics        métriques des appels
+     */
+    public OllamaClient(HttpClient httpClient, String baseUrl, HistoryManager historyManager, LLMMetrics metrics) {
+        this.httpClient = httpClient;
+        this.baseUrl = baseUrl;
+        this.historyManager = historyManager;
+        this.metrics = metrics;
+    }
+
+    public String getBaseUrl() {
+        return baseUrl;
+    }
+
+    @Override
+    public HistoryManager getHistoryManager() {
+        return historyManager;
+    }
+
+    @Override
+    public LLMMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Liste les modèles LLM disponibles sur la machine (/api/tags)
+     */
+    @Override
+    public String[] listModels() throws Exception {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + "/api/tags"))
+                .GET()
+                .build();
+
+        HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+
+        if (response.statusCode() == 200) {
+            JSONObject jsonResponse = new JSONObject(response.body());
+            JSONArray modelsArray = jsonResponse.getJSONArray("models");
+
+            String[] modelNames = new String[modelsArray.length()];
+            for (int i = 0; i < modelsArray.length(); i++) {
+                JSONObject model = modelsArray.getJSONObject(i);
+                modelNames[i] = model.getString("name");
+            }
+            return modelNames;
+        }
+        return new String[0];
+    }
+
+    @Override
+    public String generate(String model, String prompt) throws Exception {
+        // Construction du JSON avec org.json
+        JSONObject jsonRequest = new JSONObject();
+        jsonRequest.put("model", model);
+        jsonRequest.put("prompt", prompt);
+        jsonRequest.put("stream", false);
+
+        // Envoi de la requête
+        PipelineEvents.LlmCall call = PipelineEvents.LlmCall.begin(model, "/api/generate");
+        HttpResponse<String> response = send(call, jsonRequest, HttpResponse.BodyHandlers.ofString());
+
+        // Traitement de la réponse avec org.json
+        if (response.statusCode() == 200) { //ok
+            JSONObject jsonResponse = new JSONObject(response.body());
+            recordCall(call, jsonRequest, 200, GenerationStats.fromJson(jsonResponse));
+            return jsonResponse.getString("response");
+        } else {
+            recordCall(call, jsonRequest, response.statusCode(), null);
+            throw new RuntimeException("Erreur HTTP: " + response.statusCode() + " - " + response.body());
+        }
+    }
+
+    /**
+     * Requête /api/generate sans prompt : Ollama charge le modèle sans rien générer.
+     *
+     * @return futur complété quand le modèle est chargé (en échec si Ollama répond une erreur)
+     */
+    @Override
+    public CompletableFuture<Void> preloadModel(String model, Duration keepAlive) {
+        JSONObject jsonRequest = new JSONObject();
+        jsonRequest.put("model", model);
+        jsonRequest.put("keep_alive", keepAlive.toSeconds() + "s");
+        jsonRequest.put("stream", false);
+
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + "/api/generate"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(jsonRequest.toString()))
+                .timeout(MAX_LLM_TIMEOUT)
+                .build();
+
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                .thenAccept(response -> {
+                    if (response.statusCode() != 200) {
+                        throw new RuntimeException("Erreur HTTP: " + response.statusCode() + " - " + response.body());
+                    }
+                });
+    }
+
+    @Override
+    public String chat(String model, String systemPrompt,
+                       String userMessage, String[] previousMessages) throws Exception {
+
+        // Envoi de la requête
+        JSONObject jsonRequest = buildChatBody(model, systemPrompt, userMessage, previousMessages);
+        PipelineEvents.LlmCall call = PipelineEvents.LlmCall.begin(model, "/api/chat");
+        HttpResponse<String> response = send(call, jsonRequest, HttpResponse.BodyHandlers.ofString());
+
+        // normalement, la réponse tient compte de l'historique
+        return chatContent(call, jsonRequest, response);
+    }
+
+    @Override
+    public CompletableFuture<String> chatAsync(String model, String systemPrompt,
+                                               String userMessage, String[] previousMessages) {
+        JSONObject jsonRequest = buildChatBody(model, systemPrompt, userMessage, previousMessages);
+        PipelineEvents.LlmCall call = PipelineEvents.LlmCall.begin(model, "/api/chat");
+        CompletableFuture<HttpResponse<String>> response =
+                sendAsync(call, jsonRequest, HttpResponse.BodyHandlers.ofString());
+        CompletableFuture<String> text = response.thenApply(r -> chatContent(call, jsonRequest, r));
+        // cancel(true) sur le futur de sendAsync interrompt l'échange HTTP (Ollama arrête la génération)
+        text.whenComplete((t, error) -> {
+            if (text.isCancelled()) {
+                response.cancel(true);
+            }
+        });
+        return text;
+    }
+
+    /**
+     * Réponse contrainte par le schéma JSON du menu (champ "format"), lue au fil du flux :
+     * dès que le validateur juge le menu complet, la lecture s'arrête et la connexion est
+     * fermée, ce qui interrompt la génération côté Ollama. num_predict et la séquence d'arrêt
+     * bornent aussi la génération côté serveur.
+     */
+    @Override
+    public CompletableFuture<Menu> menuAsync(String model, String systemPrompt,
+                                             String userMessage, String[] previousMessages) {
+        JSONObject jsonRequest = buildMenuRequest(historyManager, model, systemPrompt, userMessage, previousMessages);
+        jsonRequest.put("stream", true);
+        PipelineEvents.LlmCall call = PipelineEvents.LlmCall.begin(model, "/api/chat");
+        if (!breaker(call.endpoint).tryAcquire()) {
+            return CompletableFuture.failedFuture(unavailable(call));
+        }
+
+        MenuStream stream = new MenuStream(call, jsonRequest);
+        CompletableFuture<HttpResponse<Void>> response = httpClient.sendAsync(postRequest(call, jsonRequest),
+                info -> {
+                    stream.status = info.statusCode();
+                    return HttpResponse.BodySubscribers.fromLineSubscriber(stream);
+                });
+        response.whenComplete((r, error) -> {
+            if (error != null) {
+                stream.fail(error);
+            }
+        });
+        stream.result.whenComplete((menu, error) -> {
+            if (stream.result.isCancelled()) {
+                stream.abandon();
+                response.cancel(true);
+            }
+        });
+        return stream.result;
+    }
+
+    /**
+     * Corps JSON d'une requête /api/chat de menu (sans le champ "stream") : schéma JSON
+     * du menu, plafond de tokens générés et arrêt à la fin de l'objet
+     */
+    static JSONObject buildMenuRequest(HistoryManager historyManager, String model, String systemPrompt,
+                                       String userMessage, String[] previousMessages) {
+        JSONObject jsonRequest = buildChatRequest(historyManager, model, systemPrompt, userMessage, previousMessages);
+        jsonRequest.put("format", Menu.schema());
+        JSONObject options = new JSONObject();
+        options.put("num_predict", Menu.MAX_TOKENS);
+        // L'objet du menu est plat : sa première accolade fermante le termine
+        options.put("stop", new JSONArray().put("}"));
+        jsonRequest.put("options", options);
+        return jsonRequest;
+    }
+
+    /**
+     * Corps JSON d'une requête /api/chat non streamée
+     */
+    private JSONObject buildChatBody(String model, String systemPrompt,
+                                     String userMessage, String[] previousMessages) {
+        // Construction du JSON pour l'API chat
+        JSONObject jsonRequest = buildChatRequest(historyManager, model, systemPrompt, userMessage, previousMessages);
+        jsonRequest.put("stream", false);
+        return jsonRequest;
+    }
+
+    /**
+     * @return le disjoncteur d'un endpoint Ollama
+     */
+    CircuitBreaker breaker(String path) {
+        return breakers.computeIfAbsent(path,
+                p -> new CircuitBreaker("Ollama " + p, MIN_LLM_TIMEOUT, MAX_LLM_TIMEOUT));
+    }
+
+    /**
+     * Requête POST vers l'endpoint de l'appel, avec le délai adaptatif de son disjoncteur
+     */
+    private HttpRequest postRequest(PipelineEvents.LlmCall call, JSONObject jsonRequest) {
+        return HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + call.endpoint))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(jsonRequest.toString()))
+                .timeout(breaker(call.endpoint).getTimeout())
+                .build();
+    }
+
+    /**
+     * Envoie la requête d'un appel, sauf si le disjoncteur de l'endpoint est ouvert
+     *
+     * @throws CircuitBreaker.OpenException si Ollama est considéré indisponible
+     */
+    private <T> HttpResponse<T> send(PipelineEvents.LlmCall call, JSONObject jsonRequest,
+                                     HttpResponse.BodyHandler<T> handler) throws IOException, InterruptedException {
+        if (!breaker(call.endpoint).tryAcquire()) {
+            throw unavailable(call);
+        }
+        try {
+            return httpClient.send(postRequest(call, jsonRequest), handler);
+        } catch (IOException e) {
+            recordFailure(call, jsonRequest, e);
+            throw e;
+        }
+    }
+
+    /**
+     * Variante asynchrone de {@link #send} : le futur renvoyé est celui du client HTTP,
+     * son annulation interrompt l'échange (et n'est pas comptée comme un échec)
+     */
+    private <T> CompletableFuture<HttpResponse<T>> sendAsync(PipelineEvents.LlmCall call, JSONObject jsonRequest,
+                                                             HttpResponse.BodyHandler<T> handler) {
+        if (!breaker(call.endpoint).tryAcquire()) {
+            return CompletableFuture.failedFuture(unavailable(call));
+        }
+        CompletableFuture<HttpResponse<T>> response = httpClient.sendAsync(postRequest(call, jsonRequest), handler);
+        response.whenComplete((r, error) -> {
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            if (cause instanceof CancellationException) {
+                breaker(call.endpoint).onCancelled();
+            } else if (error != null) {
+                recordFailure(call, jsonRequest, error);
+            }
+        });
+        return response;
+    }
+
+    private static CircuitBreaker.OpenException unavailable(PipelineEvents.LlmCall call) {
+        return new CircuitBreaker.OpenException("Ollama indisponible (" + call.endpoint
+                + ") : disjoncteur ouvert, nouvel essai dans quelques secondes");
+    }
+
+    /**
+     * Extrait le texte de la réponse d'un /api/chat non streamé et enregistre ses métriques
+     *
+     * @param call événement démarré à l'envoi de la requête
+     */
+    private String chatContent(PipelineEvents.LlmCall call, JSONObject jsonRequest,
+                               HttpResponse<String> response) {
+        if (response.statusCode() == 200) {
+            JSONObject jsonResponse = new JSONObject(response.body());
+            recordCall(call, jsonRequest, 200, GenerationStats.fromJson(jsonResponse));
+            JSONObject message = jsonResponse.getJSONObject("message");
+            return message.getString("content");
+        } else {
+            recordCall(call, jsonRequest, response.statusCode(), null);
+            throw new RuntimeException("Erreur HTTP: " + response.statusCode());
+        }
+    }
+
+    /**
+     * Enregistre un appel terminé : métriques par modèle, disjoncteur de l'endpoint et événement JFR
+     *
+     * @param status statut HTTP de la réponse (0 en cas d'erreur réseau, de délai dépassé ou d'erreur dans le flux)
+     * @param stats  statistiques renvoyées par Ollama (null si absentes)
+     */
+    private void recordCall(PipelineEvents.LlmCall call, JSONObject jsonRequest, int status,
+                            GenerationStats stats) {
+        long latency = System.nanoTime() - call.startNanos;
+        if (status > 0 && status < 500) {
+            breaker(call.endpoint).onSuccess(latency);
+        } else {
+            breaker(call.endpoint).onFailure();
+        }
+        recordCall(metrics, call, jsonRequest, status, stats);
+    }
+
+    /**
+     * Enregistre un appel en échec sans réponse exploitable (erreur réseau, délai dépassé,
+     * erreur dans le flux) ; un délai dépassé compte aussi parmi les latences du disjoncteur
+     *
+     * @param error l'erreur de l'appel
+     */
+    private void recordFailure(PipelineEvents.LlmCall call, JSONObject jsonRequest, Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (cause instanceof HttpTimeoutException) {
+            breaker(call.endpoint).onTimeout(System.nanoTime() - call.startNanos);
+            recordCall(metrics, call, jsonRequest, 0, null);
+        } else {
+            recordCall(call, jsonRequest, 0, null);
+        }
+    }
+
+    /**
+     * Enregistre un appel terminé dans les métriques et l'événement JFR (commun aux backends)
+     *
+     * @param status statut HTTP de la réponse (0 en cas d'erreur réseau ou de délai dépassé)
+     * @param stats  statistiques de la génération (null si absentes)
+     */
+    static void recordCall(LLMMetrics metrics, PipelineEvents.LlmCall call, JSONObject jsonRequest, int status,
+                           GenerationStats stats) {
+        call.end();
+        long latency = System.nanoTime() - call.startNanos;
+        if (status == 200) {
+            metrics.record(call.model, jsonRequest, stats, latency);
+        } else {
+            metrics.recordError(call.model);
+        }
+        if (call.shouldCommit()) {
+            call.status = status;
+            call.promptChars = LLMMetrics.promptChars(jsonRequest);
+            call.promptTokensEstimated = HistoryManager.estimateTokens(call.promptChars);
+            if (stats != null) {
+                call.promptEvalCount = stats.getPromptEvalCount();
+                call.promptEvalDuration = stats.getPromptEvalDuration();
+                call.evalCount = stats.getEvalCount();
+                call.evalDuration = stats.getEvalDuration();
+                call.loadDuration = stats.getLoadDuration();
+            }
+            call.commit();
+        }
+    }
+
+    /**
+     * Construit le corps JSON d'une requête /api/chat (sans le champ "stream").
+     * L'historique est compacté : les préférences extraites des anciens échanges
+     * complètent le message système.
+     *
+     * @param historyManager   compactage de l'historique
+     * @param model            le nom du modèle LLM à utiliser
+     * @param systemPrompt     le prompt système (instructions pour le modèle)
+     * @param userMessage      le message utilisateur actuel
+     * @param previousMessages un tableau de messages précédents (alternance personne/assistant)
+     */
+    static JSONObject buildChatRequest(HistoryManager historyManager, String model, String systemPrompt,
+                                       String userMessage, String[] previousMessages) {
+        JSONObject jsonRequest = new JSONObject();
+        jsonRequest.put("model", model);
+
+        // Construction du tableau de messages
+        JSONArray messages = new JSONArray();
+
+        HistoryManager.Compacted history = historyManager.compact(previousMessages);
+
+        // Message système
+        String system = systemPrompt == null ? "" : systemPrompt;
+        if (history.getSummary() != null) {
+            system = system.isEmpty() ? history.getSummary() : system + "\n\n" + history.getSummary();
+        }
+        if (!system.isEmpty()) {
+            JSONObject systemMessage = new JSONObject();
+            systemMessage.put("role", "system");
+            systemMessage.put("content", system);
+            messages.put(systemMessage);
+        }
+
+        // Ajout des messages précédents (historique), y compris un dernier message de la personne sans réponse
+        String[] recent = history.getRecent();
+        for (int i = 0; i < recent.length; i++) {
+            JSONObject previousMsg = new JSONObject();
+            previousMsg.put("role", i % 2 == 0 ? "user" : "assistant");
+            previousMsg.put("content", recent[i]);
+            messages.put(previousMsg);
+        }
+
+        // Message utilisateur actuel
+        JSONObject currentUserMessage = new JSONObject();
+        currentUserMessage.put("role", "user");
+        currentUserMessage.put("content", userMessage);
+        messages.put(currentUserMessage);
+
+        jsonRequest.put("messages", messages);
+        return jsonRequest;
+    }
+
+    /**
+     * Variante streamée de {@link #generate}
+     *
+     * @param model   le nom du modèle LLM à utiliser
+     * @param prompt  le texte d'entrée pour la génération
+     * @param onToken callback appelé pour chaque fragment de texte reçu
+     * @return le texte complet et les statistiques du chunk final
+     */
+    public StreamedResponse generateStream(String model, String prompt, Consumer<String> onToken) throws Exception {
+        JSONObject jsonRequest = new JSONObject();
+        jsonRequest.put("model", model);
+        jsonRequest.put("prompt", prompt);
+        jsonRequest.put("stream", true);
+
+        return streamRequest("/api/generate", jsonRequest, onToken);
+    }
+
+    @Override
+    public StreamedResponse generateStream(String model, String system, String prompt, int[] context,
+                                           Duration keepAlive, Consumer<String> onToken) throws Exception {
+        JSONObject jsonRequest = new JSONObject();
+        jsonRequest.put("model", model);
+        jsonRequest.put("prompt", prompt);
+        jsonRequest.put("keep_alive", keepAlive.toSeconds() + "s");
+        jsonRequest.put("stream", true);
+        if (system != null && !system.isEmpty()) {
+            jsonRequest.put("system", system);
+        }
+        if (context != null) {
+            jsonRequest.put("context", new JSONArray(context));
+        }
+
+        return streamRequest("/api/generate", jsonRequest, onToken);
+    }
+
+    @Override
+    public StreamedResponse chatStream(String model, String systemPrompt, String userMessage,
+                                       String[] previousMessages, Consumer<String> onToken) throws Exception {
+        JSONObject jsonRequest = buildChatRequest(historyManager, model, systemPrompt, userMessage, previousMessages);
+        jsonRequest.put("stream", true);
+
+        return streamRequest("/api/chat", jsonRequest, onToken);
+    }
+
+    /**
+     * Envoie une requête streamée et lit les chunks NDJSON ligne par ligne.
+     * Les chunks de /api/generate portent le texte dans "response",
+     * ceux de /api/chat dans "message.content".
+     */
+    StreamedResponse streamRequest(String path, JSONObject jsonRequest, Consumer<String> onToken) throws Exception {
+        PipelineEvents.LlmCall call = PipelineEvents.LlmCall.begin(jsonRequest.optString("model"), path);
+        HttpResponse<Stream<String>> response = send(call, jsonRequest, HttpResponse.BodyHandlers.ofLines());
+
+        try (Stream<String> lines = response.body()) {
+            if (response.statusCode() != 200) {
+                recordCall(call, jsonRequest, response.statusCode(), null);
+                throw new RuntimeException("Erreur HTTP: " + response.statusCode() + " - "
+                        + lines.collect(Collectors.joining("\n")));
+            }
+
+            StringBuilder text = new StringBuilder();
+            GenerationStats stats = null;
+            int[] context = null;
+            Iterator<String> it = lines.iterator();
+            try {
+                while (it.hasNext()) {
+                    String line = it.next();
+                    if (line.isBlank()) {
+                        continue;
+                    }
+                    JSONObject chunk = new JSONObject(line);
+                    if (chunk.has("error")) {
+                        RuntimeException error = new RuntimeException("Erreur Ollama: " + chunk.getString("error"));
+                        recordFailure(call, jsonRequest, error);
+                        throw error;
+                    }
+
+                    JSONObject message = chunk.optJSONObject("message");
+                    String token = message != null
+                            ? message.optString("content", "")
+                            : chunk.optString("response", "");
+                    if (!token.isEmpty()) {
+                        text.append(token);
+                        if (onToken != null) {
+                            onToken.accept(token);
+                        }
+                    }
+
+                    if (chunk.optBoolean("done", false)) {
+                        stats = GenerationStats.fromJson(chunk);
+                        context = readContext(chunk);
+                        break;
+                    }
+                }
+            } catch (UncheckedIOException | JSONException e) {
+                // Connexion coupée ou chunk illisible en cours de génération
+                recordFailure(call, jsonRequest, e);
+                throw e;
+            }
+            if (stats == null) {
+                // Flux terminé sans chunk final : réponse tronquée, sans statistiques ni contexte
+                RuntimeException error = new RuntimeException("Réponse d'Ollama interrompue avant la fin (" + path + ")");
+                recordFailure(call, jsonRequest, error);
+                throw error;
+            }
+            recordCall(call, jsonRequest, 200, stats);
+            return new StreamedResponse(text.toString(), stats, context);
+        }
+    }
+
+    /**
+     * Lecture ligne à ligne d'une réponse /api/chat de menu, sans thread bloqué :
+     * chaque chunk NDJSON est transmis au validateur, et l'appel est enregistré une seule fois
+     * (fin du flux, menu complet, erreur ou annulation)
+     */
+    private final class MenuStream implements Flow.Subscriber<String> {
+        final CompletableFuture<Menu> result = new CompletableFuture<>();
+        private final PipelineEvents.LlmCall call;
+        private final JSONObject jsonRequest;
+        private final MenuStreamValidator validator = new MenuStreamValidator();
+        private final StringBuilder errorBody = new StringBuilder();
+        private final AtomicBoolean finished = new AtomicBoolean();
+        private volatile Flow.Subscription subscription;
+        private volatile int status;
+
+        MenuStream(PipelineEvents.LlmCall call, JSONObject jsonRequest) {
+            this.call = call;
+            this.jsonRequest = jsonRequest;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            if (finished.get()) {
+                subscription.cancel();
+            } else {
+                subscription.request(Long.MAX_VALUE);
+            }
+        }
+
+        @Override
+        public void onNext(String line) {
+            if (finished.get()) {
+                return;
+            }
+            if (status != 200) {
+                errorBody.append(line).append('\n');
+                return;
+            }
+            if (line.isBlank()) {
+                return;
+            }
+            JSONObject chunk;
+            try {
+                chunk = new JSONObject(line);
+            } catch (JSONException e) {
+                fail(e);
+                return;
+            }
+            if (chunk.has("error")) {
+                fail(new RuntimeException("Erreur Ollama: " + chunk.getString("error")));
+                return;
+            }
+
+            JSONObject message = chunk.optJSONObject("message");
+            String token = message != null ? message.optString("content", "") : "";
+            if (!token.isEmpty()) {
+                if (validator.accept(token)) {
+                    // Menu complet : la suite de la génération est abandonnée
+                    stopEarly();
+                    return;
+                }
+            }
+            if (chunk.optBoolean("done", false)) {
+                finish(GenerationStats.fromJson(chunk));
+            }
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            fail(error);
+        }
+
+        @Override
+        public void onComplete() {
+            if (status != 200) {
+                if (finished.compareAndSet(false, true)) {
+                    recordCall(call, jsonRequest, status, null);
+                    result.completeExceptionally(new RuntimeException("Erreur HTTP: " + status + " - " + errorBody));
+                }
+            } else {
+                finish(null);
+            }
+        }
+
+        /**
+         * Termine une génération interrompue : Ollama n'a pas envoyé ses statistiques, seuls
+         * la durée de l'appel et les tokens reçus (un chunk par token) sont enregistrés
+         */
+        private void stopEarly() {
+            if (!finished.get()) {
+                metrics.recordEarlyStop(call.model, validator.getTokenCount());
+                call.evalCount = validator.getTokenCount();
+                finish(null);
+            }
+            cancel();
+        }
+
+        private void finish(GenerationStats stats) {
+            if (!finished.compareAndSet(false, true)) {
+                return;
+            }
+            recordCall(call, jsonRequest, 200, stats);
+            Menu menu = validator.toMenu();
+            if (menu != null) {
+                result.complete(menu);
+            } else {
+                result.completeExceptionally(new RuntimeException("Menu incomplet dans la réponse de " + call.model));
+            }
+        }
+
+        void fail(Throwable error) {
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            if (!finished.compareAndSet(false, true)) {
+                return;
+            }
+            if (cause instanceof CancellationException) {
+                breaker(call.endpoint).onCancelled();
+            } else {
+                recordFailure(call, jsonRequest, cause);
+            }
+            result.completeExceptionally(cause);
+        }
+
+        /**
+         * Annulation par l'appelant : ni succès ni échec pour le disjoncteur
+         */
+        void abandon() {
+            if (finished.compareAndSet(false, true)) {
+                breaker(call.endpoint).onCancelled();
+            }
+            cancel();
+        }
+
+        void cancel() {
+            finished.set(true);
+            Flow.Subscription s = subscription;
+            if (s != null) {
+                s.cancel();
+            }
+        }
+    }
+
+    /**
+     * Lit le tableau "context" (tokens de la conversation) renvoyé par /api/generate
+     *
+     * @return les tokens, ou null si la réponse n'en contient pas
+     */
+    static int[] readContext(JSONObject json) {
+        JSONArray array = json.optJSONArray("context");
+        if (array == null) {
+            return null;
+        }
+        int[] context = new int[array.length()];
+        for (int i = 0; i < context.length; i++) {
+            context[i] = array.getInt(i);
+        }
+        return context;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("Ollama ").append(baseUrl);
+        for (CircuitBreaker breaker : breakers.values()) {
+            sb.append("\n  ").append(breaker);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,494 @@
+package org.example;
+
+import java.net.ConnectException;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Fournisseur météo interrogeant l'API OpenWeatherMap (endpoints /weather et /group).
+ *
+ * Les appels passent par le planificateur du quota de la clé API ; chaque endpoint a son
+ * disjoncteur (délai d'attente adaptatif, requête doublée au-delà du p95) et les réponses
+ * sont parsées directement depuis leurs octets.
+ */
+public class OpenWeatherMapProvider implements WeatherProvider {
+
+    static final String API_KEY = "91bd4d80344f4dc6cd5810f2a2c2b619";
+    static final String API_URL = "http://api.openweathermap.org/data/2.5";
+    private static final Logger logger = Logger.getLogger(OpenWeatherMapProvider.class.getName());
+
+    static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(5);
+    // Délai de réponse maximal ; une fois la latence observée, le délai s'adapte (voir CircuitBreaker)
+    static final Duration READ_TIMEOUT = Duration.ofSeconds(10);
+    static final Duration MIN_READ_TIMEOUT = Duration.ofSeconds(1);
+
+    // Limite d'identifiants de /group
+    static final int GROUP_MAX_IDS = 20;
+    // Quota de la clé gratuite : 60 appels/minute ; 55/min et rafales de 5 ne le dépassent jamais
+    static final int DEFAULT_REQUESTS_PER_MINUTE = 55;
+    static final int DEFAULT_BURST = 5;
+    static final int MAX_RATE_LIMIT_RETRIES = 3;
+    private static final int HTTP_TOO_MANY_REQUESTS = 429;
+
+    // Client HTTP partagé : connexions keep-alive réutilisées, HTTP/2 si le serveur le permet
+    static final HttpClient DEFAULT_HTTP_CLIENT = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_2)
+            .connectTimeout(CONNECT_TIMEOUT)
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .build();
+
+    // Le quota est celui de la clé : planificateur commun à tous les services qui l'utilisent
+    static final RequestScheduler DEFAULT_SCHEDULER =
+            new RequestScheduler(DEFAULT_REQUESTS_PER_MINUTE, DEFAULT_BURST);
+
+    private final HttpClient httpClient;
+    private final String apiUrl;
+    private final String apiKey;
+    private final RequestScheduler scheduler;
+    // Disjoncteurs par endpoint (/weather, /group)
+    private final Map<String, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+
+    /**
+     * API publique, clé intégrée et planificateur partagé
+     */
+    public OpenWeatherMapProvider() {
+        this(DEFAULT_HTTP_CLIENT, API_URL, API_KEY, DEFAULT_SCHEDULER);
+    }
+
+    /**
+     * @param httpClient client HTTP (partagé entre les requêtes)
+     * @param apiUrl     racine de l'API, sans "/" final (ex: http://localhost:8080/data/2.5)
+     * @param apiKey     clé API
+     * @param scheduler  planificateur des appels (quota de la clé)
+     */
+    public OpenWeatherMapProvider(HttpClient httpClient, String apiUrl, String apiKey, RequestScheduler scheduler) {
+        this.httpClient = httpClient;
+        this.apiUrl = apiUrl;
+        this.apiKey = apiKey;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * @return le planificateur des appels à l'API (file d'attente, attentes, réponses 429)
+     */
+    public RequestScheduler getScheduler() {
+        return scheduler;
+    }
+
+    @Override
+    public CompletableFuture<Meteo.WeatherData> fetchByCity(String cityName, RequestScheduler.Priority priority) {
+        String encodedCityName = URLEncoder.encode(cityName, StandardCharsets.UTF_8);
+        String urlString = String.format("%s/weather?q=%s&appid=%s&units=metric&lang=fr",
+                apiUrl, encodedCityName, apiKey);
+
+        logger.info("URL générée: " + urlString);
+        return makeHttpRequestAsync(urlString, priority)
+                .thenApply(jsonResponse -> jsonResponse != null ? parseWeatherData(jsonResponse) : null);
+    }
+
+    @Override
+    public CompletableFuture<Meteo.WeatherData> fetchByCoordinates(double latitude, double longitude,
+                                                                  RequestScheduler.Priority priority) {
+        String urlString = String.format(Locale.ROOT, "%s/weather?lat=%f&lon=%f&appid=%s&units=metric&lang=fr",
+                apiUrl, latitude, longitude, apiKey);
+
+        return makeHttpRequestAsync(urlString, priority)
+                .thenApply(jsonResponse -> jsonResponse != null ? parseWeatherData(jsonResponse) : null);
+    }
+
+    /**
+     * @return false si le disjoncteur de /weather est ouvert ou si les envois sont suspendus après une réponse 429
+     */
+    @Override
+    public boolean isAvailable() {
+        return !breaker(URI.create(apiUrl + "/weather")).isOpen() && !scheduler.isPaused();
+    }
+
+    @Override
+    public int getMaxGroupSize() {
+        return GROUP_MAX_IDS;
+    }
+
+    /**
+     * Interroge l'endpoint /group pour plusieurs identifiants de ville
+     *
+     * @param ids identifiants OpenWeatherMap (20 au maximum)
+     * @return données météo par identifiant (vide en cas d'erreur)
+     */
+    @Override
+    public CompletableFuture<Map<Long, Meteo.WeatherData>> fetchByIds(List<Long> ids,
+                                                                     RequestScheduler.Priority priority) {
+        String joinedIds = ids.stream().map(String::valueOf).collect(Collectors.joining(","));
+        String urlString = String.format("%s/group?id=%s&appid=%s&units=metric&lang=fr",
+                apiUrl, joinedIds, apiKey);
+
+        return makeHttpRequestAsync(urlString, priority).thenApply(jsonResponse -> {
+            Map<Long, Meteo.WeatherData> byId = new HashMap<>();
+            if (jsonResponse == null) {
+                return byId;
+            }
+            try {
+                JSONArray list = new JSONObject(new String(jsonResponse, StandardCharsets.UTF_8)).optJSONArray("list");
+                if (list != null) {
+                    for (int i = 0; i < list.length(); i++) {
+                        Meteo.WeatherData data = parseWeatherData(list.getJSONObject(i));
+                        if (data != null) {
+                            byId.put(data.getCityId(), data);
+                        }
+                    }
+                }
+            } catch (Exception e) {
+                logger.log(Level.SEVERE, "Erreur lors du parsing de la réponse groupée", e);
+            }
+            return byId;
+        });
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder("OpenWeatherMap (").append(apiUrl).append(")\n").append(scheduler);
+        for (CircuitBreaker breaker : breakers.values()) {
+            text.append('\n').append(breaker);
+        }
+        return text.toString();
+    }
+
+    /**
+     * @return le disjoncteur d'un endpoint OpenWeatherMap
+     */
+    CircuitBreaker breaker(URI uri) {
+        return breakers.computeIfAbsent(uri.getPath(),
+                path -> new CircuitBreaker("OpenWeatherMap " + path, MIN_READ_TIMEOUT, READ_TIMEOUT));
+    }
+
+    /**
+     * Effectue la requête HTTP avec validation d'URL, via le client HTTP partagé
+     *
+     * @param urlString URL à interroger
+     * @return futur complété avec la réponse JSON brute (UTF-8), ou null en cas d'erreur
+     */
+    private CompletableFuture<byte[]> makeHttpRequestAsync(String urlString, RequestScheduler.Priority priority) {
+        // Validation de l'URL avant de l'utiliser
+        if (urlString == null || urlString.trim().isEmpty()) {
+            logger.warning("URL vide ou null");
+            return CompletableFuture.completedFuture(null);
+        }
+
+        HttpRequest request;
+        CircuitBreaker breaker;
+        try {
+            URI uri = URI.create(urlString);
+            breaker = breaker(uri);
+            request = HttpRequest.newBuilder()
+                    .uri(uri)
+                    .header("Accept", "application/json")
+                    .header("User-Agent", "WeatherService/1.0")
+                    .timeout(breaker.getTimeout())
+                    .GET()
+                    .build();
+        } catch (IllegalArgumentException e) {
+            logger.log(Level.SEVERE, "URL mal formée: " + urlString, e);
+            return CompletableFuture.completedFuture(null);
+        }
+
+        // Service en panne : échec immédiat plutôt qu'une attente jusqu'au délai maximal
+        if (!breaker.tryAcquire()) {
+            logger.warning("OpenWeatherMap indisponible (disjoncteur ouvert), requête non envoyée");
+            return CompletableFuture.completedFuture(null);
+        }
+
+        // Log de debug pour voir l'URL générée
+        logger.info("Tentative de connexion à: " + urlString);
+
+        return sendHedged(request, urlString, priority, breaker);
+    }
+
+    /**
+     * Requête GET (idempotente) doublée si elle n'a pas abouti après le p95 des latences
+     * observées : la première réponse exploitable est retenue
+     */
+    private CompletableFuture<byte[]> sendHedged(HttpRequest request, String urlString,
+                                                 RequestScheduler.Priority priority, CircuitBreaker breaker) {
+        CompletableFuture<byte[]> primary = sendScheduled(request, urlString, priority, 0, breaker);
+        Duration delay = breaker.getHedgeDelay();
+        if (delay == null) {
+            return primary;
+        }
+
+        CompletableFuture<byte[]> result = new CompletableFuture<>();
+        // Requêtes encore en cours ; le résultat est null quand toutes ont échoué
+        AtomicInteger pending = new AtomicInteger(1);
+        BiConsumer<byte[], Throwable> onDone = (data, error) -> {
+            if (data != null) {
+                result.complete(data);
+            } else if (pending.decrementAndGet() == 0) {
+                result.complete(null);
+            }
+        };
+        primary.whenComplete(onDone);
+        CompletableFuture.delayedExecutor(delay.toNanos(), TimeUnit.NANOSECONDS).execute(() -> {
+            if (result.isDone() || pending.getAndUpdate(n -> n == 0 ? 0 : n + 1) == 0) {
+                return;
+            }
+            if (!breaker.tryHedge()) {
+                onDone.accept(null, null);
+                return;
+            }
+            logger.fine("Réponse lente d'OpenWeatherMap, requête doublée: " + urlString);
+            sendScheduled(request, urlString, priority, 0, breaker).whenComplete(onDone);
+        });
+        return result;
+    }
+
+    /**
+     * Envoie la requête via le planificateur ; une réponse 429 suspend les envois
+     * puis la requête est remise en file (au plus MAX_RATE_LIMIT_RETRIES fois)
+     */
+    private CompletableFuture<byte[]> sendScheduled(HttpRequest request, String urlString,
+                                                    RequestScheduler.Priority priority, int attempt,
+                                                    CircuitBreaker breaker) {
+        PipelineEvents.WeatherFetch event = new PipelineEvents.WeatherFetch();
+        event.begin();
+        long queuedAt = System.nanoTime();
+        long[] sentAt = new long[1];
+        return scheduler.submit(priority, () -> {
+                    sentAt[0] = System.nanoTime();
+                    event.queueWait = sentAt[0] - queuedAt;
+                    return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray());
+                })
+                .handle((response, error) -> {
+                    event.end();
+                    if (sentAt[0] == 0) {
+                        // Refusée ou abandonnée par le planificateur : le service n'a pas été sollicité
+                        Throwable cause = error instanceof CompletionException && error.getCause() != null
+                                ? error.getCause() : error;
+                        logger.warning("Requête OpenWeatherMap non envoyée : " + cause.getMessage());
+                        return CompletableFuture.<byte[]>completedFuture(null);
+                    }
+                    // Latence mesurée depuis l'envoi, hors attente du planificateur ; 429 relève du quota
+                    if (error != null && isTimeout(error)) {
+                        breaker.onTimeout(System.nanoTime() - sentAt[0]);
+                    } else if (error != null || response.statusCode() >= 500) {
+                        breaker.onFailure();
+                    } else if (response.statusCode() != HTTP_TOO_MANY_REQUESTS) {
+                        breaker.onSuccess(System.nanoTime() - sentAt[0]);
+                    }
+                    if (event.shouldCommit()) {
+                        // La clé API n'apparaît pas dans les enregistrements
+                        event.url = urlString.replaceAll("appid=[^&]*", "appid=***");
+                        event.priority = priority.name();
+                        event.attempt = attempt;
+                        event.status = response != null ? response.statusCode() : 0;
+                        event.bytes = response != null && response.body() != null ? response.body().length : 0;
+                        event.commit();
+                    }
+                    if (error != null) {
+                        logHttpError(urlString, error);
+                        return CompletableFuture.<byte[]>completedFuture(null);
+                    }
+
+                    int responseCode = response.statusCode();
+                    if (responseCode == HTTP_TOO_MANY_REQUESTS) {
+                        scheduler.onRateLimited(retryAfter(response));
+                        if (attempt < MAX_RATE_LIMIT_RETRIES) {
+                            return sendScheduled(request, urlString, priority, attempt + 1, breaker);
+                        }
+                        logger.warning("Erreur HTTP: 429 (quota dépassé, abandon après "
+                                + MAX_RATE_LIMIT_RETRIES + " nouvelles tentatives)");
+                        return CompletableFuture.<byte[]>completedFuture(null);
+                    }
+                    scheduler.onSuccess();
+
+                    if (responseCode == HttpURLConnection.HTTP_OK) {
+                        return CompletableFuture.completedFuture(response.body());
+                    } else if (responseCode == HttpURLConnection.HTTP_UNAUTHORIZED) {
+                        logger.severe("Clé API invalide ou manquante");
+                    } else if (responseCode == HttpURLConnection.HTTP_NOT_FOUND) {
+                        logger.warning("Ville non trouvée (HTTP 404)");
+                    } else {
+                        logger.warning("Erreur HTTP: " + responseCode);
+                    }
+                    return CompletableFuture.<byte[]>completedFuture(null);
+                })
+                .thenCompose(Function.identity());
+    }
+
+    /**
+     * Délai demandé par l'en-tête Retry-After (en secondes), ou zéro
+     */
+    private static Duration retryAfter(HttpResponse<?> response) {
+        return response.headers().firstValue("Retry-After")
+                .map(value -> {
+                    try {
+                        return Duration.ofSeconds(Long.parseLong(value.trim()));
+                    } catch (NumberFormatException e) {
+                        return Duration.ZERO;
+                    }
+                })
+                .orElse(Duration.ZERO);
+    }
+
+    private static boolean isTimeout(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        return cause instanceof HttpTimeoutException;
+    }
+
+    private void logHttpError(String urlString, Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (cause instanceof HttpTimeoutException) {
+            logger.log(Level.WARNING, "Timeout lors de la connexion", cause);
+        } else if (cause instanceof ConnectException) {
+            logger.log(Level.SEVERE, "Connexion impossible (vérifiez votre connexion Internet)", cause);
+        } else {
+            logger.log(Level.SEVERE, "Erreur lors de la requête HTTP vers: " + urlString, cause);
+        }
+    }
+
+    /**
+     * Parse une réponse /weather directement depuis ses octets, sans construire d'arbre JSON.
+     * Si la réponse n'a pas la forme attendue (erreur API, type inattendu...),
+     * le parseur org.json prend le relais avec les mêmes règles.
+     *
+     * @param jsonResponse réponse JSON de l'API, encodée en UTF-8
+     * @return WeatherData ou null en cas d'erreur
+     */
+    static Meteo.WeatherData parseWeatherData(byte[] jsonResponse) {
+        if (jsonResponse == null || jsonResponse.length == 0) {
+            logger.warning("Réponse JSON vide");
+            return null;
+        }
+
+        PipelineEvents.WeatherParse event = new PipelineEvents.WeatherParse();
+        event.begin();
+        Meteo.WeatherData data;
+        try {
+            data = WeatherJsonParser.parse(jsonResponse);
+        } catch (WeatherJsonParser.UnexpectedShapeException e) {
+            logger.fine("Réponse hors du format attendu, parsing complet avec org.json");
+            event.fallback = true;
+            data = parseWeatherData(new String(jsonResponse, StandardCharsets.UTF_8));
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.city = data != null ? data.getCityName() : null;
+            event.bytes = jsonResponse.length;
+            event.commit();
+        }
+        return data;
+    }
+
+    /**
+     * Parse les données JSON de l'API météo avec org.json
+     *
+     * @param jsonResponse réponse JSON de l'API
+     * @return WeatherData ou null en cas d'erreur
+     */
+    static Meteo.WeatherData parseWeatherData(String jsonResponse) {
+        if (jsonResponse == null || jsonResponse.trim().isEmpty()) {
+            logger.warning("Réponse JSON vide");
+            return null;
+        }
+
+        try {
+            return parseWeatherData(new JSONObject(jsonResponse));
+        } catch (Exception e) {
+            logger.log(Level.SEVERE, "Erreur lors du parsing JSON: " + jsonResponse, e);
+            return null;
+        }
+    }
+
+    /**
+     * Remplit un WeatherData à partir d'un objet JSON "weather" d'OpenWeatherMap
+     * (réponse simple ou élément de la liste renvoyée par /group)
+     *
+     * @param json objet JSON de l'API
+     * @return WeatherData ou null si l'API signale une erreur
+     */
+    static Meteo.WeatherData parseWeatherData(JSONObject json) {
+        // Vérifier si la réponse contient une erreur
+        if (json.has("cod")) {
+            int cod = json.getInt("cod");
+            if (cod != 200) {
+                String message = json.optString("message", "Erreur inconnue");
+                logger.warning("Erreur API: " + cod + " - " + message);
+                return null;
+            }
+        }
+
+        Meteo.WeatherData.Builder weatherData = Meteo.WeatherData.builder();
+
+        // Informations de base
+        weatherData.cityId(json.optLong("id", 0));
+        weatherData.cityName(json.optString("name", "N/A"));
+        JSONObject sys = json.optJSONObject("sys");
+        if (sys != null) {
+            weatherData.country(sys.optString("country", "N/A"));
+            weatherData.sunrise(sys.optLong("sunrise", 0) * 1000);
+            weatherData.sunset(sys.optLong("sunset", 0) * 1000);
+        }
+
+        // Température
+        JSONObject main = json.optJSONObject("main");
+        if (main != null) {
+            weatherData.temperature(main.optDouble("temp", 0.0));
+            weatherData.feelsLike(main.optDouble("feels_like", 0.0));
+            weatherData.tempMin(main.optDouble("temp_min", 0.0));
+            weatherData.tempMax(main.optDouble("temp_max", 0.0));
+            weatherData.humidity(main.optInt("humidity", 0));
+            weatherData.pressure(main.optInt("pressure", 0));
+        }
+
+        // Conditions météo
+        JSONArray weatherArray = json.optJSONArray("weather");
+        if (weatherArray != null && !weatherArray.isEmpty()) {
+            JSONObject weather = weatherArray.getJSONObject(0);
+            weatherData.description(weather.optString("description", "N/A"));
+            weatherData.mainCondition(weather.optString("main", "N/A"));
+        }
+
+        // Vent
+        JSONObject wind = json.optJSONObject("wind");
+        if (wind != null) {
+            weatherData.windSpeed(wind.optDouble("speed", 0.0));
+            weatherData.windDirection(wind.optInt("deg", 0));
+        }
+
+        // Visibilité
+        weatherData.visibility(json.optInt("visibility", 0));
+
+        // Coordonnées
+        JSONObject coord = json.optJSONObject("coord");
+        if (coord != null) {
+            weatherData.latitude(coord.optDouble("lat", 0.0));
+            weatherData.longitude(coord.optDouble("lon", 0.0));
+        }
+
+        // Timestamps
+        weatherData.timestamp(json.optLong("dt", 0) * 1000);
+
+        return weatherData.build();
+    }
+}
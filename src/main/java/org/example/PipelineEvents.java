@@ -0,0 +1,183 @@
+package org.example;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+import jdk.jfr.Timespan;
+
+/**
+ * Événements JDK Flight Recorder couvrant chaque étape d'une demande de menu :
+ * nettoyage du nom de ville, appel HTTP à OpenWeatherMap, parsing de la réponse,
+ * construction du prompt et appel au LLM.
+ *
+ * Hors enregistrement JFR, begin/commit ne font rien et les champs ne sont renseignés
+ * qu'après shouldCommit() : les événements peuvent rester actifs en production.
+ * Les piles d'appels ne sont pas capturées (c'est la partie coûteuse d'un événement).
+ *
+ * Exemple : java -XX:StartFlightRecording=filename=menus.jfr ... puis
+ * jfr print --events org.example.WeatherFetch menus.jfr
+ */
+final class PipelineEvents {
+
+    private static final String CATEGORY = "Recettes météo";
+
+    private PipelineEvents() {
+    }
+
+    @Name("org.example.MenuGeneration")
+    @Label("Génération d'un menu")
+    @Category({CATEGORY, "Service"})
+    @StackTrace(false)
+    static class MenuGeneration extends Event {
+        @Label("Ville demandée")
+        String city;
+
+        @Label("Modèle")
+        String model;
+
+        @Label("Servi depuis le cache")
+        boolean fromCache;
+
+        @Label("Réussite")
+        boolean success;
+    }
+
+    // Appelé à chaque recherche, y compris servie depuis le cache : seuls les cas lents sont
+    // enregistrés par défaut (org.example.CityNameCleaning#threshold=0 ms pour tout voir)
+    @Name("org.example.CityNameCleaning")
+    @Label("Nettoyage du nom de ville")
+    @Category({CATEGORY, "Météo"})
+    @StackTrace(false)
+    @Threshold("20 us")
+    static class CityNameCleaning extends Event {
+        @Label("Nom reçu")
+        String input;
+
+        @Label("Nom nettoyé")
+        @Description("null si le nom est invalide")
+        String city;
+    }
+
+    @Name("org.example.WeatherFetch")
+    @Label("Appel à OpenWeatherMap")
+    @Category({CATEGORY, "Météo"})
+    @StackTrace(false)
+    static class WeatherFetch extends Event {
+        @Label("URL")
+        @Description("Sans la clé API")
+        String url;
+
+        @Label("Priorité")
+        String priority;
+
+        @Label("Tentative")
+        int attempt;
+
+        @Label("Attente du planificateur")
+        @Description("Temps passé en file avant l'envoi (quota de la clé API)")
+        @Timespan(Timespan.NANOSECONDS)
+        long queueWait;
+
+        @Label("Statut HTTP")
+        @Description("0 en cas d'erreur réseau")
+        int status;
+
+        @Label("Taille de la réponse")
+        @DataAmount
+        long bytes;
+    }
+
+    @Name("org.example.WeatherParse")
+    @Label("Parsing de la réponse météo")
+    @Category({CATEGORY, "Météo"})
+    @StackTrace(false)
+    static class WeatherParse extends Event {
+        @Label("Ville")
+        String city;
+
+        @Label("Taille de la réponse")
+        @DataAmount
+        long bytes;
+
+        @Label("Parsing org.json")
+        @Description("Réponse hors du format attendu par le parseur direct")
+        boolean fallback;
+    }
+
+    @Name("org.example.PromptBuild")
+    @Label("Construction du prompt")
+    @Category({CATEGORY, "LLM"})
+    @StackTrace(false)
+    static class PromptBuild extends Event {
+        @Label("Ville")
+        String city;
+
+        @Label("Saison")
+        String season;
+
+        @Label("Caractères")
+        int chars;
+
+        @Label("Tokens estimés")
+        int estimatedTokens;
+    }
+
+    @Name("org.example.LlmCall")
+    @Label("Appel au LLM")
+    @Category({CATEGORY, "LLM"})
+    @StackTrace(false)
+    static class LlmCall extends Event {
+        @Label("Modèle")
+        String model;
+
+        @Label("Endpoint")
+        String endpoint;
+
+        @Label("Statut HTTP")
+        int status;
+
+        @Label("Caractères du prompt")
+        int promptChars;
+
+        @Label("Tokens estimés du prompt")
+        int promptTokensEstimated;
+
+        @Label("Tokens du prompt évalués")
+        long promptEvalCount;
+
+        @Label("Évaluation du prompt")
+        @Timespan(Timespan.NANOSECONDS)
+        long promptEvalDuration;
+
+        @Label("Tokens générés")
+        long evalCount;
+
+        @Label("Génération")
+        @Timespan(Timespan.NANOSECONDS)
+        long evalDuration;
+
+        @Label("Chargement du modèle")
+        @Timespan(Timespan.NANOSECONDS)
+        long loadDuration;
+
+        // Instant d'envoi, pour les métriques (non enregistré dans l'événement)
+        transient long startNanos;
+
+        /**
+         * Crée et démarre l'événement d'un appel
+         */
+        static LlmCall begin(String model, String endpoint) {
+            LlmCall call = new LlmCall();
+            call.model = model;
+            call.endpoint = endpoint;
+            call.startNanos = System.nanoTime();
+            call.begin();
+            return call;
+        }
+    }
+}
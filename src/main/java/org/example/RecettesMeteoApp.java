@@ -1,18 +1,72 @@
 package org.example;
 
-import java.net.http.HttpClient;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.time.Duration;
 import java.time.LocalDate;
+import java.util.List;
 import java.util.Scanner;
+import java.util.regex.Pattern;
 
 public class RecettesMeteoApp {
 
+    // Durée pendant laquelle Ollama garde le modèle en mémoire après le préchargement
+    static final Duration MODEL_KEEP_ALIVE = Duration.ofMinutes(10);
+
+    // Journal des relevés météo : en cas de panne d'OpenWeatherMap, le dernier relevé
+    // d'une exécution précédente est encore disponible
+    static final Path WEATHER_LOG = Path.of(System.getProperty("java.io.tmpdir"), "recettes-meteo.log");
+
+    // LLM
+//    static final String DEFAULT_MODEL = "gpt-oss:120b-cloud";
+//    static final String DEFAULT_MODEL = "tinyllama";
+    static final String DEFAULT_MODEL = "Phi4-mini";
+
+    // Historique des préférences
+    static final String[] DEFAULT_HISTORY = new String[] {
+            "je n'aime pas les choux que proposez vous par 10°",
+            "je propose une soupe de patates douces",
+            "je n'aime pas les champignons",
+    };
+
+    // prompt
+    static final String SYSTEM_PROMPT =
+            "Tu es un assistant cuisine. " +
+                    "Tu dois proposer un menu adapté à la saison et à la météo. " +
+                    "Tu dois respecter STRICTEMENT les préférences de l'utilisateur données dans l'historique. " +
+                    "Réponds en français. " +
+                    "Format obligatoire:\n" +
+                    "Entrée: ...\nPlat: ...\nDessert: ...\n" +
+                    "Puis une courte justification en 2 phrases max.";
+
+    // Prompt des générations contraintes (LlmClient.menuAsync) : le schéma JSON du menu
+    // impose le format, le prompt décrit le contenu attendu de chaque champ
+    static final String MENU_SYSTEM_PROMPT =
+            "Tu es un assistant cuisine. " +
+                    "Tu dois proposer un menu adapté à la saison et à la météo. " +
+                    "Tu dois respecter STRICTEMENT les préférences de l'utilisateur données dans l'historique. " +
+                    "Réponds en français, en JSON avec les champs entree, plat, dessert " +
+                    "et justification (2 phrases max).";
+
+    // Modes multi-modèles : "course" (modèles en parallèle, première réponse valide)
+    // ou "repli" (petit modèle d'abord, plus gros seulement si la réponse est inexploitable)
+    static final String MODE_RACE = "course";
+    static final String MODE_FALLBACK = "repli";
+    static final Duration MULTI_MODEL_TIMEOUT = Duration.ofMinutes(5);
+
+    // Format attendu : une ligne par plat, dans l'ordre (tolère puces, gras Markdown, "Plat principal")
+    private static final Pattern MENU_FORMAT = Pattern.compile(
+            "(?imsu)^[\\s*#>_\\-]*entr[ée]e[ \\t*_]*:[ \\t*_]*[^\\s*_].*?"
+                    + "^[\\s*#>_\\-]*plat(?: principal)?[ \\t*_]*:[ \\t*_]*[^\\s*_].*?"
+                    + "^[\\s*#>_\\-]*dessert[ \\t*_]*:[ \\t*_]*[^\\s*_]");
+
+    /**
+     * Usage : RecettesMeteoApp [course|repli modèle1,modèle2,...]
+     * Sans argument, le modèle par défaut répond en streaming et la conversation continue.
+     */
     public static void main(String[] args) throws Exception {
-        // Initialiser le client HTTP pour LLMTest
-        LLMTest.baseUrl = "http://localhost:11434";
-        LLMTest.httpClient = HttpClient.newBuilder()
-                .connectTimeout(Duration.ofSeconds(30))
-                .build();
+        // Client de l'instance Ollama locale
+        LlmClient llm = new OllamaClient();
 
         Scanner sc = new Scanner(System.in);
 
@@ -20,62 +74,125 @@ public class RecettesMeteoApp {
         System.out.print("Entrez votre ville : ");
         String ville = sc.nextLine().trim();
 
-        // Récupérer météo
-        Meteo meteoService = new Meteo();
-        Meteo.WeatherData wd = meteoService.getWeatherByCity(ville);
+        String model = DEFAULT_MODEL;
+        String mode = args.length >= 2 ? args[0] : null;
+        List<String> models = args.length >= 2 ? List.of(args[1].split(",")) : List.of(model);
+
+        // Préchargement du modèle pendant la requête météo : le chargement à froid
+        // d'Ollama se fait en parallèle de l'appel réseau ; un échec n'empêche pas la suite
+        // (en mode repli, le gros modèle n'est préchargé que s'il sert)
+        for (String m : MODE_FALLBACK.equals(mode) ? models.subList(0, 1) : models) {
+            llm.preloadModel(m, MODEL_KEEP_ALIVE)
+                    .exceptionally(e -> {
+                        System.err.println("Préchargement du modèle " + m + " impossible : " + e.getMessage());
+                        return null;
+                    });
+        }
 
-        if (wd == null) {
-            System.out.println("Impossible de récupérer la météo. Vérifie la ville et ta clé API.");
-            return;
+        // Récupérer météo (le journal conserve les derniers relevés d'une exécution à l'autre)
+        WeatherSnapshotLog weatherLog = openWeatherLog();
+        Meteo.Builder meteoBuilder = Meteo.builder();
+        if (weatherLog != null) {
+            meteoBuilder.snapshotLog(weatherLog);
         }
+        Meteo meteoService = meteoBuilder.build();
+        Meteo.WeatherData wd = meteoService.getWeatherByCityAsync(ville).join();
 
         // Saison
         String saison = getSaison(LocalDate.now());
 
-        // Construire l'historique des préférences
-        String[] history = new String[] {
-                "je n'aime pas les choux que proposez vous par 10°",
-                "je propose une soupe de patates douces",
-                "je n'aime pas les champignons",
-        };
-
-        // prompt
-        String systemPrompt =
-                "Tu es un assistant cuisine. " +
-                        "Tu dois proposer un menu adapté à la saison et à la météo. " +
-                        "Tu dois respecter STRICTEMENT les préférences de l'utilisateur données dans l'historique. " +
-                        "Réponds en français. " +
-                        "Format obligatoire:\n" +
-                        "Entrée: ...\nPlat: ...\nDessert: ...\n" +
-                        "Puis une courte justification en 2 phrases max.";
+        if (wd == null && meteoService.isProviderAvailable()) {
+            System.out.println("Impossible de récupérer la météo. Vérifie la ville et ta clé API.");
+            return;
+        }
+        if (wd == null) {
+            System.out.println("Service météo indisponible : menu proposé sur une estimation de saison.");
+            wd = ClimateEstimator.estimate(ville, saison);
+        }
 
         // Message utilisateur du moment (avec météo + saison)
         String userMessage = buildUserMessage(saison, wd);
 
-        // LLM
-//        String model = "gpt-oss:120b-cloud";
-//        String model = "tinyllama";
-        String model = "Phi4-mini";
-
-
-        // LLM avec historique
-        String reponse = LLMTest.chatWithHistory(model, systemPrompt, userMessage, history);
-
         // Affichage
         System.out.println("\n=== Données météo ===");
         System.out.println("Ville : " + wd.getCityName());
         System.out.println("Température : " + wd.getTemperature() + " °C");
         System.out.println("Condition principale : " + wd.getMainCondition());
         System.out.println("Description : " + wd.getDescription());
+        if (wd.isStale()) {
+            System.out.println("(dernier relevé connu, il y a " + wd.getAge().toMinutes() + " min)");
+        } else if (wd.isEstimated()) {
+            System.out.println("(estimation climatologique, aucun relevé disponible)");
+        }
 
+        if (MODE_RACE.equals(mode) || MODE_FALLBACK.equals(mode)) {
+            LlmClient.ModelAnswer answer = MODE_RACE.equals(mode)
+                    ? llm.chatFirstValid(models, SYSTEM_PROMPT, userMessage, DEFAULT_HISTORY,
+                    RecettesMeteoApp::isValidMenu, MULTI_MODEL_TIMEOUT)
+                    : llm.chatWithFallback(models, SYSTEM_PROMPT, userMessage, DEFAULT_HISTORY,
+                    RecettesMeteoApp::isValidMenu);
+            System.out.println("\n=== Menu proposé par " + answer.getModel() + " ("
+                    + answer.getElapsed().toMillis() + " ms" + (answer.isValid() ? "" : ", format non respecté") + ") ===");
+            System.out.println(answer.getText());
+            sc.close();
+            return;
+        }
 
+        // LLM avec historique, affiché au fil de la génération
+        // (si le préchargement n'est pas terminé, Ollama attend la fin du chargement en cours)
+        // La session réutilise le contexte du modèle : les questions suivantes
+        // ne font réévaluer que le nouveau message.
+        ChatSession session = new ChatSession(llm, model, SYSTEM_PROMPT, MODEL_KEEP_ALIVE, DEFAULT_HISTORY);
         System.out.println("\n=== Menu proposé par le LLM ===");
-        System.out.println(reponse);
+        String message = userMessage;
+        while (!message.isEmpty()) {
+            LlmClient.StreamedResponse reponse = session.send(message, System.out::print);
+            System.out.println();
+            if (reponse.getStats() != null) {
+                System.out.println("(" + reponse.getStats() + ")");
+            }
+
+            System.out.print("\nAutre demande (vide pour quitter) : ");
+            message = sc.hasNextLine() ? sc.nextLine().trim() : "";
+        }
+        System.out.println("\n" + llm.getMetrics());
 
         sc.close();
     }
 
-    private static String getSaison(LocalDate date) {
+    /**
+     * Ouvre le journal météo, fermé à l'arrêt de l'application
+     *
+     * @return le journal, ou null s'il ne peut être ouvert (l'application fonctionne sans)
+     */
+    static WeatherSnapshotLog openWeatherLog() {
+        try {
+            WeatherSnapshotLog log = WeatherSnapshotLog.open(WEATHER_LOG);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    log.close();
+                } catch (IOException e) {
+                    System.err.println("Fermeture du journal météo impossible : " + e.getMessage());
+                }
+            }));
+            return log;
+        } catch (IOException e) {
+            System.err.println("Journal météo indisponible (" + WEATHER_LOG + ") : " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Vérifie que la réponse respecte le format imposé par le prompt système
+     * (lignes "Entrée:", "Plat:" et "Dessert:" non vides, dans cet ordre)
+     *
+     * @param text la réponse du modèle
+     */
+    static boolean isValidMenu(String text) {
+        return text != null && MENU_FORMAT.matcher(text).find();
+    }
+
+    static String getSaison(LocalDate date) {
         int m = date.getMonthValue();
         if (m == 12 || m == 1 || m == 2) return "hiver";
         if (m >= 3 && m <= 5) return "printemps";
@@ -83,17 +200,36 @@ public class RecettesMeteoApp {
         return "automne";
     }
 
-    private static String buildUserMessage(String saison, Meteo.WeatherData wd) {
+    static String buildUserMessage(String saison, Meteo.WeatherData wd) {
+        PipelineEvents.PromptBuild event = new PipelineEvents.PromptBuild();
+        event.begin();
+
         // Extraits météo utiles
         double temp = wd.getTemperature();
         String condition = wd.getMainCondition();
         String desc = wd.getDescription();
         String ville = wd.getCityName();
 
-        return "Voici les informations météo actuelles :\n"
+        // Relevé expiré ou estimation : le modèle ne doit pas les prendre pour la météo du moment
+        String origin = switch (wd.getSource()) {
+            case LIVE -> "Météo actuelle: ";
+            case STALE -> "Dernière météo connue: ";
+            case ESTIMATE -> "Météo habituelle de la saison (estimation): ";
+        };
+        String message = "Voici les informations météo actuelles :\n"
                 + "Je suis à " + ville + ".\n"
                 + "Nous sommes en " + saison + ".\n"
-                + "Météo actuelle: " + temp + "°C, condition=" + condition + ", description=" + desc + ".\n"
+                + origin + temp + "°C, condition=" + condition + ", description=" + desc + ".\n"
                 + "Propose un menu (entrée/plat/dessert) adapté à la météo et à la saison, en respectant mes préférences.";
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.city = ville;
+            event.season = saison;
+            event.chars = message.length();
+            event.estimatedTokens = HistoryManager.estimateTokens(message);
+            event.commit();
+        }
+        return message;
     }
 }
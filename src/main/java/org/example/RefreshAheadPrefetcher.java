@@ -0,0 +1,241 @@
+package org.example;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Rafraîchissement anticipé des villes les plus demandées.
+ *
+ * Chaque recherche de ville est comptée (nom normalisé) ; les compteurs décroissent avec
+ * le temps (demi-vie d'une heure) pour suivre l'évolution de la demande. À intervalle
+ * régulier, les K villes les plus demandées dont l'entrée de cache expire bientôt (ou a
+ * déjà expiré) sont rechargées en arrière-plan, avec la priorité BATCH du planificateur :
+ * les recherches interactives sont alors servies depuis la mémoire.
+ *
+ * Les rafraîchissements ont leur propre budget : un nombre limité en parallèle
+ * et un nombre maximal par minute, pour ne pas consommer tout le quota de la clé API.
+ */
+public class RefreshAheadPrefetcher implements AutoCloseable {
+
+    private static final Logger logger = Logger.getLogger(RefreshAheadPrefetcher.class.getName());
+
+    static final Duration HALF_LIFE = Duration.ofHours(1);
+    // Nombre maximal de villes suivies (les moins demandées sortent à la décroissance)
+    static final int MAX_TRACKED = 10_000;
+    private static final double MIN_SCORE = 0.01;
+    // En dessous (moins d'une recherche par heure environ), une ville n'est plus rafraîchie
+    private static final double MIN_REFRESH_SCORE = 1.0;
+
+    private final Meteo meteo;
+    private final int topK;
+    private final Semaphore refreshPermits;
+    private final int refreshesPerMinute;
+    private final long refreshAheadMillis;
+    private final Duration checkInterval;
+    private final double decayPerCheck;
+
+    private final ConcurrentHashMap<String, Tracked> tracked = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "weather-refresh-ahead");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Budget par minute, manipulé uniquement par le thread du timer
+    private long budgetWindowStart;
+    private int budgetUsed;
+
+    private final AtomicLong refreshes = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+
+    /**
+     * Le rafraîchissement démarre 1/5 du TTL avant l'expiration (2 min pour le TTL par défaut)
+     * et la vérification a lieu quatre fois par fenêtre.
+     *
+     * @param meteo                  service dont le cache est tenu à jour
+     * @param topK                   nombre de villes les plus demandées à maintenir
+     * @param maxConcurrentRefreshes nombre maximal de rafraîchissements simultanés
+     * @param refreshesPerMinute     nombre maximal de rafraîchissements par minute
+     */
+    public RefreshAheadPrefetcher(Meteo meteo, int topK, int maxConcurrentRefreshes, int refreshesPerMinute) {
+        if (topK <= 0 || maxConcurrentRefreshes <= 0 || refreshesPerMinute <= 0) {
+            throw new IllegalArgumentException("Paramètres de rafraîchissement invalides");
+        }
+        this.meteo = meteo;
+        this.topK = topK;
+        this.refreshPermits = new Semaphore(maxConcurrentRefreshes);
+        this.refreshesPerMinute = refreshesPerMinute;
+        this.refreshAheadMillis = meteo.getCache().getTtl().toMillis() / 5;
+        this.checkInterval = Duration.ofMillis(Math.max(1, refreshAheadMillis / 4));
+        this.decayPerCheck = Math.pow(0.5, (double) checkInterval.toMillis() / HALF_LIFE.toMillis());
+    }
+
+    /**
+     * Branche le suivi des recherches sur le service météo et lance les vérifications périodiques
+     */
+    public void start() {
+        meteo.setPrefetcher(this);
+        timer.scheduleWithFixedDelay(this::check, checkInterval.toMillis(), checkInterval.toMillis(),
+                TimeUnit.MILLISECONDS);
+        logger.info(String.format("Rafraîchissement anticipé : top %d villes, %d s avant expiration",
+                topK, refreshAheadMillis / 1000));
+    }
+
+    @Override
+    public void close() {
+        meteo.setPrefetcher(null);
+        timer.shutdownNow();
+    }
+
+    /**
+     * Compte une recherche de ville (appelé par Meteo pour chaque recherche, en cache ou non)
+     *
+     * @param cleanedCityName nom de ville nettoyé
+     */
+    void recordAccess(String cleanedCityName) {
+        String key = Meteo.cityKey(cleanedCityName);
+        Tracked t = tracked.get(key);
+        if (t == null) {
+            if (tracked.size() >= MAX_TRACKED) {
+                return;
+            }
+            t = tracked.computeIfAbsent(key, k -> new Tracked(cleanedCityName));
+        }
+        t.recent.increment();
+    }
+
+    /**
+     * Une passe : décroissance des compteurs, sélection du top K et rafraîchissement
+     * des entrées proches de l'expiration
+     */
+    void check() {
+        try {
+            for (String key : hottest()) {
+                if (meteo.getCache().remainingMillis(key) > refreshAheadMillis) {
+                    continue;
+                }
+                Tracked t = tracked.get(key);
+                if (t == null || t.score < MIN_REFRESH_SCORE) {
+                    continue;
+                }
+                if (!refreshPermits.tryAcquire()) {
+                    skipped.incrementAndGet();
+                    continue;
+                }
+                if (!takeBudget()) {
+                    refreshPermits.release();
+                    skipped.incrementAndGet();
+                    continue;
+                }
+                refreshes.incrementAndGet();
+                meteo.refreshCity(t.cleanedName).whenComplete((data, error) -> {
+                    refreshPermits.release();
+                    if (error != null || data == null) {
+                        failures.incrementAndGet();
+                        t.failed = true;
+                    }
+                });
+            }
+        } catch (RuntimeException e) {
+            // Une exception arrêterait les exécutions suivantes du timer
+            logger.log(Level.WARNING, "Erreur lors du rafraîchissement anticipé", e);
+        }
+    }
+
+    /**
+     * Met à jour les scores et renvoie les K clés les plus demandées, de la plus chaude à la moins chaude
+     */
+    List<String> hottest() {
+        PriorityQueue<Tracked> top = new PriorityQueue<>(Comparator.comparingDouble((Tracked t) -> t.score));
+        Iterator<Tracked> it = tracked.values().iterator();
+        while (it.hasNext()) {
+            Tracked t = it.next();
+            if (t.failed) {
+                // Ville introuvable ou API indisponible : on ne la relance que si elle est redemandée
+                t.failed = false;
+                t.score = 0;
+            }
+            t.score = t.score * decayPerCheck + t.recent.sumThenReset();
+            if (t.score < MIN_SCORE) {
+                it.remove();
+                continue;
+            }
+            top.add(t);
+            if (top.size() > topK) {
+                top.poll();
+            }
+        }
+        List<String> keys = new ArrayList<>(top.size());
+        while (!top.isEmpty()) {
+            keys.add(0, Meteo.cityKey(top.poll().cleanedName));
+        }
+        return keys;
+    }
+
+    private boolean takeBudget() {
+        long now = System.currentTimeMillis();
+        if (now - budgetWindowStart >= 60_000) {
+            budgetWindowStart = now;
+            budgetUsed = 0;
+        }
+        if (budgetUsed >= refreshesPerMinute) {
+            return false;
+        }
+        budgetUsed++;
+        return true;
+    }
+
+    public long getRefreshCount() {
+        return refreshes.get();
+    }
+
+    public long getFailureCount() {
+        return failures.get();
+    }
+
+    /**
+     * @return le nombre de rafraîchissements reportés faute de budget
+     */
+    public long getSkippedCount() {
+        return skipped.get();
+    }
+
+    /**
+     * @return le nombre de villes suivies
+     */
+    public int getTrackedCount() {
+        return tracked.size();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Rafraîchissement anticipé: %d villes suivies, %d rafraîchissements (%d échecs, %d reportés)",
+                getTrackedCount(), getRefreshCount(), getFailureCount(), getSkippedCount());
+    }
+
+    private static final class Tracked {
+        final String cleanedName;
+        final LongAdder recent = new LongAdder();
+        // Score décroissant, mis à jour par le seul thread du timer
+        double score;
+        volatile boolean failed;
+
+        Tracked(String cleanedName) {
+            this.cleanedName = cleanedName;
+        }
+    }
+}
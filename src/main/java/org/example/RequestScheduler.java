@@ -0,0 +1,365 @@
+package org.example;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+/**
+ * Planificateur des appels à OpenWeatherMap, pour respecter le quota de la clé API.
+ *
+ * Seau à jetons : chaque requête consomme un jeton, les jetons se régénèrent au débit
+ * configuré et le seau en contient au plus "burst". Une rafale n'est pas rejetée mais mise
+ * en file d'attente ; lorsque les jetons manquent, les requêtes interactives passent avant
+ * les préchargements. Une réponse 429 suspend tous les envois pendant un délai croissant
+ * (avec une part aléatoire, pour ne pas relancer toutes les requêtes au même instant).
+ *
+ * Les files sont bornées et l'attente limitée : pendant une suspension prolongée, une requête
+ * est refusée si sa file est pleine ({@link RejectedExecutionException}) et abandonnée si elle
+ * n'est pas partie à temps ({@link TimeoutException}), au lieu de bloquer ses appelants.
+ */
+public class RequestScheduler {
+
+    private static final Logger logger = Logger.getLogger(RequestScheduler.class.getName());
+
+    static final Duration MIN_BACKOFF = Duration.ofSeconds(1);
+    static final Duration MAX_BACKOFF = Duration.ofMinutes(1);
+    static final int DEFAULT_MAX_QUEUE_LENGTH = 100;
+    static final Duration DEFAULT_MAX_WAIT = Duration.ofSeconds(30);
+
+    /**
+     * Priorité d'une requête : une requête interactive est servie avant toute requête de fond
+     */
+    public enum Priority {
+        INTERACTIVE, BATCH
+    }
+
+    private final int requestsPerMinute;
+    private final double permitsPerNano;
+    private final double capacity;
+    private final int maxQueueLength;
+    private final long queueTimeoutNanos;
+
+    // État du seau et files d'attente, protégés par le verrou de l'instance
+    private double tokens;
+    private long lastRefill;
+    private long pausedUntil;
+    private int consecutiveRateLimits;
+    private boolean drainScheduled;
+    private final List<ArrayDeque<Pending<?>>> queues = new ArrayList<>();
+
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "owm-request-scheduler");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AtomicLong dispatched = new AtomicLong();
+    private final AtomicLong rateLimited = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong expired = new AtomicLong();
+    private final AtomicLong[] waitedNanos = new AtomicLong[Priority.values().length];
+    private final AtomicLong[] maxWaitNanos = new AtomicLong[Priority.values().length];
+    private final AtomicLong[] dispatchedByPriority = new AtomicLong[Priority.values().length];
+
+    /**
+     * @param requestsPerMinute débit autorisé par la clé API
+     * @param burst             nombre de requêtes pouvant partir d'un coup après une période calme
+     */
+    public RequestScheduler(int requestsPerMinute, int burst) {
+        this(requestsPerMinute, burst, DEFAULT_MAX_QUEUE_LENGTH, DEFAULT_MAX_WAIT);
+    }
+
+    /**
+     * @param requestsPerMinute débit autorisé par la clé API
+     * @param burst             nombre de requêtes pouvant partir d'un coup après une période calme
+     * @param maxQueueLength    nombre maximal de requêtes en attente par priorité
+     * @param maxWait           attente maximale en file avant abandon de la requête
+     */
+    public RequestScheduler(int requestsPerMinute, int burst, int maxQueueLength, Duration maxWait) {
+        if (requestsPerMinute <= 0) {
+            throw new IllegalArgumentException("Débit invalide: " + requestsPerMinute);
+        }
+        if (burst <= 0) {
+            throw new IllegalArgumentException("Rafale invalide: " + burst);
+        }
+        if (maxQueueLength <= 0) {
+            throw new IllegalArgumentException("Taille de file invalide: " + maxQueueLength);
+        }
+        if (maxWait.isNegative() || maxWait.isZero()) {
+            throw new IllegalArgumentException("Attente maximale invalide: " + maxWait);
+        }
+        this.maxQueueLength = maxQueueLength;
+        this.queueTimeoutNanos = maxWait.toNanos();
+        this.requestsPerMinute = requestsPerMinute;
+        this.permitsPerNano = requestsPerMinute / 60e9;
+        this.capacity = burst;
+        this.tokens = burst;
+        this.lastRefill = System.nanoTime();
+        this.pausedUntil = lastRefill;
+        for (int i = 0; i < Priority.values().length; i++) {
+            queues.add(new ArrayDeque<>());
+            waitedNanos[i] = new AtomicLong();
+            maxWaitNanos[i] = new AtomicLong();
+            dispatchedByPriority[i] = new AtomicLong();
+        }
+    }
+
+    /**
+     * Met une requête en file ; elle est lancée dès qu'un jeton est disponible
+     *
+     * @param priority priorité de la requête
+     * @param task     lancement de la requête (appelé une seule fois, sur le thread du planificateur
+     *                 ou sur celui de l'appelant si un jeton est immédiatement disponible)
+     * @return futur complété avec le résultat de la requête, en échec si la file est pleine
+     * ({@link RejectedExecutionException}) ou si la requête n'est pas partie à temps ({@link TimeoutException})
+     */
+    public <T> CompletableFuture<T> submit(Priority priority, Supplier<CompletableFuture<T>> task) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Pending<T> pending = new Pending<>(priority, task, result, System.nanoTime());
+        synchronized (this) {
+            ArrayDeque<Pending<?>> queue = queues.get(priority.ordinal());
+            if (queue.size() >= maxQueueLength) {
+                rejected.incrementAndGet();
+                return CompletableFuture.failedFuture(new RejectedExecutionException(
+                        "File d'attente OpenWeatherMap pleine (" + maxQueueLength + " requêtes " + priority + ")"));
+            }
+            queue.add(pending);
+        }
+        drain();
+        boolean queued;
+        synchronized (this) {
+            queued = !pending.started;
+        }
+        if (queued) {
+            timer.schedule(() -> expire(pending), queueTimeoutNanos, TimeUnit.NANOSECONDS);
+        }
+        return result;
+    }
+
+    /**
+     * Abandonne une requête encore en file après l'attente maximale
+     */
+    private void expire(Pending<?> pending) {
+        synchronized (this) {
+            if (pending.started || !queues.get(pending.priority.ordinal()).remove(pending)) {
+                return;
+            }
+        }
+        expired.incrementAndGet();
+        pending.result.completeExceptionally(new TimeoutException(
+                "Requête OpenWeatherMap non lancée après " + queueTimeoutNanos / 1_000_000 + " ms d'attente"));
+    }
+
+    /**
+     * Signale une réponse 429 : suspend les envois avec un délai exponentiel et aléatoire
+     *
+     * @param retryAfter délai demandé par le serveur (Duration.ZERO si absent)
+     */
+    public void onRateLimited(Duration retryAfter) {
+        rateLimited.incrementAndGet();
+        long delay;
+        synchronized (this) {
+            consecutiveRateLimits++;
+            long backoff = MIN_BACKOFF.toNanos() << Math.min(consecutiveRateLimits - 1, 16);
+            backoff = Math.min(backoff, MAX_BACKOFF.toNanos());
+            // Moitié fixe, moitié aléatoire ; jamais moins que ce qu'a demandé le serveur
+            delay = Math.max(retryAfter.toNanos(),
+                    backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1));
+            long now = System.nanoTime();
+            pausedUntil = Math.max(pausedUntil, now + delay);
+            tokens = 0;
+            lastRefill = now;
+        }
+        logger.warning(String.format("Quota OpenWeatherMap dépassé (HTTP 429) : envois suspendus %d ms",
+                delay / 1_000_000));
+        drain();
+    }
+
+    /**
+     * Signale une réponse hors quota dépassé : le délai de suspension repart du minimum
+     */
+    public synchronized void onSuccess() {
+        consecutiveRateLimits = 0;
+    }
+
+    /**
+     * @return true si les envois sont suspendus après une réponse 429 (quota épuisé)
+     */
+    public synchronized boolean isPaused() {
+        return System.nanoTime() < pausedUntil;
+    }
+
+    private void drain() {
+        List<Pending<?>> ready = new ArrayList<>();
+        synchronized (this) {
+            long now = System.nanoTime();
+            refill(now);
+            while (now >= pausedUntil && tokens >= 1) {
+                Pending<?> next = poll();
+                if (next == null) {
+                    break;
+                }
+                if (next.result.isDone()) {
+                    // Abandonnée par l'appelant (annulation) : ne consomme pas de jeton
+                    continue;
+                }
+                tokens -= 1;
+                next.started = true;
+                ready.add(next);
+            }
+            if (!drainScheduled && queuedCount() > 0) {
+                long untilToken = (long) Math.ceil((1 - tokens) / permitsPerNano);
+                long delay = Math.max(pausedUntil - now, untilToken);
+                drainScheduled = true;
+                timer.schedule(this::scheduledDrain, Math.max(delay, 0), TimeUnit.NANOSECONDS);
+            }
+        }
+        for (Pending<?> pending : ready) {
+            pending.start();
+        }
+    }
+
+    private void scheduledDrain() {
+        synchronized (this) {
+            drainScheduled = false;
+        }
+        drain();
+    }
+
+    private void refill(long now) {
+        tokens = Math.min(capacity, tokens + (now - lastRefill) * permitsPerNano);
+        lastRefill = now;
+    }
+
+    private Pending<?> poll() {
+        for (ArrayDeque<Pending<?>> queue : queues) {
+            Pending<?> next = queue.poll();
+            if (next != null) {
+                return next;
+            }
+        }
+        return null;
+    }
+
+    private int queuedCount() {
+        int count = 0;
+        for (ArrayDeque<Pending<?>> queue : queues) {
+            count += queue.size();
+        }
+        return count;
+    }
+
+    public int getRequestsPerMinute() {
+        return requestsPerMinute;
+    }
+
+    /**
+     * @return le nombre de requêtes en attente pour cette priorité
+     */
+    public synchronized int getQueueLength(Priority priority) {
+        return queues.get(priority.ordinal()).size();
+    }
+
+    /**
+     * @return le nombre total de requêtes en attente
+     */
+    public synchronized int getQueueLength() {
+        return queuedCount();
+    }
+
+    public long getDispatchedCount() {
+        return dispatched.get();
+    }
+
+    /**
+     * @return le nombre de réponses 429 reçues
+     */
+    public long getRateLimitedCount() {
+        return rateLimited.get();
+    }
+
+    /**
+     * @return le nombre de requêtes refusées, leur file étant pleine
+     */
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    /**
+     * @return le nombre de requêtes abandonnées après l'attente maximale en file
+     */
+    public long getExpiredCount() {
+        return expired.get();
+    }
+
+    /**
+     * @return l'attente moyenne en file des requêtes lancées avec cette priorité
+     */
+    public Duration getAverageWait(Priority priority) {
+        long count = dispatchedByPriority[priority.ordinal()].get();
+        return count == 0 ? Duration.ZERO : Duration.ofNanos(waitedNanos[priority.ordinal()].get() / count);
+    }
+
+    /**
+     * @return l'attente maximale en file observée pour cette priorité
+     */
+    public Duration getMaxWait(Priority priority) {
+        return Duration.ofNanos(maxWaitNanos[priority.ordinal()].get());
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Planificateur OWM: %d req/min, %d lancées, %d en attente (interactives %d), %d réponses 429, "
+                        + "%d refusées, %d abandonnées, attente moyenne %d ms (interactives) / %d ms (fond)",
+                requestsPerMinute, getDispatchedCount(), getQueueLength(), getQueueLength(Priority.INTERACTIVE),
+                getRateLimitedCount(), getRejectedCount(), getExpiredCount(), getAverageWait(Priority.INTERACTIVE).toMillis(),
+                getAverageWait(Priority.BATCH).toMillis());
+    }
+
+    private final class Pending<T> {
+        final Priority priority;
+        final Supplier<CompletableFuture<T>> task;
+        final CompletableFuture<T> result;
+        final long enqueuedAt;
+        // Retirée de la file pour être lancée (protégé par le verrou du planificateur)
+        boolean started;
+
+        Pending(Priority priority, Supplier<CompletableFuture<T>> task, CompletableFuture<T> result, long enqueuedAt) {
+            this.priority = priority;
+            this.task = task;
+            this.result = result;
+            this.enqueuedAt = enqueuedAt;
+        }
+
+        void start() {
+            long waited = System.nanoTime() - enqueuedAt;
+            int p = priority.ordinal();
+            dispatched.incrementAndGet();
+            dispatchedByPriority[p].incrementAndGet();
+            waitedNanos[p].addAndGet(waited);
+            maxWaitNanos[p].accumulateAndGet(waited, Math::max);
+            try {
+                task.get().whenComplete((value, error) -> {
+                    if (error != null) {
+                        result.completeExceptionally(error);
+                    } else {
+                        result.complete(value);
+                    }
+                });
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+            }
+        }
+    }
+}
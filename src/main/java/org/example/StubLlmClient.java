@@ -0,0 +1,398 @@
+package org.example;
+
+import org.json.JSONObject;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Backend LLM simulé, en mémoire : réponses fixes ou construites à partir du message
+ * (par défaut, un menu au format attendu choisi selon la température du message),
+ * renvoyées après une latence configurable et au débit configuré en tokens/s.
+ *
+ * Les réponses sont déterministes (une même demande donne la même réponse) et les appels
+ * alimentent les métriques et les événements JFR comme ceux d'Ollama : le débit et la
+ * latence de l'orchestration (cache, regroupement, historique, serveur) se mesurent sans
+ * modèle. Les attentes des appels asynchrones n'occupent aucun thread.
+ *
+ * Exemple : StubLlmClient.builder().latency(Duration.ofMillis(200)).tokensPerSecond(40).build()
+ */
+public class StubLlmClient implements LlmClient {
+
+    static final String DEFAULT_MODEL = "stub";
+
+    private static final Pattern TEMPERATURE = Pattern.compile("(-?\\d+(?:[.,]\\d+)?)\\s*°C");
+    // Découpage en fragments streamés : un mot et l'espace qui le suit
+    private static final Pattern WORDS = Pattern.compile("(?<=\\s)(?=\\S)");
+
+    // Menus du modèle par défaut : froid (< 10 °C), doux (< 20 °C), chaud
+    private static final String[][][] MENUS = {
+            {
+                    {"velouté de potimarron", "pot-au-feu de bœuf et légumes d'hiver", "poire pochée au vin"},
+                    {"soupe à l'oignon gratinée", "hachis parmentier", "crème brûlée"},
+                    {"salade de lentilles tièdes", "tartiflette", "compote de pommes à la cannelle"},
+            },
+            {
+                    {"poireaux vinaigrette", "blanquette de veau et riz", "tarte aux pommes"},
+                    {"œufs cocotte aux épinards", "filet de cabillaud et purée de céleri", "clafoutis aux cerises"},
+                    {"velouté de carottes au cumin", "poulet rôti et pommes de terre grenaille", "mousse au chocolat"},
+            },
+            {
+                    {"gaspacho andalou", "salade niçoise", "salade de fruits frais"},
+                    {"melon et jambon cru", "taboulé libanais et brochettes de poulet", "sorbet citron"},
+                    {"tomates mozzarella au basilic", "ratatouille et riz", "panna cotta aux fraises"},
+            },
+    };
+    private static final String[] JUSTIFICATIONS = {
+            "Un menu réconfortant et chaud, idéal par ce froid. Il respecte tes préférences.",
+            "Un menu de saison, ni trop lourd ni trop léger. Il respecte tes préférences.",
+            "Un menu frais et léger pour la chaleur. Il respecte tes préférences.",
+    };
+
+    private final UnaryOperator<String> responder;
+    private final Function<String, Menu> menuResponder;
+    private final long latencyNanos;
+    private final double tokensPerSecond;
+    private final double failureRate;
+    private final String[] models;
+    private final HistoryManager historyManager;
+    private final LLMMetrics metrics;
+
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder generatedTokens = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    private StubLlmClient(Builder builder) {
+        this.responder = builder.responder;
+        this.menuResponder = builder.menuResponder;
+        this.latencyNanos = builder.latency.toNanos();
+        this.tokensPerSecond = builder.tokensPerSecond;
+        this.failureRate = builder.failureRate;
+        this.models = builder.models;
+        this.historyManager = builder.historyManager;
+        this.metrics = builder.metrics;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @Override
+    public String[] listModels() {
+        return models.clone();
+    }
+
+    @Override
+    public CompletableFuture<Void> preloadModel(String model, Duration keepAlive) {
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public String generate(String model, String prompt) throws Exception {
+        JSONObject jsonRequest = new JSONObject().put("model", model).put("prompt", prompt);
+        return respond("/api/generate", jsonRequest, prompt, null, null).getText();
+    }
+
+    @Override
+    public String chat(String model, String systemPrompt, String userMessage,
+                       String[] previousMessages) throws Exception {
+        JSONObject jsonRequest = OllamaClient.buildChatRequest(historyManager, model, systemPrompt,
+                userMessage, previousMessages);
+        return respond("/api/chat", jsonRequest, userMessage, null, null).getText();
+    }
+
+    @Override
+    public CompletableFuture<String> chatAsync(String model, String systemPrompt, String userMessage,
+                                               String[] previousMessages) {
+        JSONObject jsonRequest = OllamaClient.buildChatRequest(historyManager, model, systemPrompt,
+                userMessage, previousMessages);
+        PipelineEvents.LlmCall call = PipelineEvents.LlmCall.begin(model, "/api/chat");
+        calls.increment();
+        if (shouldFail()) {
+            OllamaClient.recordCall(metrics, call, jsonRequest, 500, null);
+            return CompletableFuture.failedFuture(new RuntimeException("Erreur HTTP: 500"));
+        }
+        String text = responder.apply(userMessage);
+        GenerationStats stats = stats(jsonRequest, text);
+        // Réponse complète au bout de la latence et de la durée de génération, sans thread bloqué
+        return CompletableFuture.supplyAsync(() -> {
+            OllamaClient.recordCall(metrics, call, jsonRequest, 200, stats);
+            return text;
+        }, CompletableFuture.delayedExecutor(stats.getTotalDuration(), TimeUnit.NANOSECONDS));
+    }
+
+    /**
+     * Menu lu dans la réponse simulée ; seul l'objet JSON du menu (justification coupée
+     * après deux phrases) est compté comme généré, comme une génération interrompue au plus tôt
+     */
+    @Override
+    public CompletableFuture<Menu> menuAsync(String model, String systemPrompt, String userMessage,
+                                             String[] previousMessages) {
+        JSONObject jsonRequest = OllamaClient.buildMenuRequest(historyManager, model, systemPrompt,
+                userMessage, previousMessages);
+        PipelineEvents.LlmCall call = PipelineEvents.LlmCall.begin(model, "/api/chat");
+        calls.increment();
+        if (shouldFail()) {
+            OllamaClient.recordCall(metrics, call, jsonRequest, 500, null);
+            return CompletableFuture.failedFuture(new RuntimeException("Erreur HTTP: 500"));
+        }
+        Menu menu = menuResponder.apply(userMessage);
+        if (menu == null) {
+            OllamaClient.recordCall(metrics, call, jsonRequest, 200, stats(jsonRequest, ""));
+            return CompletableFuture.failedFuture(new RuntimeException("Menu incomplet dans la réponse de " + model));
+        }
+        GenerationStats stats = stats(jsonRequest, menu.toJson().toString());
+        return CompletableFuture.supplyAsync(() -> {
+            OllamaClient.recordCall(metrics, call, jsonRequest, 200, stats);
+            return menu;
+        }, CompletableFuture.delayedExecutor(stats.getTotalDuration(), TimeUnit.NANOSECONDS));
+    }
+
+    @Override
+    public StreamedResponse chatStream(String model, String systemPrompt, String userMessage,
+                                       String[] previousMessages, Consumer<String> onToken) throws Exception {
+        JSONObject jsonRequest = OllamaClient.buildChatRequest(historyManager, model, systemPrompt,
+                userMessage, previousMessages);
+        return respond("/api/chat", jsonRequest, userMessage, null, onToken);
+    }
+
+    @Override
+    public StreamedResponse generateStream(String model, String system, String prompt, int[] context,
+                                           Duration keepAlive, Consumer<String> onToken) throws Exception {
+        JSONObject jsonRequest = new JSONObject().put("model", model).put("prompt", prompt);
+        if (system != null) {
+            jsonRequest.put("system", system);
+        }
+        return respond("/api/generate", jsonRequest, prompt, context == null ? new int[0] : context, onToken);
+    }
+
+    /**
+     * Réponse synchrone : attend la latence, puis transmet les fragments au débit configuré
+     *
+     * @param context contexte du tour précédent (null : la réponse n'en renvoie pas)
+     * @param onToken callback des fragments (null : attente de la durée totale)
+     */
+    private StreamedResponse respond(String endpoint, JSONObject jsonRequest, String message, int[] context,
+                                     Consumer<String> onToken) throws InterruptedException {
+        PipelineEvents.LlmCall call = PipelineEvents.LlmCall.begin(jsonRequest.optString("model"), endpoint);
+        calls.increment();
+        if (shouldFail()) {
+            OllamaClient.recordCall(metrics, call, jsonRequest, 500, null);
+            throw new RuntimeException("Erreur HTTP: 500");
+        }
+        String text = responder.apply(message);
+        GenerationStats stats = stats(jsonRequest, text);
+        long start = System.nanoTime();
+        if (onToken == null || tokensPerSecond <= 0) {
+            sleepUntil(start + stats.getTotalDuration());
+            if (onToken != null) {
+                onToken.accept(text);
+            }
+        } else {
+            // Échéance de chaque fragment calculée depuis le début : pas de dérive cumulée
+            long tokens = 0;
+            for (String fragment : WORDS.split(text)) {
+                tokens += HistoryManager.estimateTokens(fragment);
+                sleepUntil(start + latencyNanos + (long) (tokens * 1_000_000_000.0 / tokensPerSecond));
+                onToken.accept(fragment);
+            }
+        }
+        OllamaClient.recordCall(metrics, call, jsonRequest, 200, stats);
+
+        int[] newContext = null;
+        if (context != null) {
+            // Contexte fictif : sa taille suit celle de la conversation
+            newContext = Arrays.copyOf(context,
+                    context.length + (int) stats.getPromptEvalCount() + (int) stats.getEvalCount());
+        }
+        return new StreamedResponse(text, stats, newContext);
+    }
+
+    private boolean shouldFail() {
+        if (failureRate > 0 && ThreadLocalRandom.current().nextDouble() < failureRate) {
+            failures.increment();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Statistiques simulées : prompt évalué pendant la latence, génération au débit configuré
+     */
+    private GenerationStats stats(JSONObject jsonRequest, String text) {
+        int promptTokens = HistoryManager.estimateTokens(LLMMetrics.promptChars(jsonRequest));
+        int evalTokens = HistoryManager.estimateTokens(text);
+        long evalNanos = tokensPerSecond > 0 ? (long) (evalTokens * 1_000_000_000.0 / tokensPerSecond) : 0;
+        generatedTokens.add(evalTokens);
+        return new GenerationStats(evalTokens, evalNanos, promptTokens, latencyNanos, 0, latencyNanos + evalNanos);
+    }
+
+    private static void sleepUntil(long deadline) throws InterruptedException {
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > 0) {
+            TimeUnit.NANOSECONDS.sleep(remaining);
+        }
+    }
+
+    /**
+     * Menu au format attendu, choisi selon la température trouvée dans le message
+     * (variante fixée par le message : une même demande donne le même menu)
+     *
+     * @param message message utilisateur (voir RecettesMeteoApp.buildUserMessage)
+     */
+    static String templateMenu(String message) {
+        return templateMenuOf(message).toString();
+    }
+
+    /**
+     * Variante typée de {@link #templateMenu}, sans passer par le texte
+     *
+     * @param message message utilisateur (voir RecettesMeteoApp.buildUserMessage)
+     */
+    static Menu templateMenuOf(String message) {
+        String text = message == null ? "" : message;
+        double temperature = 15;
+        Matcher matcher = TEMPERATURE.matcher(text);
+        if (matcher.find()) {
+            temperature = Double.parseDouble(matcher.group(1).replace(',', '.'));
+        }
+        int range = temperature < 10 ? 0 : temperature < 20 ? 1 : 2;
+        String[] menu = MENUS[range][Math.floorMod(text.hashCode(), MENUS[range].length)];
+        return new Menu(menu[0], menu[1], menu[2], JUSTIFICATIONS[range]);
+    }
+
+    @Override
+    public HistoryManager getHistoryManager() {
+        return historyManager;
+    }
+
+    @Override
+    public LLMMetrics getMetrics() {
+        return metrics;
+    }
+
+    public long getCallCount() {
+        return calls.sum();
+    }
+
+    public long getGeneratedTokenCount() {
+        return generatedTokens.sum();
+    }
+
+    /**
+     * @return le nombre d'échecs simulés
+     */
+    public long getFailureCount() {
+        return failures.sum();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("LLM simulé: %d appels, %d tokens générés, %d échecs simulés, latence %d ms, %s",
+                getCallCount(), getGeneratedTokenCount(), getFailureCount(),
+                TimeUnit.NANOSECONDS.toMillis(latencyNanos),
+                tokensPerSecond > 0 ? String.format("%.0f tokens/s", tokensPerSecond) : "génération instantanée");
+    }
+
+    /**
+     * Configuration du backend simulé
+     */
+    public static final class Builder {
+        private UnaryOperator<String> responder = StubLlmClient::templateMenu;
+        // Menus des générations contraintes : lus dans les réponses texte, sauf menus du modèle par défaut
+        private Function<String, Menu> menuResponder = StubLlmClient::templateMenuOf;
+        private Duration latency = Duration.ZERO;
+        private double tokensPerSecond;
+        private double failureRate;
+        private String[] models = {DEFAULT_MODEL};
+        private HistoryManager historyManager = new HistoryManager(HistoryManager.DEFAULT_TOKEN_BUDGET);
+        private LLMMetrics metrics = new LLMMetrics();
+
+        private Builder() {
+        }
+
+        /**
+         * @param responses réponses fixes ; chaque message reçoit toujours la même
+         */
+        public Builder responses(String... responses) {
+            if (responses.length == 0) {
+                throw new IllegalArgumentException("Aucune réponse");
+            }
+            String[] copy = responses.clone();
+            return responder(message -> copy[Math.floorMod(String.valueOf(message).hashCode(), copy.length)]);
+        }
+
+        /**
+         * @param responder réponse construite à partir du message utilisateur (ou du prompt)
+         */
+        public Builder responder(UnaryOperator<String> responder) {
+            this.responder = responder;
+            this.menuResponder = message -> Menu.parse(responder.apply(message));
+            return this;
+        }
+
+        /**
+         * @param latency délai avant le premier token (évaluation du prompt)
+         */
+        public Builder latency(Duration latency) {
+            if (latency.isNegative()) {
+                throw new IllegalArgumentException("Latence invalide: " + latency);
+            }
+            this.latency = latency;
+            return this;
+        }
+
+        /**
+         * @param tokensPerSecond débit de génération (0 : réponse complète dès la fin de la latence)
+         */
+        public Builder tokensPerSecond(double tokensPerSecond) {
+            if (tokensPerSecond < 0) {
+                throw new IllegalArgumentException("Débit invalide: " + tokensPerSecond);
+            }
+            this.tokensPerSecond = tokensPerSecond;
+            return this;
+        }
+
+        /**
+         * @param failureRate part des appels qui échouent (erreur 500 simulée), entre 0 et 1
+         */
+        public Builder failureRate(double failureRate) {
+            if (failureRate < 0 || failureRate > 1) {
+                throw new IllegalArgumentException("Taux d'échec invalide: " + failureRate);
+            }
+            this.failureRate = failureRate;
+            return this;
+        }
+
+        /**
+         * @param models noms renvoyés par listModels (les appels acceptent n'importe quel nom)
+         */
+        public Builder models(String... models) {
+            this.models = models.clone();
+            return this;
+        }
+
+        public Builder historyManager(HistoryManager historyManager) {
+            this.historyManager = historyManager;
+            return this;
+        }
+
+        public Builder metrics(LLMMetrics metrics) {
+            this.metrics = metrics;
+            return this;
+        }
+
+        public StubLlmClient build() {
+            return new StubLlmClient(this);
+        }
+    }
+}
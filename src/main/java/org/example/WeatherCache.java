@@ -0,0 +1,315 @@
+package org.example;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Cache borné (TTL + LRU) des données météo.
+ * Les requêtes concurrentes pour une même clé absente du cache sont regroupées :
+ * un seul appel au fournisseur est effectué, les autres threads attendent son résultat.
+ * Une entrée expirée reste disponible comme donnée de secours ({@link #getStale}) jusqu'à
+ * son remplacement, son éviction LRU ou {@link #purgeExpired}.
+ */
+public class WeatherCache {
+
+    private final long ttlMillis;
+    private final int maxSize;
+
+    // LinkedHashMap en ordre d'accès = LRU ; protégée par le verrou de l'instance
+    private final LinkedHashMap<String, Entry> entries;
+    private final ConcurrentHashMap<String, CompletableFuture<Meteo.WeatherData>> inFlight = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong expirations = new AtomicLong();
+    private final AtomicLong staleHits = new AtomicLong();
+
+    /**
+     * @param ttl     durée de validité d'une entrée
+     * @param maxSize nombre maximal d'entrées conservées
+     */
+    public WeatherCache(Duration ttl, int maxSize) {
+        if (ttl.isNegative() || ttl.isZero()) {
+            throw new IllegalArgumentException("TTL invalide: " + ttl);
+        }
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Taille maximale invalide: " + maxSize);
+        }
+        this.ttlMillis = ttl.toMillis();
+        this.maxSize = maxSize;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > WeatherCache.this.maxSize) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Retourne la valeur en cache pour la clé, ou la charge via le loader.
+     * Les résultats null (erreurs) ne sont pas mis en cache.
+     *
+     * @param key    clé normalisée
+     * @param loader fonction de chargement appelée en cas d'absence
+     */
+    public Meteo.WeatherData get(String key, Supplier<Meteo.WeatherData> loader) {
+        try {
+            return getAsync(key, () -> CompletableFuture.completedFuture(loader.get())).join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException re ? re : e;
+        }
+    }
+
+    /**
+     * Variante asynchrone de {@link #get} : le loader renvoie un futur, et tous les
+     * appelants concurrents pour une même clé partagent ce même chargement.
+     *
+     * @param key    clé normalisée
+     * @param loader fonction de chargement appelée en cas d'absence
+     */
+    public CompletableFuture<Meteo.WeatherData> getAsync(String key,
+                                                         Supplier<CompletableFuture<Meteo.WeatherData>> loader) {
+        Meteo.WeatherData cached = lookup(key);
+        if (cached != null) {
+            hits.incrementAndGet();
+            return CompletableFuture.completedFuture(cached);
+        }
+        misses.incrementAndGet();
+
+        CompletableFuture<Meteo.WeatherData> mine = new CompletableFuture<>();
+        CompletableFuture<Meteo.WeatherData> existing = inFlight.putIfAbsent(key, mine);
+        if (existing != null) {
+            // Une requête est déjà en cours pour cette clé : on partage son résultat
+            return existing.copy();
+        }
+
+        // Une autre requête a pu se terminer entre la recherche et l'enregistrement
+        Meteo.WeatherData data = lookup(key);
+        if (data != null) {
+            inFlight.remove(key, mine);
+            mine.complete(data);
+            return mine.copy();
+        }
+
+        load(key, mine, loader);
+        return mine.copy();
+    }
+
+    /**
+     * Recharge une entrée sans attendre son expiration (rafraîchissement anticipé).
+     * Si un chargement est déjà en cours pour la clé, il est réutilisé. Les compteurs
+     * de hits/misses ne sont pas modifiés.
+     *
+     * @param key    clé normalisée
+     * @param loader fonction de chargement
+     */
+    CompletableFuture<Meteo.WeatherData> refresh(String key, Supplier<CompletableFuture<Meteo.WeatherData>> loader) {
+        CompletableFuture<Meteo.WeatherData> mine = new CompletableFuture<>();
+        CompletableFuture<Meteo.WeatherData> existing = inFlight.putIfAbsent(key, mine);
+        if (existing != null) {
+            return existing.copy();
+        }
+        load(key, mine, loader);
+        return mine.copy();
+    }
+
+    private void load(String key, CompletableFuture<Meteo.WeatherData> mine,
+                      Supplier<CompletableFuture<Meteo.WeatherData>> loader) {
+        CompletableFuture<Meteo.WeatherData> loaded;
+        try {
+            loaded = loader.get();
+        } catch (RuntimeException e) {
+            loaded = CompletableFuture.failedFuture(e);
+        }
+        loaded.whenComplete((result, error) -> {
+            if (error == null && result != null) {
+                put(key, result);
+            }
+            inFlight.remove(key, mine);
+            if (error != null) {
+                mine.completeExceptionally(error);
+            } else {
+                mine.complete(result);
+            }
+        });
+    }
+
+    /**
+     * Durée de validité restante d'une entrée, sans la compter comme un hit ou un miss
+     * (l'entrée remonte tout de même dans l'ordre LRU)
+     *
+     * @param key clé normalisée
+     * @return le temps restant en millisecondes, ou 0 si l'entrée est absente ou expirée
+     */
+    synchronized long remainingMillis(String key) {
+        Entry entry = entries.get(key);
+        return entry == null ? 0 : Math.max(0, entry.expiresAt - System.currentTimeMillis());
+    }
+
+    /**
+     * Retourne la valeur en cache sans déclencher de chargement
+     *
+     * @param key clé normalisée
+     * @return la donnée encore valide, ou null
+     */
+    public Meteo.WeatherData getIfPresent(String key) {
+        Meteo.WeatherData cached = lookup(key);
+        if (cached != null) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+        }
+        return cached;
+    }
+
+    /**
+     * Ajoute ou remplace une entrée
+     */
+    public void put(String key, Meteo.WeatherData data) {
+        put(key, data, System.currentTimeMillis());
+    }
+
+    /**
+     * Ajoute ou remplace une entrée récupérée à un instant passé (rechargement au démarrage) :
+     * elle expire un TTL après cet instant
+     *
+     * @param fetchedAt instant de récupération, en millisecondes
+     */
+    synchronized void put(String key, Meteo.WeatherData data, long fetchedAt) {
+        entries.put(key, new Entry(data, fetchedAt + ttlMillis));
+    }
+
+    /**
+     * Supprime toutes les entrées (les compteurs sont conservés)
+     */
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Retourne une valeur expirée depuis au plus maxStaleMillis, sans déclencher de chargement
+     *
+     * @param key            clé normalisée
+     * @param maxStaleMillis ancienneté maximale après expiration (Long.MAX_VALUE : sans limite)
+     * @return la donnée expirée, ou null si l'entrée est absente, encore valide ou trop ancienne
+     */
+    synchronized Meteo.WeatherData getStale(String key, long maxStaleMillis) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        long expiredFor = System.currentTimeMillis() - entry.expiresAt;
+        if (expiredFor < 0 || expiredFor > maxStaleMillis) {
+            return null;
+        }
+        if (!entry.expired) {
+            entry.expired = true;
+            expirations.incrementAndGet();
+        }
+        staleHits.incrementAndGet();
+        return entry.data;
+    }
+
+    private synchronized Meteo.WeatherData lookup(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expiresAt <= System.currentTimeMillis()) {
+            // Conservée comme donnée de secours ; l'expiration n'est comptée qu'une fois
+            if (!entry.expired) {
+                entry.expired = true;
+                expirations.incrementAndGet();
+            }
+            return null;
+        }
+        return entry.data;
+    }
+
+    /**
+     * Supprime les entrées expirées
+     */
+    public synchronized void purgeExpired() {
+        long now = System.currentTimeMillis();
+        Iterator<Entry> it = entries.values().iterator();
+        while (it.hasNext()) {
+            Entry entry = it.next();
+            if (entry.expiresAt <= now) {
+                it.remove();
+                if (!entry.expired) {
+                    expirations.incrementAndGet();
+                }
+            }
+        }
+    }
+
+    /**
+     * @return la durée de validité d'une entrée
+     */
+    public Duration getTtl() {
+        return Duration.ofMillis(ttlMillis);
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    public long getExpirationCount() {
+        return expirations.get();
+    }
+
+    /**
+     * @return le nombre de valeurs expirées servies
+     */
+    public long getStaleHitCount() {
+        return staleHits.get();
+    }
+
+    public double getHitRate() {
+        long total = hits.get() + misses.get();
+        return total == 0 ? 0.0 : (double) hits.get() / total;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Cache météo: %d entrées, %d hits, %d misses (%.0f%%), %d évictions, %d expirations, %d servies expirées",
+                size(), getHitCount(), getMissCount(), getHitRate() * 100, getEvictionCount(), getExpirationCount(),
+                getStaleHitCount());
+    }
+
+    private static final class Entry {
+        final Meteo.WeatherData data;
+        final long expiresAt;
+        // Expiration déjà comptée
+        boolean expired;
+
+        Entry(Meteo.WeatherData data, long expiresAt) {
+            this.data = data;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
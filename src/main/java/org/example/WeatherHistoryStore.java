@@ -0,0 +1,372 @@
+package org.example;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Historique en mémoire des relevés météo, stocké par colonnes et partitionné par ville.
+ *
+ * Chaque ville possède des tableaux primitifs (horodatage en secondes, température,
+ * ressenti et vent en centièmes, humidité, pression) : un relevé occupe 13 octets,
+ * au lieu d'un objet WeatherData complet. Les relevés sont ajoutés dans l'ordre
+ * chronologique (un relevé plus ancien ou identique au dernier est ignoré, ce qui
+ * évite les doublons quand l'API renvoie deux fois la même mesure), ce qui permet
+ * de retrouver une plage de temps par recherche dichotomique.
+ */
+public class WeatherHistoryStore {
+
+    private static final double CENTI = 100.0;
+    private static final int INITIAL_CAPACITY = 64;
+
+    /**
+     * Grandeurs interrogeables dans l'historique
+     */
+    public enum Field {
+        TEMPERATURE, FEELS_LIKE, HUMIDITY, PRESSURE, WIND_SPEED
+    }
+
+    private final ConcurrentHashMap<String, Series> series = new ConcurrentHashMap<>();
+    // Séries indexées par le nom tel que reçu, pour ne pas normaliser le nom à chaque relevé
+    private final ConcurrentHashMap<String, Series> byName = new ConcurrentHashMap<>();
+
+    /**
+     * Enregistre un relevé (ignoré s'il est invalide ou pas plus récent que le dernier de la ville)
+     *
+     * @param data relevé météo
+     * @return true si le relevé a été ajouté
+     */
+    public boolean record(Meteo.WeatherData data) {
+        if (data == null || !data.isValid() || data.getTimestamp() <= 0) {
+            return false;
+        }
+        return record(data.getCityName(), data.getTimestamp(), data.getTemperature(), data.getFeelsLike(),
+                data.getHumidity(), data.getPressure(), data.getWindSpeed());
+    }
+
+    /**
+     * Enregistre un relevé à partir de ses seuls champs historisés (rechargement du journal
+     * sans construire de WeatherData)
+     *
+     * @param timestamp horodatage du relevé, en millisecondes
+     */
+    boolean record(String city, long timestamp, double temperature, double feelsLike,
+                   int humidity, int pressure, double windSpeed) {
+        if (city == null || city.equals("N/A") || timestamp <= 0) {
+            return false;
+        }
+        Series s = byName.get(city);
+        if (s == null) {
+            s = series.computeIfAbsent(key(city), k -> new Series());
+            byName.putIfAbsent(city, s);
+        }
+        return s.append((int) (timestamp / 1000), centi(temperature), centi(feelsLike),
+                (short) Math.clamp(pressure, Short.MIN_VALUE, Short.MAX_VALUE),
+                centi(windSpeed), (byte) Math.clamp(humidity, 0, 100));
+    }
+
+    /**
+     * Agrégat d'une grandeur sur une plage de temps
+     *
+     * @param city  nom de la ville
+     * @param field grandeur à agréger
+     * @param from  début de la plage (inclus)
+     * @param to    fin de la plage (incluse)
+     * @return l'agrégat (count = 0 si aucun relevé)
+     */
+    public Aggregate aggregate(String city, Field field, Instant from, Instant to) {
+        Series s = series.get(key(city));
+        return s == null ? Aggregate.EMPTY : s.aggregate(field, seconds(from), seconds(to));
+    }
+
+    /**
+     * Agrégat d'une grandeur sur la période qui vient de s'écouler
+     * (ex : température moyenne à Valenciennes sur les dernières 24 h)
+     *
+     * @param city   nom de la ville
+     * @param field  grandeur à agréger
+     * @param window durée de la période
+     */
+    public Aggregate aggregateLast(String city, Field field, Duration window) {
+        Instant now = Instant.now();
+        return aggregate(city, field, now.minus(window), now);
+    }
+
+    /**
+     * Valeurs d'une grandeur sur une plage de temps, dans l'ordre chronologique
+     *
+     * @param city  nom de la ville
+     * @param field grandeur demandée
+     * @param from  début de la plage (inclus)
+     * @param to    fin de la plage (incluse)
+     */
+    public double[] values(String city, Field field, Instant from, Instant to) {
+        Series s = series.get(key(city));
+        return s == null ? new double[0] : s.values(field, seconds(from), seconds(to));
+    }
+
+    /**
+     * Horodatages (en millisecondes) des relevés d'une plage de temps,
+     * alignés sur le résultat de {@link #values}
+     *
+     * @param city nom de la ville
+     * @param from début de la plage (inclus)
+     * @param to   fin de la plage (incluse)
+     */
+    public long[] timestamps(String city, Instant from, Instant to) {
+        Series s = series.get(key(city));
+        return s == null ? new long[0] : s.timestamps(seconds(from), seconds(to));
+    }
+
+    /**
+     * @param city nom de la ville
+     * @return le nombre de relevés conservés pour la ville
+     */
+    public int size(String city) {
+        Series s = series.get(key(city));
+        return s == null ? 0 : s.size();
+    }
+
+    /**
+     * @return le nombre total de relevés conservés
+     */
+    public long size() {
+        long total = 0;
+        for (Series s : series.values()) {
+            total += s.size();
+        }
+        return total;
+    }
+
+    /**
+     * @return les villes (clés normalisées) ayant au moins un relevé
+     */
+    public List<String> cities() {
+        List<String> names = new ArrayList<>(series.keySet());
+        Collections.sort(names);
+        return names;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Historique météo: %d villes, %d relevés", series.size(), size());
+    }
+
+    private static String key(String city) {
+        return city == null ? "" : city.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static int seconds(Instant instant) {
+        return (int) Math.clamp(instant.getEpochSecond(), 0L, 0xFFFF_FFFFL);
+    }
+
+    private static short centi(double value) {
+        return (short) Math.clamp(Math.round(value * CENTI), Short.MIN_VALUE, Short.MAX_VALUE);
+    }
+
+    /**
+     * Statistiques d'une grandeur sur une plage de temps
+     */
+    public static final class Aggregate {
+        static final Aggregate EMPTY = new Aggregate(0, Double.NaN, Double.NaN, Double.NaN);
+
+        private final int count;
+        private final double min;
+        private final double max;
+        private final double mean;
+
+        Aggregate(int count, double min, double max, double mean) {
+            this.count = count;
+            this.min = min;
+            this.max = max;
+            this.mean = mean;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        /**
+         * @return le minimum (NaN si aucun relevé)
+         */
+        public double getMin() {
+            return min;
+        }
+
+        /**
+         * @return le maximum (NaN si aucun relevé)
+         */
+        public double getMax() {
+            return max;
+        }
+
+        /**
+         * @return la moyenne (NaN si aucun relevé)
+         */
+        public double getMean() {
+            return mean;
+        }
+
+        @Override
+        public String toString() {
+            return count == 0 ? "aucun relevé"
+                    : String.format("%d relevés, moyenne %.1f (min %.1f, max %.1f)", count, mean, min, max);
+        }
+    }
+
+    /**
+     * Colonnes d'une ville. Les horodatages sont des secondes epoch non signées.
+     */
+    private static final class Series {
+        private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+        private int size;
+        private int[] timestamp = new int[INITIAL_CAPACITY];
+        private short[] temperature = new short[INITIAL_CAPACITY];
+        private short[] feelsLike = new short[INITIAL_CAPACITY];
+        private short[] pressure = new short[INITIAL_CAPACITY];
+        private short[] windSpeed = new short[INITIAL_CAPACITY];
+        private byte[] humidity = new byte[INITIAL_CAPACITY];
+
+        boolean append(int ts, short temp, short feels, short press, short wind, byte hum) {
+            lock.writeLock().lock();
+            try {
+                if (size > 0 && Integer.compareUnsigned(ts, timestamp[size - 1]) <= 0) {
+                    return false;
+                }
+                if (size == timestamp.length) {
+                    grow();
+                }
+                timestamp[size] = ts;
+                temperature[size] = temp;
+                feelsLike[size] = feels;
+                pressure[size] = press;
+                windSpeed[size] = wind;
+                humidity[size] = hum;
+                size++;
+                return true;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        private void grow() {
+            int capacity = timestamp.length * 2;
+            timestamp = Arrays.copyOf(timestamp, capacity);
+            temperature = Arrays.copyOf(temperature, capacity);
+            feelsLike = Arrays.copyOf(feelsLike, capacity);
+            pressure = Arrays.copyOf(pressure, capacity);
+            windSpeed = Arrays.copyOf(windSpeed, capacity);
+            humidity = Arrays.copyOf(humidity, capacity);
+        }
+
+        int size() {
+            lock.readLock().lock();
+            try {
+                return size;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        Aggregate aggregate(Field field, int from, int to) {
+            lock.readLock().lock();
+            try {
+                int start = lowerBound(from);
+                int end = upperBound(to);
+                if (start >= end) {
+                    return Aggregate.EMPTY;
+                }
+                double min = Double.POSITIVE_INFINITY;
+                double max = Double.NEGATIVE_INFINITY;
+                double sum = 0;
+                for (int i = start; i < end; i++) {
+                    double v = value(field, i);
+                    sum += v;
+                    if (v < min) min = v;
+                    if (v > max) max = v;
+                }
+                return new Aggregate(end - start, min, max, sum / (end - start));
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        double[] values(Field field, int from, int to) {
+            lock.readLock().lock();
+            try {
+                int start = lowerBound(from);
+                int end = Math.max(start, upperBound(to));
+                double[] out = new double[end - start];
+                for (int i = start; i < end; i++) {
+                    out[i - start] = value(field, i);
+                }
+                return out;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        long[] timestamps(int from, int to) {
+            lock.readLock().lock();
+            try {
+                int start = lowerBound(from);
+                int end = Math.max(start, upperBound(to));
+                long[] out = new long[end - start];
+                for (int i = start; i < end; i++) {
+                    out[i - start] = Integer.toUnsignedLong(timestamp[i]) * 1000;
+                }
+                return out;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        private double value(Field field, int i) {
+            return switch (field) {
+                case TEMPERATURE -> temperature[i] / CENTI;
+                case FEELS_LIKE -> feelsLike[i] / CENTI;
+                case HUMIDITY -> humidity[i];
+                case PRESSURE -> pressure[i];
+                case WIND_SPEED -> windSpeed[i] / CENTI;
+            };
+        }
+
+        // Premier indice dont l'horodatage est >= from
+        private int lowerBound(int from) {
+            int lo = 0;
+            int hi = size;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (Integer.compareUnsigned(timestamp[mid], from) < 0) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+
+        // Premier indice dont l'horodatage est > to
+        private int upperBound(int to) {
+            int lo = 0;
+            int hi = size;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (Integer.compareUnsigned(timestamp[mid], to) <= 0) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+    }
+}
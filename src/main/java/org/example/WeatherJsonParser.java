@@ -0,0 +1,671 @@
+package org.example;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Parseur JSON "pull" dédié aux réponses /weather d'OpenWeatherMap.
+ *
+ * Il construit un WeatherData directement depuis les octets UTF-8 de la réponse,
+ * sans construire d'arbre JSONObject ni boxer les nombres : seuls les champs utiles
+ * sont décodés, le reste est sauté. Les valeurs par défaut sont celles de
+ * {@link OpenWeatherMapProvider#parseWeatherData(String)} ("N/A", 0.0, timestamps x1000).
+ *
+ * Dès que la réponse s'écarte de la forme attendue (erreur API, type inattendu,
+ * clé échappée...), {@link UnexpectedShapeException} est levée et l'appelant
+ * doit se rabattre sur le parseur org.json.
+ */
+final class WeatherJsonParser {
+
+    // Puissances de 10 exactement représentables en double (chemin rapide de Clinger)
+    private static final double[] POW10 = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private final byte[] buf;
+    private final int end;
+    private int pos;
+
+    // Fin (exclue) de la dernière clé lue
+    private int lastKeyEnd;
+
+    // Dernier nombre lu
+    private boolean numIntegral;
+    private long numLong;
+    private double numDouble;
+
+    private WeatherJsonParser(byte[] buf) {
+        this.buf = buf;
+        this.end = buf.length;
+    }
+
+    /**
+     * @param json réponse /weather encodée en UTF-8
+     * @return les données météo
+     * @throws UnexpectedShapeException si la réponse n'a pas la forme attendue
+     */
+    static Meteo.WeatherData parse(byte[] json) {
+        return new WeatherJsonParser(json).parseRoot();
+    }
+
+    private Meteo.WeatherData parseRoot() {
+        Meteo.WeatherData.Builder data = Meteo.WeatherData.builder();
+        String name = null;
+        long id = 0;
+        int visibility = 0;
+        long dt = 0;
+
+        expect('{');
+        if (!consumeIf('}')) {
+            do {
+                int keyStart = readKey();
+                int keyEnd = lastKeyEnd;
+
+                if (keyIs(keyStart, keyEnd, K_COD)) {
+                    readCod();
+                } else if (keyIs(keyStart, keyEnd, K_NAME)) {
+                    name = readString();
+                } else if (keyIs(keyStart, keyEnd, K_ID)) {
+                    id = readLong(0);
+                } else if (keyIs(keyStart, keyEnd, K_VISIBILITY)) {
+                    visibility = (int) readLong(0);
+                } else if (keyIs(keyStart, keyEnd, K_DT)) {
+                    dt = readLong(0);
+                } else if (keyIs(keyStart, keyEnd, K_SYS)) {
+                    readSys(data);
+                } else if (keyIs(keyStart, keyEnd, K_MAIN)) {
+                    readMain(data);
+                } else if (keyIs(keyStart, keyEnd, K_WEATHER)) {
+                    readWeather(data);
+                } else if (keyIs(keyStart, keyEnd, K_WIND)) {
+                    readWind(data);
+                } else if (keyIs(keyStart, keyEnd, K_COORD)) {
+                    readCoord(data);
+                } else {
+                    skipValue();
+                }
+            } while (nextMember());
+        }
+        skipWhitespace();
+        if (pos != end) {
+            throw UnexpectedShapeException.INSTANCE;
+        }
+
+        data.cityId(id);
+        data.cityName(name != null ? name : "N/A");
+        data.visibility(visibility);
+        data.timestamp(dt * 1000);
+        return data.build();
+    }
+
+    private void readCod() {
+        // "cod" est un nombre (200) ou une chaîne ("404") : toute erreur passe par le parseur complet
+        skipWhitespace();
+        long cod;
+        if (peek() == '"') {
+            pos++;
+            if (!readNumberBody() || !numIntegral || peek() != '"') {
+                throw UnexpectedShapeException.INSTANCE;
+            }
+            pos++;
+            cod = numLong;
+        } else {
+            cod = readLong(200);
+        }
+        if (cod != 200) {
+            throw UnexpectedShapeException.INSTANCE;
+        }
+    }
+
+    private void readSys(Meteo.WeatherData.Builder data) {
+        if (!beginObject()) {
+            return;
+        }
+        String country = null;
+        long sunrise = 0;
+        long sunset = 0;
+        if (!consumeIf('}')) {
+            do {
+                int keyStart = readKey();
+                int keyEnd = lastKeyEnd;
+                if (keyIs(keyStart, keyEnd, K_COUNTRY)) {
+                    country = readString();
+                } else if (keyIs(keyStart, keyEnd, K_SUNRISE)) {
+                    sunrise = readLong(0);
+                } else if (keyIs(keyStart, keyEnd, K_SUNSET)) {
+                    sunset = readLong(0);
+                } else {
+                    skipValue();
+                }
+            } while (nextMember());
+        }
+        data.country(country != null ? country : "N/A");
+        data.sunrise(sunrise * 1000);
+        data.sunset(sunset * 1000);
+    }
+
+    private void readMain(Meteo.WeatherData.Builder data) {
+        if (!beginObject()) {
+            return;
+        }
+        double temp = 0.0, feelsLike = 0.0, tempMin = 0.0, tempMax = 0.0;
+        int humidity = 0, pressure = 0;
+        if (!consumeIf('}')) {
+            do {
+                int keyStart = readKey();
+                int keyEnd = lastKeyEnd;
+                if (keyIs(keyStart, keyEnd, K_TEMP)) {
+                    temp = readDouble(0.0);
+                } else if (keyIs(keyStart, keyEnd, K_FEELS_LIKE)) {
+                    feelsLike = readDouble(0.0);
+                } else if (keyIs(keyStart, keyEnd, K_TEMP_MIN)) {
+                    tempMin = readDouble(0.0);
+                } else if (keyIs(keyStart, keyEnd, K_TEMP_MAX)) {
+                    tempMax = readDouble(0.0);
+                } else if (keyIs(keyStart, keyEnd, K_HUMIDITY)) {
+                    humidity = (int) readLong(0);
+                } else if (keyIs(keyStart, keyEnd, K_PRESSURE)) {
+                    pressure = (int) readLong(0);
+                } else {
+                    skipValue();
+                }
+            } while (nextMember());
+        }
+        data.temperature(temp);
+        data.feelsLike(feelsLike);
+        data.tempMin(tempMin);
+        data.tempMax(tempMax);
+        data.humidity(humidity);
+        data.pressure(pressure);
+    }
+
+    private void readWeather(Meteo.WeatherData.Builder data) {
+        skipWhitespace();
+        if (consumeLiteral(NULL)) {
+            return;
+        }
+        expect('[');
+        if (consumeIf(']')) {
+            return;
+        }
+        // Seul le premier élément est utilisé ; il doit être un objet
+        if (!beginObject()) {
+            throw UnexpectedShapeException.INSTANCE;
+        }
+        String description = null;
+        String mainCondition = null;
+        if (!consumeIf('}')) {
+            do {
+                int keyStart = readKey();
+                int keyEnd = lastKeyEnd;
+                if (keyIs(keyStart, keyEnd, K_DESCRIPTION)) {
+                    description = readString();
+                } else if (keyIs(keyStart, keyEnd, K_MAIN)) {
+                    mainCondition = readString();
+                } else {
+                    skipValue();
+                }
+            } while (nextMember());
+        }
+        while (nextElement()) {
+            skipValue();
+        }
+        data.description(description != null ? description : "N/A");
+        data.mainCondition(mainCondition != null ? mainCondition : "N/A");
+    }
+
+    private void readWind(Meteo.WeatherData.Builder data) {
+        if (!beginObject()) {
+            return;
+        }
+        double speed = 0.0;
+        int deg = 0;
+        if (!consumeIf('}')) {
+            do {
+                int keyStart = readKey();
+                int keyEnd = lastKeyEnd;
+                if (keyIs(keyStart, keyEnd, K_SPEED)) {
+                    speed = readDouble(0.0);
+                } else if (keyIs(keyStart, keyEnd, K_DEG)) {
+                    deg = (int) readLong(0);
+                } else {
+                    skipValue();
+                }
+            } while (nextMember());
+        }
+        data.windSpeed(speed);
+        data.windDirection(deg);
+    }
+
+    private void readCoord(Meteo.WeatherData.Builder data) {
+        if (!beginObject()) {
+            return;
+        }
+        double lat = 0.0, lon = 0.0;
+        if (!consumeIf('}')) {
+            do {
+                int keyStart = readKey();
+                int keyEnd = lastKeyEnd;
+                if (keyIs(keyStart, keyEnd, K_LAT)) {
+                    lat = readDouble(0.0);
+                } else if (keyIs(keyStart, keyEnd, K_LON)) {
+                    lon = readDouble(0.0);
+                } else {
+                    skipValue();
+                }
+            } while (nextMember());
+        }
+        data.latitude(lat);
+        data.longitude(lon);
+    }
+
+    // ---------------------------------------------------------------- structure
+
+    /**
+     * @return true si un objet commence, false pour null (comme optJSONObject)
+     */
+    private boolean beginObject() {
+        skipWhitespace();
+        if (consumeLiteral(NULL)) {
+            return false;
+        }
+        expect('{');
+        return true;
+    }
+
+    /**
+     * Après une valeur d'objet : true s'il reste un membre, false en fin d'objet
+     */
+    private boolean nextMember() {
+        skipWhitespace();
+        if (pos >= end) {
+            throw UnexpectedShapeException.INSTANCE;
+        }
+        byte b = buf[pos++];
+        if (b == ',') {
+            return true;
+        }
+        if (b == '}') {
+            return false;
+        }
+        throw UnexpectedShapeException.INSTANCE;
+    }
+
+    /**
+     * Après une valeur de tableau : true s'il reste un élément, false en fin de tableau
+     */
+    private boolean nextElement() {
+        skipWhitespace();
+        if (pos >= end) {
+            throw UnexpectedShapeException.INSTANCE;
+        }
+        byte b = buf[pos++];
+        if (b == ',') {
+            return true;
+        }
+        if (b == ']') {
+            return false;
+        }
+        throw UnexpectedShapeException.INSTANCE;
+    }
+
+    /**
+     * Lit une clé et le ':' qui la suit, sans allouer de String.
+     * Les clés échappées ne sont pas supportées (repli sur le parseur complet).
+     *
+     * @return l'indice du premier octet de la clé (la fin est dans lastKeyEnd)
+     */
+    private int readKey() {
+        skipWhitespace();
+        expect('"');
+        int start = pos;
+        while (pos < end) {
+            byte b = buf[pos];
+            if (b == '"') {
+                lastKeyEnd = pos;
+                pos++;
+                expect(':');
+                return start;
+            }
+            if (b == '\\') {
+                throw UnexpectedShapeException.INSTANCE;
+            }
+            pos++;
+        }
+        throw UnexpectedShapeException.INSTANCE;
+    }
+
+    private boolean keyIs(int start, int keyEnd, byte[] key) {
+        if (keyEnd - start != key.length) {
+            return false;
+        }
+        for (int i = 0; i < key.length; i++) {
+            if (buf[start + i] != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void skipValue() {
+        skipWhitespace();
+        if (pos >= end) {
+            throw UnexpectedShapeException.INSTANCE;
+        }
+        byte b = buf[pos];
+        switch (b) {
+            case '"' -> skipString();
+            case '{' -> {
+                pos++;
+                if (!consumeIf('}')) {
+                    do {
+                        readKey();
+                        skipValue();
+                    } while (nextMember());
+                }
+            }
+            case '[' -> {
+                pos++;
+                if (!consumeIf(']')) {
+                    do {
+                        skipValue();
+                    } while (nextElement());
+                }
+            }
+            case 't' -> expectLiteral(TRUE);
+            case 'f' -> expectLiteral(FALSE);
+            case 'n' -> expectLiteral(NULL);
+            default -> {
+                if (!readNumberBody()) {
+                    throw UnexpectedShapeException.INSTANCE;
+                }
+            }
+        }
+    }
+
+    // ---------------------------------------------------------------- valeurs
+
+    /**
+     * @return la chaîne, ou null pour la valeur JSON null (comme optString avec défaut)
+     */
+    private String readString() {
+        skipWhitespace();
+        if (consumeLiteral(NULL)) {
+            return null;
+        }
+        expect('"');
+        int start = pos;
+        while (pos < end) {
+            byte b = buf[pos];
+            if (b == '"') {
+                String value = new String(buf, start, pos - start, StandardCharsets.UTF_8);
+                pos++;
+                return value;
+            }
+            if (b == '\\') {
+                return readEscapedString(start);
+            }
+            pos++;
+        }
+        throw UnexpectedShapeException.INSTANCE;
+    }
+
+    private String readEscapedString(int start) {
+        StringBuilder sb = new StringBuilder(pos - start + 16);
+        int segment = start;
+        while (pos < end) {
+            byte b = buf[pos];
+            if (b == '"') {
+                sb.append(new String(buf, segment, pos - segment, StandardCharsets.UTF_8));
+                pos++;
+                return sb.toString();
+            }
+            if (b != '\\') {
+                pos++;
+                continue;
+            }
+            sb.append(new String(buf, segment, pos - segment, StandardCharsets.UTF_8));
+            if (pos + 1 >= end) {
+                throw UnexpectedShapeException.INSTANCE;
+            }
+            byte escaped = buf[pos + 1];
+            pos += 2;
+            switch (escaped) {
+                case '"' -> sb.append('"');
+                case '\\' -> sb.append('\\');
+                case '/' -> sb.append('/');
+                case 'b' -> sb.append('\b');
+                case 'f' -> sb.append('\f');
+                case 'n' -> sb.append('\n');
+                case 'r' -> sb.append('\r');
+                case 't' -> sb.append('\t');
+                case 'u' -> {
+                    if (pos + 4 > end) {
+                        throw UnexpectedShapeException.INSTANCE;
+                    }
+                    int c = 0;
+                    for (int i = 0; i < 4; i++) {
+                        int digit = Character.digit(buf[pos + i], 16);
+                        if (digit < 0) {
+                            throw UnexpectedShapeException.INSTANCE;
+                        }
+                        c = (c << 4) | digit;
+                    }
+                    sb.append((char) c);
+                    pos += 4;
+                }
+                default -> throw UnexpectedShapeException.INSTANCE;
+            }
+            segment = pos;
+        }
+        throw UnexpectedShapeException.INSTANCE;
+    }
+
+    private void skipString() {
+        expect('"');
+        while (pos < end) {
+            byte b = buf[pos++];
+            if (b == '"') {
+                return;
+            }
+            if (b == '\\') {
+                pos++;
+            }
+        }
+        throw UnexpectedShapeException.INSTANCE;
+    }
+
+    private double readDouble(double defaultValue) {
+        skipWhitespace();
+        if (consumeLiteral(NULL)) {
+            return defaultValue;
+        }
+        if (!readNumberBody()) {
+            throw UnexpectedShapeException.INSTANCE;
+        }
+        return numDouble;
+    }
+
+    private long readLong(long defaultValue) {
+        skipWhitespace();
+        if (consumeLiteral(NULL)) {
+            return defaultValue;
+        }
+        if (!readNumberBody()) {
+            throw UnexpectedShapeException.INSTANCE;
+        }
+        // Comme optLong / optInt : partie entière d'une valeur décimale
+        return numIntegral ? numLong : (long) numDouble;
+    }
+
+    /**
+     * Lit un nombre JSON à la position courante dans numIntegral/numLong/numDouble.
+     * Les mantisses courtes sans exposant sont converties sans allocation ;
+     * les autres passent par Double.parseDouble (même arrondi correct).
+     *
+     * @return false si aucun nombre ne commence ici
+     */
+    private boolean readNumberBody() {
+        int start = pos;
+        boolean negative = false;
+        if (pos < end && buf[pos] == '-') {
+            negative = true;
+            pos++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int fractionDigits = 0;
+        boolean integral = true;
+        while (pos < end && isDigit(buf[pos])) {
+            mantissa = mantissa * 10 + (buf[pos++] - '0');
+            digits++;
+        }
+        if (pos < end && buf[pos] == '.') {
+            integral = false;
+            pos++;
+            while (pos < end && isDigit(buf[pos])) {
+                mantissa = mantissa * 10 + (buf[pos++] - '0');
+                digits++;
+                fractionDigits++;
+            }
+        }
+        boolean exponent = pos < end && (buf[pos] == 'e' || buf[pos] == 'E');
+        if (exponent) {
+            pos++;
+            if (pos < end && (buf[pos] == '+' || buf[pos] == '-')) {
+                pos++;
+            }
+            while (pos < end && isDigit(buf[pos])) {
+                pos++;
+            }
+        }
+        if (digits == 0) {
+            pos = start;
+            return false;
+        }
+
+        if (!exponent && digits <= 15 && fractionDigits < POW10.length) {
+            numIntegral = integral;
+            numLong = negative ? -mantissa : mantissa;
+            double value = integral ? (double) mantissa : mantissa / POW10[fractionDigits];
+            numDouble = negative ? -value : value;
+            return true;
+        }
+
+        String literal = new String(buf, start, pos - start, StandardCharsets.US_ASCII);
+        try {
+            numDouble = Double.parseDouble(literal);
+            numIntegral = integral && !exponent;
+            numLong = numIntegral ? Long.parseLong(literal) : (long) numDouble;
+        } catch (NumberFormatException e) {
+            throw UnexpectedShapeException.INSTANCE;
+        }
+        return true;
+    }
+
+    // ---------------------------------------------------------------- lexique
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+
+    private void skipWhitespace() {
+        while (pos < end) {
+            byte b = buf[pos];
+            if (b != ' ' && b != '\n' && b != '\r' && b != '\t') {
+                return;
+            }
+            pos++;
+        }
+    }
+
+    private byte peek() {
+        if (pos >= end) {
+            throw UnexpectedShapeException.INSTANCE;
+        }
+        return buf[pos];
+    }
+
+    private void expect(char c) {
+        skipWhitespace();
+        if (pos >= end || buf[pos] != c) {
+            throw UnexpectedShapeException.INSTANCE;
+        }
+        pos++;
+    }
+
+    private boolean consumeIf(char c) {
+        skipWhitespace();
+        if (pos < end && buf[pos] == c) {
+            pos++;
+            return true;
+        }
+        return false;
+    }
+
+    private boolean consumeLiteral(byte[] literal) {
+        if (end - pos < literal.length) {
+            return false;
+        }
+        for (int i = 0; i < literal.length; i++) {
+            if (buf[pos + i] != literal[i]) {
+                return false;
+            }
+        }
+        pos += literal.length;
+        return true;
+    }
+
+    private void expectLiteral(byte[] literal) {
+        if (!consumeLiteral(literal)) {
+            throw UnexpectedShapeException.INSTANCE;
+        }
+    }
+
+    private static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static final byte[] NULL = ascii("null");
+    private static final byte[] TRUE = ascii("true");
+    private static final byte[] FALSE = ascii("false");
+
+    private static final byte[] K_COD = ascii("cod");
+    private static final byte[] K_NAME = ascii("name");
+    private static final byte[] K_ID = ascii("id");
+    private static final byte[] K_VISIBILITY = ascii("visibility");
+    private static final byte[] K_DT = ascii("dt");
+    private static final byte[] K_SYS = ascii("sys");
+    private static final byte[] K_MAIN = ascii("main");
+    private static final byte[] K_WEATHER = ascii("weather");
+    private static final byte[] K_WIND = ascii("wind");
+    private static final byte[] K_COORD = ascii("coord");
+    private static final byte[] K_COUNTRY = ascii("country");
+    private static final byte[] K_SUNRISE = ascii("sunrise");
+    private static final byte[] K_SUNSET = ascii("sunset");
+    private static final byte[] K_TEMP = ascii("temp");
+    private static final byte[] K_FEELS_LIKE = ascii("feels_like");
+    private static final byte[] K_TEMP_MIN = ascii("temp_min");
+    private static final byte[] K_TEMP_MAX = ascii("temp_max");
+    private static final byte[] K_HUMIDITY = ascii("humidity");
+    private static final byte[] K_PRESSURE = ascii("pressure");
+    private static final byte[] K_DESCRIPTION = ascii("description");
+    private static final byte[] K_SPEED = ascii("speed");
+    private static final byte[] K_DEG = ascii("deg");
+    private static final byte[] K_LAT = ascii("lat");
+    private static final byte[] K_LON = ascii("lon");
+
+    /**
+     * Réponse hors du format attendu : l'appelant doit utiliser le parseur complet.
+     * Instance unique sans pile d'appels, pour que le repli reste peu coûteux.
+     */
+    static final class UnexpectedShapeException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        static final UnexpectedShapeException INSTANCE = new UnexpectedShapeException();
+
+        private UnexpectedShapeException() {
+            super("Forme JSON inattendue", null, false, false);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package org.example;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Source des relevés météo interrogée par {@link Meteo}, qui y ajoute cache, relevés
+ * expirés, historique, journal et requêtes groupées.
+ *
+ * Implémentations : {@link OpenWeatherMapProvider} (API distante, par défaut) et
+ * {@link FixtureWeatherProvider} (relevés enregistrés ou synthétiques, en mémoire, pour
+ * les tests de charge hors ligne).
+ *
+ * Les futurs sont complétés avec null quand le relevé ne peut être obtenu (ville inconnue,
+ * service indisponible) ; un futur en échec est traité de la même façon.
+ */
+public interface WeatherProvider {
+
+    /**
+     * @param cityName nom de ville nettoyé
+     * @param priority priorité de l'appel (les appels de fond cèdent la place aux appels interactifs)
+     * @return futur complété avec le relevé, ou null
+     */
+    CompletableFuture<Meteo.WeatherData> fetchByCity(String cityName, RequestScheduler.Priority priority);
+
+    /**
+     * @param latitude  latitude en degrés
+     * @param longitude longitude en degrés
+     * @param priority  priorité de l'appel
+     * @return futur complété avec le relevé, ou null
+     */
+    CompletableFuture<Meteo.WeatherData> fetchByCoordinates(double latitude, double longitude,
+                                                           RequestScheduler.Priority priority);
+
+    /**
+     * Indique si le service peut répondre : false pendant une panne (disjoncteur ouvert) ou
+     * quand le quota est épuisé. Un relevé absent alors que le service est disponible
+     * signifie une ville inconnue, pas une panne.
+     */
+    default boolean isAvailable() {
+        return true;
+    }
+
+    /**
+     * @return le nombre maximal d'identifiants par requête groupée, 0 si le fournisseur
+     * ne sait interroger qu'une ville à la fois
+     */
+    default int getMaxGroupSize() {
+        return 0;
+    }
+
+    /**
+     * Requête groupée par identifiants de ville (voir {@link #getMaxGroupSize()})
+     *
+     * @param ids      identifiants OpenWeatherMap des villes
+     * @param priority priorité de l'appel
+     * @return relevés par identifiant ; les villes absentes sont ensuite interrogées individuellement
+     */
+    default CompletableFuture<Map<Long, Meteo.WeatherData>> fetchByIds(List<Long> ids,
+                                                                      RequestScheduler.Priority priority) {
+        return CompletableFuture.completedFuture(Map.of());
+    }
+}
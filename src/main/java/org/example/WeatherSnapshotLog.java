@@ -0,0 +1,494 @@
+package org.example;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.logging.Logger;
+import java.util.zip.CRC32C;
+
+/**
+ * Journal sur disque des relevés météo, pour redémarrer avec un cache déjà chaud.
+ *
+ * Le fichier commence par un en-tête de 16 octets, suivi d'enregistrements de taille fixe
+ * (192 octets) ajoutés en fin de fichier. Chaque enregistrement porte un CRC32C : à
+ * l'ouverture, le fichier est parcouru via un MappedByteBuffer et tronqué au premier
+ * enregistrement incomplet ou corrompu (écriture interrompue par un arrêt brutal).
+ * La relecture lit directement la projection mémoire, sans copie intermédiaire du fichier :
+ * un curseur expose les champs de chaque enregistrement, et seuls ceux dont on a besoin
+ * sont décodés (un WeatherData complet n'est construit qu'à la demande).
+ *
+ * Les chaînes sont stockées dans des emplacements de taille fixe. La description et la
+ * condition sont tronquées si besoin ; la clé et le nom de ville, qui identifient le relevé,
+ * ne le sont jamais : un relevé dont la clé ou la ville ne tient pas n'est pas journalisé.
+ */
+public class WeatherSnapshotLog implements Closeable {
+
+    private static final Logger logger = Logger.getLogger(WeatherSnapshotLog.class.getName());
+
+    private static final int MAGIC = 0x57534E50; // "WSNP"
+    // Version 1 : clés et noms de ville tronqués, donc ambigus ; ces journaux sont réinitialisés
+    private static final int VERSION = 2;
+    static final int HEADER_SIZE = 16;
+    static final int RECORD_SIZE = 192;
+
+    // Disposition d'un enregistrement (le CRC couvre les octets 4 à 191)
+    private static final int CRC = 0;
+    private static final int FETCHED_AT = 4;
+    private static final int CITY_ID = 8;
+    private static final int LATITUDE = 16;
+    private static final int LONGITUDE = 20;
+    private static final int TIMESTAMP = 24;
+    private static final int SUNRISE = 28;
+    private static final int SUNSET = 32;
+    private static final int VISIBILITY = 36;
+    private static final int TEMPERATURE = 40;
+    private static final int FEELS_LIKE = 42;
+    private static final int TEMP_MIN = 44;
+    private static final int TEMP_MAX = 46;
+    private static final int PRESSURE = 48;
+    private static final int WIND_SPEED = 50;
+    private static final int WIND_DIRECTION = 52;
+    private static final int HUMIDITY = 54;
+    private static final int KEY = 56;
+    private static final int KEY_SLOT = 40;
+    private static final int CITY_NAME = KEY + KEY_SLOT;
+    private static final int CITY_NAME_SLOT = 40;
+    private static final int COUNTRY = CITY_NAME + CITY_NAME_SLOT;
+    private static final int COUNTRY_SLOT = 4;
+    private static final int DESCRIPTION = COUNTRY + COUNTRY_SLOT;
+    private static final int DESCRIPTION_SLOT = 36;
+    private static final int MAIN_CONDITION = DESCRIPTION + DESCRIPTION_SLOT;
+    private static final int MAIN_CONDITION_SLOT = RECORD_SIZE - MAIN_CONDITION;
+
+    // Taille maximale d'une projection mémoire, alignée sur les enregistrements
+    private static final long MAX_MAPPING = (Integer.MAX_VALUE / RECORD_SIZE) * (long) RECORD_SIZE;
+
+    private static final double CENTI = 100.0;
+    private static final double MICRO = 1_000_000.0;
+
+    private final Path file;
+    private final FileChannel channel;
+    private final ByteBuffer writeBuffer = ByteBuffer.allocate(RECORD_SIZE);
+    private final CRC32C writeCrc = new CRC32C();
+    private long recordCount;
+
+    private WeatherSnapshotLog(Path file, FileChannel channel, long recordCount) {
+        this.file = file;
+        this.channel = channel;
+        this.recordCount = recordCount;
+    }
+
+    /**
+     * Ouvre (ou crée) un journal. Les enregistrements incomplets ou corrompus en fin
+     * de fichier sont supprimés ; un fichier d'un autre format est réinitialisé.
+     *
+     * @param file chemin du fichier
+     */
+    public static WeatherSnapshotLog open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            long records;
+            if (!hasValidHeader(channel)) {
+                if (channel.size() > 0) {
+                    logger.warning("Journal météo " + file + " illisible, réinitialisé");
+                }
+                channel.truncate(0);
+                writeHeader(channel);
+                records = 0;
+            } else {
+                records = countValidRecords(channel);
+                long validEnd = HEADER_SIZE + records * RECORD_SIZE;
+                if (channel.size() > validEnd) {
+                    logger.warning(String.format("Journal météo %s : %d octets incomplets ou corrompus supprimés",
+                            file, channel.size() - validEnd));
+                    channel.truncate(validEnd);
+                    channel.force(false);
+                }
+            }
+            return new WeatherSnapshotLog(file, channel, records);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private static boolean hasValidHeader(FileChannel channel) throws IOException {
+        if (channel.size() < HEADER_SIZE) {
+            return false;
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        channel.read(header, 0);
+        return header.getInt(0) == MAGIC && header.getInt(4) == VERSION && header.getInt(8) == RECORD_SIZE;
+    }
+
+    private static void writeHeader(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(0, MAGIC).putInt(4, VERSION).putInt(8, RECORD_SIZE);
+        channel.write(header, 0);
+        channel.force(false);
+    }
+
+    /**
+     * Compte les enregistrements complets dont le CRC est correct, jusqu'au premier défaut
+     */
+    private static long countValidRecords(FileChannel channel) throws IOException {
+        long complete = (channel.size() - HEADER_SIZE) / RECORD_SIZE;
+        CRC32C crc = new CRC32C();
+        long valid = 0;
+        while (valid < complete) {
+            long start = HEADER_SIZE + valid * RECORD_SIZE;
+            long length = Math.min(MAX_MAPPING, (complete - valid) * RECORD_SIZE);
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+            for (int offset = 0; offset < length; offset += RECORD_SIZE) {
+                if (!checksumMatches(mapped, offset, crc)) {
+                    return valid;
+                }
+                valid++;
+            }
+        }
+        return valid;
+    }
+
+    private static boolean checksumMatches(ByteBuffer buffer, int offset, CRC32C crc) {
+        crc.reset();
+        buffer.limit(offset + RECORD_SIZE).position(offset + FETCHED_AT);
+        crc.update(buffer);
+        buffer.clear();
+        return (int) crc.getValue() == buffer.getInt(offset + CRC);
+    }
+
+    /**
+     * Ajoute un relevé en fin de journal
+     *
+     * @param key       clé de cache du relevé (ville ou coordonnées)
+     * @param data      relevé météo
+     * @param fetchedAt instant de récupération, en millisecondes
+     * @return false si la clé ou le nom de ville est trop long pour son emplacement (relevé non journalisé)
+     */
+    public synchronized boolean append(String key, Meteo.WeatherData data, long fetchedAt) throws IOException {
+        if (!fits(key, KEY_SLOT) || !fits(data.getCityName(), CITY_NAME_SLOT)) {
+            logger.fine("Relevé non journalisé, clé ou ville trop longue: " + key);
+            return false;
+        }
+        ByteBuffer b = writeBuffer.clear();
+        b.putInt(FETCHED_AT, (int) (fetchedAt / 1000))
+                .putLong(CITY_ID, data.getCityId())
+                .putInt(LATITUDE, (int) Math.round(data.getLatitude() * MICRO))
+                .putInt(LONGITUDE, (int) Math.round(data.getLongitude() * MICRO))
+                .putInt(TIMESTAMP, (int) (data.getTimestamp() / 1000))
+                .putInt(SUNRISE, (int) (data.getSunrise() / 1000))
+                .putInt(SUNSET, (int) (data.getSunset() / 1000))
+                .putInt(VISIBILITY, data.getVisibility())
+                .putShort(TEMPERATURE, centi(data.getTemperature()))
+                .putShort(FEELS_LIKE, centi(data.getFeelsLike()))
+                .putShort(TEMP_MIN, centi(data.getTempMin()))
+                .putShort(TEMP_MAX, centi(data.getTempMax()))
+                .putShort(PRESSURE, (short) data.getPressure())
+                .putShort(WIND_SPEED, centi(data.getWindSpeed()))
+                .putShort(WIND_DIRECTION, (short) data.getWindDirection())
+                .put(HUMIDITY, (byte) data.getHumidity());
+        putString(b, KEY, KEY_SLOT, key);
+        putString(b, CITY_NAME, CITY_NAME_SLOT, data.getCityName());
+        putString(b, COUNTRY, COUNTRY_SLOT, data.getCountry());
+        putString(b, DESCRIPTION, DESCRIPTION_SLOT, data.getDescription());
+        putString(b, MAIN_CONDITION, MAIN_CONDITION_SLOT, data.getMainCondition());
+
+        writeCrc.reset();
+        b.position(FETCHED_AT);
+        writeCrc.update(b);
+        b.putInt(CRC, (int) writeCrc.getValue()).clear();
+
+        long position = HEADER_SIZE + recordCount * RECORD_SIZE;
+        while (b.hasRemaining()) {
+            position += channel.write(b, position);
+        }
+        recordCount++;
+        return true;
+    }
+
+    /**
+     * @return true si la chaîne tient entière dans un emplacement (octet de longueur compris)
+     */
+    private static boolean fits(String value, int slot) {
+        return value == null || value.getBytes(StandardCharsets.UTF_8).length < slot;
+    }
+
+    /**
+     * Relit tous les relevés du journal, du plus ancien au plus récent
+     *
+     * @param consumer appelé pour chaque relevé ; le curseur n'est valide que pendant l'appel
+     */
+    public void replay(SnapshotConsumer consumer) throws IOException {
+        long count;
+        synchronized (this) {
+            count = recordCount;
+        }
+        Snapshot snapshot = new Snapshot();
+        long done = 0;
+        while (done < count) {
+            long length = Math.min(MAX_MAPPING, (count - done) * RECORD_SIZE);
+            snapshot.buffer = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE + done * RECORD_SIZE, length);
+            for (int offset = 0; offset < length; offset += RECORD_SIZE) {
+                snapshot.index = done + offset / RECORD_SIZE;
+                snapshot.offset = offset;
+                consumer.accept(snapshot);
+            }
+            done += length / RECORD_SIZE;
+        }
+    }
+
+    /**
+     * Lit un relevé précis
+     *
+     * @param index position du relevé dans le journal (voir {@link Snapshot#getIndex()})
+     */
+    public Meteo.WeatherData read(long index) throws IOException {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Relevé inexistant: " + index);
+        }
+        ByteBuffer b = ByteBuffer.allocate(RECORD_SIZE);
+        long position = HEADER_SIZE + index * RECORD_SIZE;
+        while (b.hasRemaining()) {
+            if (channel.read(b, position + b.position()) < 0) {
+                throw new IOException("Fin de fichier inattendue dans " + file);
+            }
+        }
+        return decode(b, 0, new StringTable());
+    }
+
+    private static Meteo.WeatherData decode(ByteBuffer b, int offset, StringTable strings) {
+        return Meteo.WeatherData.builder()
+                .cityId(b.getLong(offset + CITY_ID))
+                .cityName(strings.get(b, offset + CITY_NAME))
+                .country(strings.get(b, offset + COUNTRY))
+                .description(strings.get(b, offset + DESCRIPTION))
+                .mainCondition(strings.get(b, offset + MAIN_CONDITION))
+                .latitude(b.getInt(offset + LATITUDE) / MICRO)
+                .longitude(b.getInt(offset + LONGITUDE) / MICRO)
+                .timestamp(Integer.toUnsignedLong(b.getInt(offset + TIMESTAMP)) * 1000)
+                .sunrise(Integer.toUnsignedLong(b.getInt(offset + SUNRISE)) * 1000)
+                .sunset(Integer.toUnsignedLong(b.getInt(offset + SUNSET)) * 1000)
+                .visibility(b.getInt(offset + VISIBILITY))
+                .temperature(b.getShort(offset + TEMPERATURE) / CENTI)
+                .feelsLike(b.getShort(offset + FEELS_LIKE) / CENTI)
+                .tempMin(b.getShort(offset + TEMP_MIN) / CENTI)
+                .tempMax(b.getShort(offset + TEMP_MAX) / CENTI)
+                .pressure(b.getShort(offset + PRESSURE))
+                .windSpeed(b.getShort(offset + WIND_SPEED) / CENTI)
+                .windDirection(b.getShort(offset + WIND_DIRECTION))
+                .humidity(b.get(offset + HUMIDITY))
+                .build();
+    }
+
+    /**
+     * Écrit une chaîne dans un emplacement fixe : un octet de longueur puis l'UTF-8,
+     * tronqué sans couper de caractère. Longueur 0xFF = null.
+     */
+    private static void putString(ByteBuffer b, int offset, int slot, String value) {
+        if (value == null) {
+            b.put(offset, (byte) 0xFF);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        int length = Math.min(bytes.length, slot - 1);
+        while (length < bytes.length && length > 0 && (bytes[length] & 0xC0) == 0x80) {
+            length--;
+        }
+        b.put(offset, (byte) length);
+        b.put(offset + 1, bytes, 0, length);
+    }
+
+    private static short centi(double value) {
+        return (short) Math.clamp(Math.round(value * CENTI), Short.MIN_VALUE, Short.MAX_VALUE);
+    }
+
+    /**
+     * @return le nombre de relevés dans le journal
+     */
+    public synchronized long size() {
+        return recordCount;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Force l'écriture sur disque et ferme le fichier
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel.isOpen()) {
+            channel.force(false);
+            channel.close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Journal météo %s: %d relevés", file, size());
+    }
+
+    /**
+     * Réception d'un relevé lors de la relecture du journal
+     */
+    @FunctionalInterface
+    public interface SnapshotConsumer {
+        void accept(Snapshot snapshot);
+    }
+
+    /**
+     * Curseur sur un enregistrement de la projection mémoire, réutilisé d'un relevé à l'autre
+     */
+    public static final class Snapshot {
+        // Les chaînes identiques d'un enregistrement à l'autre ne sont décodées qu'une fois
+        private final StringTable strings = new StringTable();
+        private ByteBuffer buffer;
+        private int offset;
+        private long index;
+
+        private Snapshot() {
+        }
+
+        /**
+         * @return la position du relevé dans le journal (voir {@link #read(long)})
+         */
+        public long getIndex() {
+            return index;
+        }
+
+        public String getKey() {
+            return strings.get(buffer, offset + KEY);
+        }
+
+        public String getCityName() {
+            return strings.get(buffer, offset + CITY_NAME);
+        }
+
+        public long getCityId() {
+            return buffer.getLong(offset + CITY_ID);
+        }
+
+        /**
+         * @return l'instant de récupération, en millisecondes
+         */
+        public long getFetchedAt() {
+            return Integer.toUnsignedLong(buffer.getInt(offset + FETCHED_AT)) * 1000;
+        }
+
+        /**
+         * @return l'horodatage du relevé, en millisecondes
+         */
+        public long getTimestamp() {
+            return Integer.toUnsignedLong(buffer.getInt(offset + TIMESTAMP)) * 1000;
+        }
+
+        public double getTemperature() {
+            return buffer.getShort(offset + TEMPERATURE) / CENTI;
+        }
+
+        public double getFeelsLike() {
+            return buffer.getShort(offset + FEELS_LIKE) / CENTI;
+        }
+
+        public int getHumidity() {
+            return buffer.get(offset + HUMIDITY);
+        }
+
+        public int getPressure() {
+            return buffer.getShort(offset + PRESSURE);
+        }
+
+        public double getWindSpeed() {
+            return buffer.getShort(offset + WIND_SPEED) / CENTI;
+        }
+
+        /**
+         * @return le relevé complet (décodage de tous les champs)
+         */
+        public Meteo.WeatherData toWeatherData() {
+            return decode(buffer, offset, strings);
+        }
+    }
+
+    /**
+     * Table de chaînes indexée par leurs octets UTF-8 : évite de décoder et d'allouer
+     * une nouvelle chaîne pour chaque enregistrement (les mêmes villes et conditions
+     * reviennent sans cesse). Les emplacements sont lus et comparés par mots de 8 octets.
+     */
+    private static final class StringTable {
+        private static final int MAX_WORDS = (KEY_SLOT + 7) / 8;
+
+        private long[][] keys = new long[256][];
+        private String[] values = new String[256];
+        private int count;
+        private final long[] words = new long[MAX_WORDS];
+        private final byte[] scratch = new byte[KEY_SLOT];
+
+        String get(ByteBuffer b, int offset) {
+            int length = b.get(offset) & 0xFF;
+            if (length == 0xFF) {
+                return null;
+            }
+            // Octet de longueur + contenu, le reste de l'emplacement est masqué
+            int wordCount = (length + 8) >>> 3;
+            long hash = 0;
+            for (int w = 0; w < wordCount; w++) {
+                long word = b.getLong(offset + 8 * w);
+                int valid = length + 1 - 8 * w;
+                if (valid < 8) {
+                    word &= -1L << (8 * (8 - valid));
+                }
+                words[w] = word;
+                hash = (hash ^ word) * 0x9E3779B97F4A7C15L;
+            }
+            int mask = keys.length - 1;
+            int slot = (int) (hash >>> 40) & mask;
+            while (keys[slot] != null) {
+                if (Arrays.equals(keys[slot], 0, keys[slot].length, words, 0, wordCount)) {
+                    return values[slot];
+                }
+                slot = (slot + 1) & mask;
+            }
+            b.get(offset + 1, scratch, 0, length);
+            String value = new String(scratch, 0, length, StandardCharsets.UTF_8);
+            keys[slot] = Arrays.copyOf(words, wordCount);
+            values[slot] = value;
+            if (++count * 2 > keys.length) {
+                rehash();
+            }
+            return value;
+        }
+
+        private void rehash() {
+            long[][] oldKeys = keys;
+            String[] oldValues = values;
+            keys = new long[oldKeys.length * 2][];
+            values = new String[oldKeys.length * 2];
+            int mask = keys.length - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                long[] key = oldKeys[i];
+                if (key == null) {
+                    continue;
+                }
+                long hash = 0;
+                for (long word : key) {
+                    hash = (hash ^ word) * 0x9E3779B97F4A7C15L;
+                }
+                int slot = (int) (hash >>> 40) & mask;
+                while (keys[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = key;
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package org.example;
+
+import com.sun.net.httpserver.HttpServer;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChatSessionTest {
+
+    @Test
+    void resetRenvoieLHistoriqueInitial() throws Exception {
+        List<String> prompts = new ArrayList<>();
+        LlmClient client = StubLlmClient.builder()
+                .responder(prompt -> {
+                    prompts.add(prompt);
+                    return "d'accord";
+                })
+                .build();
+        ChatSession session = new ChatSession(client, StubLlmClient.DEFAULT_MODEL, "système",
+                Duration.ofMinutes(5), new String[]{"je n'aime pas les champignons", "noté"});
+
+        session.send("un menu ?");
+        session.send("un autre ?");
+        session.reset();
+        session.send("un menu ?");
+
+        assertEquals(3, prompts.size());
+        assertTrue(prompts.get(0).contains("champignons"));
+        assertFalse(prompts.get(1).contains("champignons"));
+        assertTrue(prompts.get(2).contains("champignons"));
+    }
+
+    @Test
+    void fluxInterrompuConserveLHistoriqueInitial() throws Exception {
+        // Ollama simulé : la première réponse s'arrête avant le chunk final, la seconde est complète
+        List<String> prompts = new ArrayList<>();
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/api/generate", exchange -> {
+            JSONObject request = new JSONObject(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+            prompts.add(request.getString("prompt"));
+            String body = "{\"response\":\"Entrée\",\"done\":false}\n";
+            if (prompts.size() > 1) {
+                body += "{\"response\":\"\",\"done\":true,\"context\":[1,2,3],\"eval_count\":1}\n";
+            }
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        });
+        server.start();
+        try {
+            OllamaClient client = new OllamaClient(HttpClient.newHttpClient(),
+                    "http://localhost:" + server.getAddress().getPort());
+            ChatSession session = new ChatSession(client, "test", "système",
+                    Duration.ofMinutes(5), new String[]{"je n'aime pas les champignons", "noté"});
+
+            assertThrows(RuntimeException.class, () -> session.send("un menu ?"));
+            session.send("un menu ?");
+
+            assertEquals(2, prompts.size());
+            assertTrue(prompts.get(1).contains("champignons"));
+            assertEquals(3, session.getContextLength());
+        } finally {
+            server.stop(0);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CircuitBreakerTest {
+
+    private static final long MILLIS = 1_000_000L;
+
+    @Test
+    void serviceRalentiDurablementLeDisjoncteurSeReferme() {
+        CircuitBreaker breaker = new CircuitBreaker("test", Duration.ofSeconds(1), Duration.ofSeconds(10),
+                5, Duration.ZERO);
+        for (int i = 0; i < 128; i++) {
+            breaker.onSuccess(200 * MILLIS);
+        }
+        assertEquals(Duration.ofSeconds(1), breaker.getTimeout());
+
+        // Le service répond désormais en 1,5 s : chaque appel est abandonné au délai de 1 s
+        for (int i = 0; i < 5; i++) {
+            assertTrue(breaker.tryAcquire());
+            breaker.onTimeout(breaker.getTimeout().toNanos());
+        }
+        assertTrue(breaker.isOpen());
+
+        // L'appel d'essai part avec le délai maximal et aboutit
+        assertEquals(Duration.ofSeconds(10), breaker.getTimeout());
+        assertTrue(breaker.tryAcquire());
+        breaker.onSuccess(1500 * MILLIS);
+        assertFalse(breaker.isOpen());
+
+        // Les délais dépassés ont allongé le délai adaptatif : les appels suivants aboutissent
+        assertTrue(breaker.getTimeout().toNanos() > 1500 * MILLIS);
+    }
+
+    @Test
+    void essaiAnnuleNeBloquePasLesAppelsSuivants() {
+        CircuitBreaker breaker = new CircuitBreaker("test", Duration.ofSeconds(1), Duration.ofSeconds(10),
+                1, Duration.ZERO);
+        breaker.onFailure();
+        assertTrue(breaker.tryAcquire());
+        assertFalse(breaker.tryAcquire());
+
+        // L'appel d'essai est annulé par l'appelant : un nouvel essai est aussitôt possible
+        breaker.onCancelled();
+        assertTrue(breaker.tryAcquire());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertEquals(0, breaker.getSuccessCount());
+        assertEquals(1, breaker.getFailureCount());
+    }
+
+    @Test
+    void echecSansLatenceNAllongePasLeDelai() {
+        CircuitBreaker breaker = new CircuitBreaker("test", Duration.ofSeconds(1), Duration.ofSeconds(10));
+        for (int i = 0; i < 128; i++) {
+            breaker.onSuccess(200 * MILLIS);
+        }
+        breaker.onFailure();
+        assertEquals(Duration.ofSeconds(1), breaker.getTimeout());
+    }
+}
@@ -0,0 +1,34 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class FixtureWeatherProviderTest {
+
+    @Test
+    void villesSynthetiquesOntDesIdentifiantsDistincts() {
+        FixtureWeatherProvider provider = FixtureWeatherProvider.builder().synthesizeUnknown(true).build();
+        List<Long> ids = new ArrayList<>();
+        Set<Long> distinct = new HashSet<>();
+        for (int i = 0; i < 5_000; i++) {
+            // "Aa" et "BB" ont le même String.hashCode()
+            for (String ville : new String[]{"Ville-Aa-" + i, "Ville-BB-" + i}) {
+                Meteo.WeatherData data = provider.fetchByCity(ville, RequestScheduler.Priority.BATCH).join();
+                ids.add(data.getCityId());
+                distinct.add(data.getCityId());
+            }
+        }
+        assertEquals(ids.size(), distinct.size());
+
+        Map<Long, Meteo.WeatherData> byId = provider.fetchByIds(ids.subList(0, 2), RequestScheduler.Priority.BATCH).join();
+        assertEquals("Ville-Aa-0", byId.get(ids.get(0)).getCityName());
+        assertEquals("Ville-BB-0", byId.get(ids.get(1)).getCityName());
+    }
+}
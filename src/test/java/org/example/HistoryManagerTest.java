@@ -0,0 +1,95 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HistoryManagerTest {
+
+    // Fenêtre conservée : 75 tokens, soit environ 280 caractères
+    private static final int BUDGET = 100;
+
+    private static String padding(int chars) {
+        return " bla".repeat(chars / 4);
+    }
+
+    @Test
+    void historiqueImpairQuiTientDansLeBudget() {
+        String[] history = {"je n'aime pas les choux", "noté", "je n'aime pas les champignons"};
+        HistoryManager.Compacted compacted = new HistoryManager(BUDGET).compact(history);
+
+        assertNull(compacted.getSummary());
+        assertArrayEquals(history, compacted.getRecent());
+    }
+
+    @Test
+    void historiqueImpairFenetreCommenceParLaPersonne() {
+        String[] history = {
+                "je n'aime pas les choux." + padding(200), "noté" + padding(200),
+                "je n'aime pas les poireaux", "noté" + padding(100),
+                "je n'aime pas les champignons",
+        };
+        HistoryManager.Compacted compacted = new HistoryManager(BUDGET).compact(history);
+
+        assertEquals(1, compacted.getRecent().length % 2);
+        assertEquals(history[history.length - 1], compacted.getRecent()[compacted.getRecent().length - 1]);
+        assertEquals(0, (history.length - compacted.getRecent().length) % 2);
+        assertNotNull(compacted.getSummary());
+        assertTrue(compacted.getSummary().contains("choux"));
+    }
+
+    @Test
+    void dernierMessageTropLongRepriDansLeResume() {
+        String[] history = {
+                "je n'aime pas les choux", "noté",
+                "je n'aime pas les champignons." + padding(2000),
+        };
+        HistoryManager.Compacted compacted = new HistoryManager(BUDGET).compact(history);
+
+        assertEquals(0, compacted.getRecent().length);
+        assertNotNull(compacted.getSummary());
+        assertTrue(compacted.getSummary().contains("choux"));
+        assertTrue(compacted.getSummary().contains("champignons"));
+        assertTrue(compacted.getEstimatedTokens() <= BUDGET);
+    }
+
+    @Test
+    void messageUniqueTropLong() {
+        String[] history = {"je suis végétarien." + padding(2000)};
+        HistoryManager.Compacted compacted = new HistoryManager(BUDGET).compact(history);
+
+        assertEquals(0, compacted.getRecent().length);
+        assertNotNull(compacted.getSummary());
+        assertTrue(compacted.getSummary().contains("végétarien"));
+    }
+
+    @Test
+    void empreintesIdentiquesNeMelangentPasLesPreferences() {
+        // "Aa" et "BB" ont le même String.hashCode() : les deux messages ont la même empreinte
+        String aa = "je n'aime pas les Aa." + padding(200);
+        String bb = "je n'aime pas les BB." + padding(200);
+        assertEquals(aa.hashCode(), bb.hashCode());
+        HistoryManager manager = new HistoryManager(BUDGET);
+
+        String premier = manager.compact(new String[]{aa, "noté" + padding(200), "un menu ?"}).getSummary();
+        String second = manager.compact(new String[]{bb, "noté" + padding(200), "un menu ?"}).getSummary();
+
+        assertTrue(premier.toLowerCase().contains("aa"));
+        assertTrue(second.toLowerCase().contains("bb"));
+        assertFalse(second.toLowerCase().contains("aa"));
+    }
+
+    @Test
+    void historiquePairDerniereReponseTropLongue() {
+        String[] history = {"je n'aime pas les champignons", "noté" + padding(2000)};
+        HistoryManager.Compacted compacted = new HistoryManager(BUDGET).compact(history);
+
+        assertEquals(0, compacted.getRecent().length);
+        assertTrue(compacted.getSummary().contains("champignons"));
+    }
+}
@@ -0,0 +1,22 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+class MenuCacheTest {
+
+    private static final String[] HISTORY = {};
+
+    @Test
+    void estimationsDeVillesDifferentesNePartagentPasLeurMenu() {
+        Meteo.WeatherData lyon = ClimateEstimator.estimate("Lyon", "automne");
+        Meteo.WeatherData brest = ClimateEstimator.estimate("Brest", "automne");
+
+        assertNotEquals(MenuCache.key("m", "automne", lyon, HISTORY),
+                MenuCache.key("m", "automne", brest, HISTORY));
+        assertEquals(MenuCache.key("m", "automne", lyon, HISTORY),
+                MenuCache.key("m", "automne", ClimateEstimator.estimate("lyon", "automne"), HISTORY));
+    }
+}
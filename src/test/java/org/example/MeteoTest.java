@@ -0,0 +1,65 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MeteoTest {
+
+    /**
+     * Fournisseur dont la requête groupée ne renvoie rien : chaque ville passe par une requête individuelle
+     */
+    private static final class GroupeVide implements WeatherProvider {
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger maxInFlight = new AtomicInteger();
+
+        @Override
+        public CompletableFuture<Meteo.WeatherData> fetchByCity(String cityName, RequestScheduler.Priority priority) {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            Meteo.WeatherData data = Meteo.WeatherData.builder().cityName(cityName).temperature(12).build();
+            return CompletableFuture.supplyAsync(() -> {
+                inFlight.decrementAndGet();
+                return data;
+            }, CompletableFuture.delayedExecutor(20, TimeUnit.MILLISECONDS));
+        }
+
+        @Override
+        public CompletableFuture<Meteo.WeatherData> fetchByCoordinates(double latitude, double longitude,
+                                                                      RequestScheduler.Priority priority) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        @Override
+        public int getMaxGroupSize() {
+            return 20;
+        }
+
+        @Override
+        public CompletableFuture<Map<Long, Meteo.WeatherData>> fetchByIds(List<Long> ids,
+                                                                         RequestScheduler.Priority priority) {
+            return CompletableFuture.completedFuture(Map.of());
+        }
+    }
+
+    @Test
+    void replisIndividuelsRespectentLaLimiteDeParallelisme() {
+        GroupeVide provider = new GroupeVide();
+        Meteo meteo = Meteo.builder().provider(provider).maxConcurrency(2).build();
+        List<String> villes = List.of("Lyon", "Brest", "Lille", "Nice", "Rennes", "Dijon");
+        for (int i = 0; i < villes.size(); i++) {
+            meteo.registerCityId(villes.get(i), i + 1);
+        }
+
+        BulkWeatherResult result = meteo.getWeatherForCities(villes);
+
+        assertEquals(villes.size(), result.getResults().size());
+        assertTrue(provider.maxInFlight.get() <= 2, "requêtes simultanées : " + provider.maxInFlight.get());
+    }
+}
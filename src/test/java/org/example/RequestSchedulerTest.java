@@ -0,0 +1,61 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class RequestSchedulerTest {
+
+    @Test
+    void pendantUneSuspensionLesRequetesEchouentAuLieuDAttendre() {
+        RequestScheduler scheduler = new RequestScheduler(60, 1, 2, Duration.ofMillis(100));
+        scheduler.onRateLimited(Duration.ofSeconds(30));
+        AtomicInteger sent = new AtomicInteger();
+
+        CompletableFuture<String> first = scheduler.submit(RequestScheduler.Priority.INTERACTIVE, () -> send(sent));
+        CompletableFuture<String> second = scheduler.submit(RequestScheduler.Priority.INTERACTIVE, () -> send(sent));
+        CompletableFuture<String> third = scheduler.submit(RequestScheduler.Priority.INTERACTIVE, () -> send(sent));
+
+        // File pleine : refus immédiat
+        assertInstanceOf(RejectedExecutionException.class, cause(third));
+        // Attente maximale dépassée : abandon
+        assertInstanceOf(TimeoutException.class, cause(first));
+        assertInstanceOf(TimeoutException.class, cause(second));
+        assertEquals(0, sent.get());
+        assertEquals(0, scheduler.getQueueLength());
+        assertEquals(1, scheduler.getRejectedCount());
+        assertEquals(2, scheduler.getExpiredCount());
+    }
+
+    @Test
+    void uneRequeteLanceeNEstPasAbandonnee() throws Exception {
+        RequestScheduler scheduler = new RequestScheduler(60, 1, 2, Duration.ofMillis(50));
+        CompletableFuture<String> slow = new CompletableFuture<>();
+
+        CompletableFuture<String> result = scheduler.submit(RequestScheduler.Priority.INTERACTIVE, () -> slow);
+        Thread.sleep(150);
+        slow.complete("ok");
+
+        assertEquals("ok", result.get(1, TimeUnit.SECONDS));
+        assertEquals(0, scheduler.getExpiredCount());
+    }
+
+    private static CompletableFuture<String> send(AtomicInteger sent) {
+        sent.incrementAndGet();
+        return CompletableFuture.completedFuture("ok");
+    }
+
+    private static Throwable cause(CompletableFuture<?> future) {
+        return assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS)).getCause();
+    }
+}
@@ -0,0 +1,40 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WeatherSnapshotLogTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void cleTropLongueNonJournaliseePlutotQueTronquee() throws Exception {
+        String prefixe = "Saint-Rémy-de-Provence-sur-la-Durance-";
+        Meteo.WeatherData premiere = releve(prefixe + "Haute", 11);
+        Meteo.WeatherData seconde = releve(prefixe + "Basse", 19);
+        Meteo.WeatherData lyon = releve("Lyon", 15);
+
+        List<String> keys = new ArrayList<>();
+        try (WeatherSnapshotLog log = WeatherSnapshotLog.open(dir.resolve("meteo.log"))) {
+            assertFalse(log.append("city:" + premiere.getCityName().toLowerCase(), premiere, 1_000));
+            assertFalse(log.append("city:" + seconde.getCityName().toLowerCase(), seconde, 1_000));
+            assertTrue(log.append("city:lyon", lyon, 1_000));
+            log.replay(snapshot -> keys.add(snapshot.getKey()));
+        }
+
+        assertEquals(List.of("city:lyon"), keys);
+    }
+
+    private static Meteo.WeatherData releve(String ville, double temperature) {
+        return Meteo.WeatherData.builder().cityName(ville).temperature(temperature).build();
+    }
+}